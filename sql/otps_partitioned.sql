@@ -0,0 +1,61 @@
+-- Optional: converts the otps table to daily range partitions on expires_at
+-- (PostgreSQL 11 or later). With this layout the hourly OTP purge drops whole
+-- days instead of deleting them row by row; the server detects the layout and
+-- creates the partitions for the coming days itself (dao.OTPPurger).
+--
+-- Run once, with the server stopped. Only OTPs that the purge would keep are
+-- copied. The primary key becomes (id, expires_at), as PostgreSQL requires the
+-- partition key in it; ids still come from otps_id_seq.
+--
+-- The server stores expires_at as its JVM's local time and creates later
+-- partitions by its local days, so run this in a session whose TimeZone is the
+-- server's, e.g. SET TIME ZONE 'Africa/Kigali'. Rows outside the daily
+-- partitions land in otps_default and are purged by the chunked deletes.
+
+BEGIN;
+
+ALTER TABLE otps RENAME TO otps_unpartitioned;
+
+CREATE TABLE otps (
+    id integer NOT NULL DEFAULT nextval('otps_id_seq'),
+    email varchar(100) NOT NULL,
+    otp_code varchar(10) NOT NULL,
+    created_at timestamp NOT NULL,
+    expires_at timestamp NOT NULL,
+    used boolean NOT NULL,
+    verification_attempts integer NOT NULL,
+    user_agent varchar(500),
+    ip_address varchar(50),
+    otp_type varchar(50),
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+CREATE TABLE otps_default PARTITION OF otps DEFAULT;
+
+-- Yesterday (still within the retention) up to two days ahead
+DO $$
+DECLARE
+    day date;
+BEGIN
+    FOR i IN -1..2 LOOP
+        day := localtimestamp::date + i;
+        EXECUTE format('CREATE TABLE otps_p%s PARTITION OF otps FOR VALUES FROM (%L) TO (%L)',
+                       to_char(day, 'YYYYMMDD'), day, day + 1);
+    END LOOP;
+END $$;
+
+INSERT INTO otps (id, email, otp_code, created_at, expires_at, used,
+                  verification_attempts, user_agent, ip_address, otp_type)
+SELECT id, email, otp_code, created_at, expires_at, used,
+       verification_attempts, user_agent, ip_address, otp_type
+FROM otps_unpartitioned
+WHERE NOT used AND expires_at >= localtimestamp - INTERVAL '1 day';
+
+ALTER SEQUENCE otps_id_seq OWNED BY otps.id;
+DROP TABLE otps_unpartitioned;
+
+CREATE INDEX idx_otps_email_type_created ON otps (email, otp_type, created_at);
+CREATE INDEX idx_otps_expires_at ON otps (expires_at);
+CREATE INDEX idx_otps_used ON otps (id) WHERE used;
+
+COMMIT;
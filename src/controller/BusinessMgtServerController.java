@@ -1,14 +1,26 @@
 package controller;
 
+import dao.ActiveOTPStore;
+import dao.OTPPurger;
 import service.implementation.*;
+import util.CacheManager;
 import util.HibernateUtil;
 import util.LogUtil;
+import util.MetricsRegistry;
+import util.OTPRateLimiter;
+import util.PasswordHasher;
+import util.EmailQueue;
 import util.EmailService;
+import util.SessionTemplate;
+import util.SqlStatementMonitor;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -24,21 +36,22 @@ public class BusinessMgtServerController {
     private static final String SERVER_HOST = "127.0.0.1";
     private static final int SERVER_PORT = 4444;
     private static final String SERVER_VERSION = "1.1.0";
+    private static final long EMAIL_DRAIN_SECONDS = 10;
+    private static final long PASSWORD_HASH_TARGET_MS = 250;
+    private static final int SQL_SHAPES_SHOWN = 15;
+    private static final long METRICS_SNAPSHOT_MINUTES = Long.getLong("metrics.snapshotMinutes", 5);
+    private static final int METRICS_PORT = Integer.getInteger("metrics.port", 9464);
+    private static final String METRICS_HOST = System.getProperty("metrics.host", SERVER_HOST);
+    private static final int HEALTH_QUERY_TIMEOUT_SECONDS = 5;
     
     // Server components
     private Registry registry;
     private ScheduledExecutorService scheduler;
+    private MetricsHttpServer metricsServer;
     private boolean isRunning = false;
     
     // Service instances
-    private CustomerServiceImpl customerService;
-    private ProductServiceImpl productService;
-    private SupplierServiceImpl supplierService;
-    private OrderServiceImpl orderService;
-    private InvoiceServiceImpl invoiceService;
-    private PaymentServiceImpl paymentService;
-    private UserServiceImpl userService;
-    private OTPServiceImpl otpService; // NEW: OTP Service
+    private ServiceContainer services;
     
     /**
      * Main method to start the server
@@ -86,6 +99,7 @@ public class BusinessMgtServerController {
             initializeServices();
             registerServices();
             startMonitoring();
+            startMetricsServer();
             addShutdownHook();
             
             isRunning = true;
@@ -181,14 +195,8 @@ public class BusinessMgtServerController {
     private void initializeServices() throws Exception {
         LogUtil.info("Initializing business services...");
         try {
-            customerService = new CustomerServiceImpl();
-            productService = new ProductServiceImpl();
-            supplierService = new SupplierServiceImpl();
-            orderService = new OrderServiceImpl();
-            invoiceService = new InvoiceServiceImpl();
-            paymentService = new PaymentServiceImpl();
-            otpService = new OTPServiceImpl(); // NEW: Initialize OTP service
-            userService = new UserServiceImpl(); // Initialize after OTP service as it depends on it
+            services = new ServiceContainer();
+            services.warmUp();
             LogUtil.info("✓ All services initialized successfully");
         } catch (RemoteException e) {
             LogUtil.error("✗ Failed to initialize services", e);
@@ -202,29 +210,7 @@ public class BusinessMgtServerController {
     private void registerServices() throws Exception {
         LogUtil.info("Registering services with RMI registry...");
         try {
-            registry.rebind("customerService", customerService);
-            LogUtil.info("  ✓ Customer Service registered");
-            
-            registry.rebind("productService", productService);
-            LogUtil.info("  ✓ Product Service registered");
-            
-            registry.rebind("supplierService", supplierService);
-            LogUtil.info("  ✓ Supplier Service registered");
-            
-            registry.rebind("orderService", orderService);
-            LogUtil.info("  ✓ Order Service registered");
-            
-            registry.rebind("invoiceService", invoiceService);
-            LogUtil.info("  ✓ Invoice Service registered");
-            
-            registry.rebind("paymentService", paymentService);
-            LogUtil.info("  ✓ Payment Service registered");
-            
-            registry.rebind("otpService", otpService); // NEW: Register OTP service
-            LogUtil.info("  ✓ OTP Service registered");
-            
-            registry.rebind("userService", userService);
-            LogUtil.info("  ✓ User Service registered");
+            services.start(registry);
             
             LogUtil.info("✓ All services registered successfully");
             
@@ -250,27 +236,87 @@ public class BusinessMgtServerController {
         // Memory monitoring every 10 minutes
         scheduler.scheduleAtFixedRate(this::logMemoryUsage, 10, 10, TimeUnit.MINUTES);
         
+        // Remote method metrics of the last interval
+        scheduler.scheduleAtFixedRate(this::logMetricsSnapshot,
+            METRICS_SNAPSHOT_MINUTES, METRICS_SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+        
         // OTP cleanup every hour
         scheduler.scheduleAtFixedRate(this::cleanupExpiredOTPs, 60, 60, TimeUnit.MINUTES);
         
         LogUtil.info("✓ Server monitoring started");
     }
     
+    /**
+     * Starts the HTTP endpoint serving /metrics and /health;
+     * -Dmetrics.port=0 turns it off
+     */
+    private void startMetricsServer() {
+        if (METRICS_PORT <= 0) {
+            LogUtil.info("Metrics endpoint disabled");
+            return;
+        }
+        try {
+            metricsServer = new MetricsHttpServer(METRICS_HOST, METRICS_PORT, this::checkHealth);
+            metricsServer.start();
+            LogUtil.info("✓ Metrics endpoint at http://" + METRICS_HOST + ":" + METRICS_PORT + "/metrics and /health");
+        } catch (Exception e) {
+            metricsServer = null;
+            LogUtil.warn("⚠ Metrics endpoint could not be started - the server runs without it", e);
+        }
+    }
+    
     /**
      * Performs server health check
      */
     private void performHealthCheck() {
-        try {
-            // Test database connection
-            HibernateUtil.getSessionFactory().getCurrentSession();
-            
-            // Test RMI registry
-            registry.list();
-            
+        List<String> problems = checkHealth();
+        if (problems.isEmpty()) {
             LogUtil.debug("Health check passed - Server is healthy");
+        } else {
+            LogUtil.error("Health check failed: " + String.join("; ", problems));
+        }
+        
+        // Report sessions that look leaked
+        List<String> longHeld = SessionTemplate.getLongHeldSessions();
+        if (!longHeld.isEmpty()) {
+            LogUtil.warn("Long-held Hibernate sessions: " + longHeld);
+        }
+    }
+    
+    /**
+     * Checks that the database answers a query and the RMI registry responds.
+     * Used by the scheduled health check and the /health endpoint.
+     *
+     * @return The problems found, empty if the server is healthy
+     */
+    private List<String> checkHealth() {
+        List<String> problems = new ArrayList<>();
+        try {
+            Integer result = SessionTemplate.executeJdbc(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.setQueryTimeout(HEALTH_QUERY_TIMEOUT_SECONDS);
+                    try (ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+                        return resultSet.next() ? resultSet.getInt(1) : null;
+                    }
+                }
+            });
+            if (result == null || result != 1) {
+                problems.add("Database: unexpected result of SELECT 1: " + result);
+            }
         } catch (Exception e) {
-            LogUtil.error("Health check failed", e);
+            problems.add("Database: " + e.getMessage());
         }
+        
+        try {
+            if (registry == null) {
+                problems.add("RMI registry: not created");
+            } else {
+                registry.list();
+            }
+        } catch (Exception e) {
+            problems.add("RMI registry: " + e.getMessage());
+        }
+        return problems;
     }
     
     /**
@@ -278,8 +324,8 @@ public class BusinessMgtServerController {
      */
     private void cleanupExpiredOTPs() {
         try {
-            if (otpService != null) {
-                int cleanedUp = otpService.cleanupExpiredOTPs();
+            if (services != null) {
+                int cleanedUp = services.getOTPService().cleanupExpiredOTPs();
                 if (cleanedUp > 0) {
                     LogUtil.info("Cleaned up " + cleanedUp + " expired OTPs");
                 }
@@ -325,6 +371,8 @@ public class BusinessMgtServerController {
         
         while (isRunning) {
             try {
+                // Let queued log lines print before the prompt
+                LogUtil.flush();
                 System.out.print("server> ");
                 String input = scanner.nextLine().trim().toLowerCase();
                 
@@ -350,12 +398,61 @@ public class BusinessMgtServerController {
                     case "clients":
                         listConnectedClients();
                         break;
+                    case "sessions":
+                        printSessionStatistics();
+                        break;
+                    case "cursors":
+                        LogUtil.info("Remote cursors - " + CursorRegistry.getInstance().getStatistics());
+                        break;
+                    case "metrics":
+                        printMetrics();
+                        break;
+                    case "sql":
+                        printSqlStatistics();
+                        break;
+                    case "sql-slow":
+                        printSlowestStatements();
+                        break;
+                    case "sql-reset":
+                        SqlStatementMonitor.getInstance().reset();
+                        LogUtil.info("SQL statement statistics cleared");
+                        break;
+                    case "cache":
+                        printCacheStatistics();
+                        break;
+                    case "cache-clear":
+                        CacheManager.getInstance().clearAll();
+                        break;
+                    case "email-queue":
+                        printEmailQueueStatistics();
+                        break;
+                    case "otp":
+                        printOTPStatistics();
+                        break;
                     case "cleanup-otp":
                         cleanupExpiredOTPs();
                         break;
+                    case "dispatch":
+                        printDispatchStatistics();
+                        break;
+                    case "logins":
+                        LogUtil.info("Client sessions - " + AuthSessionRegistry.getInstance().getStatistics());
+                        break;
+                    case "passwords":
+                        LogUtil.info("Password hasher - " + PasswordHasher.getInstance().getStatistics());
+                        break;
+                    case "password-calibrate":
+                        calibratePasswordHashing();
+                        break;
                     case "test-email":
                         testEmailFromConsole();
                         break;
+                    case "log":
+                        LogUtil.info("Logging - " + LogUtil.getStatistics());
+                        break;
+                    case "log-debug":
+                        toggleDebugLogging();
+                        break;
                     case "gc":
                         System.gc();
                         LogUtil.info("Garbage collection requested");
@@ -393,8 +490,24 @@ public class BusinessMgtServerController {
         System.out.println("  health       - Perform health check");
         System.out.println("  services     - List registered services");
         System.out.println("  clients      - List connected clients");
+        System.out.println("  sessions     - Show Hibernate session counters");
+        System.out.println("  cursors      - Show open remote cursors");
+        System.out.println("  metrics      - Show call counts, errors and latency percentiles per remote method");
+        System.out.println("  sql          - Show SQL statement counts and latency by statement shape");
+        System.out.println("  sql-slow     - Show the slowest SQL statements executed");
+        System.out.println("  sql-reset    - Clear SQL statement statistics");
+        System.out.println("  cache        - Show cache hit/miss statistics");
+        System.out.println("  cache-clear  - Clear all cache regions");
+        System.out.println("  email-queue  - Show email queue, SMTP connection and dead letter statistics");
+        System.out.println("  otp          - Show OTP rate limiter, active OTP store and purge statistics");
         System.out.println("  cleanup-otp  - Clean up expired OTPs");
+        System.out.println("  dispatch     - Show per-service concurrency limits and rejected calls");
+        System.out.println("  logins       - Show logged-in client session statistics");
+        System.out.println("  passwords    - Show password hashing pool statistics");
+        System.out.println("  password-calibrate - Suggest a PBKDF2 iteration count for this machine");
         System.out.println("  test-email   - Test email configuration");
+        System.out.println("  log          - Show log level and log buffer statistics");
+        System.out.println("  log-debug    - Turn debug logging on or off");
         System.out.println("  gc           - Force garbage collection");
         System.out.println("  shutdown     - Shutdown the server");
         System.out.println();
@@ -437,6 +550,119 @@ public class BusinessMgtServerController {
         System.out.println("╚════════════════════════════════════════╝\n");
     }
     
+    /**
+     * Prints Hibernate session counters
+     */
+    private void printSessionStatistics() {
+        LogUtil.info("Hibernate sessions - " + SessionTemplate.getStatistics());
+        for (String session : SessionTemplate.getLongHeldSessions()) {
+            System.out.println("  ! Long-held session: " + session);
+        }
+    }
+    
+    /**
+     * Prints the dispatch layer statistics of each service
+     */
+    private void printDispatchStatistics() {
+        LogUtil.info("Service dispatch - " + ServiceDispatcher.getInstance().getStatistics());
+        for (String service : ServiceDispatcher.getInstance().getServiceStatistics()) {
+            System.out.println("  " + service);
+        }
+    }
+    
+    /**
+     * Prints the metrics of each remote method since startup
+     */
+    private void printMetrics() {
+        LogUtil.info("Remote methods - " + MetricsRegistry.getInstance().getStatistics());
+        for (String method : MetricsRegistry.getInstance().getMethodStatistics()) {
+            System.out.println("  " + method);
+        }
+    }
+    
+    /**
+     * Logs the remote method metrics of the last interval (scheduled task)
+     */
+    private void logMetricsSnapshot() {
+        try {
+            List<String> methods = MetricsRegistry.getInstance().snapshot();
+            if (!methods.isEmpty()) {
+                LogUtil.info("Remote method metrics, last " + METRICS_SNAPSHOT_MINUTES + " minutes:\n  " +
+                    String.join("\n  ", methods));
+            }
+        } catch (Exception e) {
+            LogUtil.error("Failed to log metrics snapshot", e);
+        }
+    }
+    
+    /**
+     * Prints SQL statement statistics of the shapes with the most total time
+     */
+    private void printSqlStatistics() {
+        LogUtil.info("SQL statements - " + SqlStatementMonitor.getInstance().getStatistics());
+        System.out.println("  Histogram buckets: " + SqlStatementMonitor.getHistogramLegend());
+        for (String shape : SqlStatementMonitor.getInstance().getShapeStatistics(SQL_SHAPES_SHOWN)) {
+            System.out.println("  " + shape);
+        }
+    }
+    
+    /**
+     * Prints the slowest SQL statements executed
+     */
+    private void printSlowestStatements() {
+        LogUtil.info("Slowest SQL statements:");
+        for (String statement : SqlStatementMonitor.getInstance().getSlowestStatements()) {
+            System.out.println("  " + statement);
+        }
+    }
+    
+    /**
+     * Prints cache region statistics
+     */
+    private void printCacheStatistics() {
+        LogUtil.info("Cache regions:");
+        for (String region : CacheManager.getInstance().getStatistics()) {
+            System.out.println("  " + region);
+        }
+    }
+    
+    /**
+     * Prints email queue statistics and the emails that could not be sent
+     */
+    private void printEmailQueueStatistics() {
+        LogUtil.info("Email queue - " + EmailQueue.getInstance().getStatistics());
+        LogUtil.info("SMTP connections - " + EmailService.getInstance().getTransportStatistics());
+        for (String letter : EmailQueue.getInstance().getDeadLetters()) {
+            System.out.println("  ! Dead letter: " + letter);
+        }
+    }
+    
+    /**
+     * Prints OTP rate limiter and active OTP store statistics
+     */
+    private void printOTPStatistics() {
+        LogUtil.info("OTP rate limiter - " + OTPRateLimiter.getInstance().getStatistics());
+        LogUtil.info("Active OTP store - " + ActiveOTPStore.getInstance().getStatistics());
+        LogUtil.info("OTP purge - " + OTPPurger.getInstance().getStatistics());
+    }
+    
+    /**
+     * Measures PBKDF2 on this machine and suggests password.pbkdf2.iterations
+     */
+    private void calibratePasswordHashing() {
+        LogUtil.info("Calibrating password hashing for " + PASSWORD_HASH_TARGET_MS + " ms per hash...");
+        int iterations = PasswordHasher.getInstance().calibrate(PASSWORD_HASH_TARGET_MS);
+        LogUtil.info("Suggested setting: -Dpassword.pbkdf2.iterations=" + iterations);
+    }
+    
+    /**
+     * Switches the log level between DEBUG and INFO
+     */
+    private void toggleDebugLogging() {
+        LogUtil.setLevel(LogUtil.isDebugEnabled() ? LogUtil.Level.INFO : LogUtil.Level.DEBUG);
+        LogUtil.info("Log level set to " + LogUtil.getLevel());
+    }
+    
     /**
      * Lists registered services
      */
@@ -527,7 +753,7 @@ public class BusinessMgtServerController {
     private void createDefaultAdminIfNeeded() {
         try {
             LogUtil.info("Checking for default admin user...");
-            userService.createDefaultAdmin();
+            services.getUserService().createDefaultAdmin();
         } catch (Exception e) {
             LogUtil.warn("Could not create default admin user: " + e.getMessage());
         }
@@ -546,39 +772,37 @@ public class BusinessMgtServerController {
                 scheduler.shutdown();
                 LogUtil.info("✓ Monitoring stopped");
             }
-            
-            // Unexport services
-            if (customerService != null) {
-                UnicastRemoteObject.unexportObject(customerService, true);
-            }
-            if (productService != null) {
-                UnicastRemoteObject.unexportObject(productService, true);
-            }
-            if (supplierService != null) {
-                UnicastRemoteObject.unexportObject(supplierService, true);
-            }
-            if (orderService != null) {
-                UnicastRemoteObject.unexportObject(orderService, true);
-            }
-            if (invoiceService != null) {
-                UnicastRemoteObject.unexportObject(invoiceService, true);
+            if (metricsServer != null) {
+                metricsServer.stop();
             }
-            if (paymentService != null) {
-                UnicastRemoteObject.unexportObject(paymentService, true);
-            }
-            if (otpService != null) {
-                UnicastRemoteObject.unexportObject(otpService, true);
-            }
-            if (userService != null) {
-                UnicastRemoteObject.unexportObject(userService, true);
+            
+            // Close remote cursors before their sessions lose the database
+            CursorRegistry.getInstance().closeAll();
+            LogUtil.info("✓ Remote cursors closed");
+            
+            // Unexport services; calls in progress finish on the dispatch workers
+            if (services != null) {
+                services.stop();
             }
             LogUtil.info("✓ Services unexported");
             
+            // Send what is still queued before the server exits
+            EmailQueue.getInstance().shutdown(EMAIL_DRAIN_SECONDS);
+            EmailService.getInstance().shutdown();
+            LogUtil.info("✓ Email queue drained");
+            
+            // Write pending OTP verification updates while the database is still open
+            ActiveOTPStore.getInstance().shutdown();
+            LogUtil.info("✓ OTP updates flushed");
+            
+            PasswordHasher.getInstance().shutdown();
+            
             // Close Hibernate SessionFactory
             HibernateUtil.getSessionFactory().close();
             LogUtil.info("✓ Database connections closed");
             
             LogUtil.info("✓ Server shutdown completed successfully");
+            LogUtil.shutdown();
             
         } catch (Exception e) {
             LogUtil.error("Error during server shutdown", e);
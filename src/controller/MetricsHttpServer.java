@@ -0,0 +1,347 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dao.ActiveOTPStore;
+import org.hibernate.stat.Statistics;
+import util.CacheManager;
+import util.CacheRegion;
+import util.EmailQueue;
+import util.HibernateUtil;
+import util.LatencyHistogram;
+import util.LogUtil;
+import util.MetricsRegistry;
+import util.SessionTemplate;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP endpoint for monitoring:
+ * /metrics serves JVM, connection pool, Hibernate, remote method, queue and
+ * cache metrics in the Prometheus text format, and /health runs the server
+ * health check, answering 200 when healthy and 503 with the problems
+ * otherwise.
+ */
+class MetricsHttpServer {
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String C3P0_POOLS = "com.mchange.v2.c3p0:type=PooledDataSource,*";
+    private static final long HEALTH_TIMEOUT_SECONDS = 10;
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final String host;
+    private final int port;
+    private final Supplier<List<String>> healthCheck;
+    private final ExecutorService healthExecutor;
+    private HttpServer server;
+    private ExecutorService handlers;
+    private Future<List<String>> healthProbe;
+
+    /**
+     * Creates the endpoint
+     *
+     * @param host The address to listen on
+     * @param port The port to listen on
+     * @param healthCheck Returns the problems found, empty when healthy
+     */
+    MetricsHttpServer(String host, int port, Supplier<List<String>> healthCheck) {
+        this.host = host;
+        this.port = port;
+        this.healthCheck = healthCheck;
+        this.healthExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts listening
+     *
+     * @throws IOException If the port could not be opened
+     */
+    void start() throws IOException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        handlers = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "metrics-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", this::handleHealth);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * Stops listening
+     */
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdown();
+        }
+        healthExecutor.shutdownNow();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Method not allowed\n", "text/plain; charset=utf-8");
+                return;
+            }
+            PrometheusText text = new PrometheusText();
+            writeJvmMetrics(text);
+            writePoolMetrics(text);
+            writeHibernateMetrics(text);
+            writeRemoteMethodMetrics(text);
+            writeQueueMetrics(text);
+            writeCacheMetrics(text);
+            respond(exchange, 200, text.toString(), PROMETHEUS_CONTENT_TYPE);
+        } catch (Exception e) {
+            LogUtil.error("Failed to serve metrics", e);
+            respond(exchange, 500, "Failed to collect metrics\n", "text/plain; charset=utf-8");
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        List<String> problems;
+        try {
+            problems = runHealthCheck().get(HEALTH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            problems = Collections.singletonList("Health check timed out after " + HEALTH_TIMEOUT_SECONDS + " s");
+        } catch (Exception e) {
+            problems = Collections.singletonList("Health check failed: " + e);
+        }
+        if (problems.isEmpty()) {
+            respond(exchange, 200, "OK\n", "text/plain; charset=utf-8");
+        } else {
+            respond(exchange, 503, "UNHEALTHY\n" + String.join("\n", problems) + "\n", "text/plain; charset=utf-8");
+        }
+    }
+
+    // Scrapes that arrive while a probe is running share it instead of piling up
+    private synchronized Future<List<String>> runHealthCheck() {
+        if (healthProbe == null || healthProbe.isDone()) {
+            healthProbe = healthExecutor.submit(healthCheck::get);
+        }
+        return healthProbe;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, String contentType)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void writeJvmMetrics(PrometheusText text) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        text.family("jvm_memory_bytes_used", "gauge", "Used JVM memory");
+        text.sample("jvm_memory_bytes_used", "area", "heap", heap.getUsed());
+        text.sample("jvm_memory_bytes_used", "area", "nonheap", nonHeap.getUsed());
+        text.family("jvm_memory_bytes_committed", "gauge", "Committed JVM memory");
+        text.sample("jvm_memory_bytes_committed", "area", "heap", heap.getCommitted());
+        text.sample("jvm_memory_bytes_committed", "area", "nonheap", nonHeap.getCommitted());
+        text.family("jvm_memory_bytes_max", "gauge", "Maximum JVM memory, -1 if undefined");
+        text.sample("jvm_memory_bytes_max", "area", "heap", heap.getMax());
+        text.sample("jvm_memory_bytes_max", "area", "nonheap", nonHeap.getMax());
+
+        text.family("jvm_gc_collection_seconds", "summary", "Time spent in garbage collections");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.sample("jvm_gc_collection_seconds_count", "gc", gc.getName(), Math.max(0, gc.getCollectionCount()));
+            text.sample("jvm_gc_collection_seconds_sum", "gc", gc.getName(), Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        text.gauge("jvm_threads_current", "Live JVM threads", threads.getThreadCount());
+        text.gauge("jvm_threads_peak", "Peak live JVM threads", threads.getPeakThreadCount());
+        text.gauge("process_start_time_seconds", "Start time of the process since the epoch",
+            ManagementFactory.getRuntimeMXBean().getStartTime() / 1000.0);
+    }
+
+    private void writePoolMetrics(PrometheusText text) throws Exception {
+        // c3p0 registers each pool as an MBean, so no c3p0 classes are needed here
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> pools = mbeans.queryNames(new ObjectName(C3P0_POOLS), null);
+        String[][] attributes = {
+            {"c3p0_connections", "numConnectionsAllUsers", "Pooled connections"},
+            {"c3p0_connections_busy", "numBusyConnectionsAllUsers", "Pooled connections checked out"},
+            {"c3p0_connections_idle", "numIdleConnectionsAllUsers", "Pooled connections available"},
+            {"c3p0_threads_awaiting_checkout", "numThreadsAwaitingCheckoutDefaultUser", "Threads waiting for a connection"},
+            {"c3p0_max_pool_size", "maxPoolSize", "Maximum pooled connections"},
+        };
+        for (String[] attribute : attributes) {
+            text.family(attribute[0], "gauge", attribute[2]);
+            for (ObjectName pool : pools) {
+                String name = pool.getKeyProperty("name") != null
+                    ? pool.getKeyProperty("name") : pool.getKeyProperty("identityToken");
+                try {
+                    Object value = mbeans.getAttribute(pool, attribute[1]);
+                    if (value instanceof Number) {
+                        text.sample(attribute[0], "pool", name, ((Number) value).doubleValue());
+                    }
+                } catch (Exception e) {
+                    LogUtil.debug(() -> "c3p0 attribute " + attribute[1] + " unavailable: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void writeHibernateMetrics(PrometheusText text) {
+        text.gauge("hibernate_sessions_open", "Hibernate sessions currently open",
+            SessionTemplate.getOpenSessionCount());
+        Statistics statistics = HibernateUtil.getSessionFactory().getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        text.counter("hibernate_sessions_opened_total", "Sessions opened", statistics.getSessionOpenCount());
+        text.counter("hibernate_sessions_closed_total", "Sessions closed", statistics.getSessionCloseCount());
+        text.counter("hibernate_transactions_total", "Transactions completed", statistics.getTransactionCount());
+        text.counter("hibernate_transactions_successful_total", "Transactions committed",
+            statistics.getSuccessfulTransactionCount());
+        text.counter("hibernate_connections_obtained_total", "Connections obtained", statistics.getConnectCount());
+        text.counter("hibernate_statements_prepared_total", "Statements prepared",
+            statistics.getPrepareStatementCount());
+        text.counter("hibernate_entity_loads_total", "Entities loaded", statistics.getEntityLoadCount());
+        text.counter("hibernate_entity_fetches_total", "Entities fetched lazily", statistics.getEntityFetchCount());
+        text.counter("hibernate_collection_loads_total", "Collections loaded", statistics.getCollectionLoadCount());
+        text.counter("hibernate_collection_fetches_total", "Collections fetched lazily",
+            statistics.getCollectionFetchCount());
+        text.counter("hibernate_queries_executed_total", "HQL and SQL queries executed",
+            statistics.getQueryExecutionCount());
+        text.gauge("hibernate_query_execution_max_seconds", "Slowest query execution time",
+            statistics.getQueryExecutionMaxTime() / 1000.0);
+        text.counter("hibernate_optimistic_failures_total", "Optimistic lock failures",
+            statistics.getOptimisticFailureCount());
+    }
+
+    private void writeRemoteMethodMetrics(PrometheusText text) {
+        List<MetricsRegistry.MethodMetrics> methods = MetricsRegistry.getInstance().getMethods();
+        text.family("rmi_calls_total", "counter", "Remote method calls completed");
+        for (MetricsRegistry.MethodMetrics method : methods) {
+            text.sample("rmi_calls_total", "method", method.getName(), method.getCalls());
+        }
+        text.family("rmi_call_errors_total", "counter", "Remote method calls that threw, including rejected calls");
+        for (MetricsRegistry.MethodMetrics method : methods) {
+            text.sample("rmi_call_errors_total", "method", method.getName(), method.getErrors());
+        }
+        text.family("rmi_calls_in_flight", "gauge", "Remote method calls in progress");
+        for (MetricsRegistry.MethodMetrics method : methods) {
+            text.sample("rmi_calls_in_flight", "method", method.getName(), method.getInFlight());
+        }
+        text.family("rmi_call_duration_seconds", "summary", "Remote method call latency");
+        for (MetricsRegistry.MethodMetrics method : methods) {
+            LatencyHistogram histogram = method.getHistogram();
+            long[] counts = histogram.getCounts();
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            for (double quantile : QUANTILES) {
+                long micros = Math.min(LatencyHistogram.percentile(counts, quantile * 100), histogram.getMaxMicros());
+                text.sample("rmi_call_duration_seconds", "method", method.getName(),
+                    "quantile", String.valueOf(quantile), micros / 1e6);
+            }
+            text.sample("rmi_call_duration_seconds_sum", "method", method.getName(), histogram.getTotalMicros() / 1e6);
+            text.sample("rmi_call_duration_seconds_count", "method", method.getName(), count);
+        }
+    }
+
+    private void writeQueueMetrics(PrometheusText text) {
+        text.gauge("email_queue_depth", "Emails waiting to be sent", EmailQueue.getInstance().getQueueDepth());
+        text.gauge("otp_active", "Active OTPs held in memory", ActiveOTPStore.getInstance().getActiveCount());
+        text.gauge("otp_pending_writes", "OTP verification updates not yet written",
+            ActiveOTPStore.getInstance().getPendingWriteCount());
+    }
+
+    private void writeCacheMetrics(PrometheusText text) {
+        text.family("cache_hit_ratio", "gauge", "Fraction of cache lookups that were hits");
+        for (CacheRegion<?, ?> region : CacheManager.getInstance().getRegions()) {
+            text.sample("cache_hit_ratio", "region", region.getName(), region.getHitRatio());
+        }
+        text.family("cache_size", "gauge", "Entries in the cache region");
+        for (CacheRegion<?, ?> region : CacheManager.getInstance().getRegions()) {
+            text.sample("cache_size", "region", region.getName(), region.size());
+        }
+    }
+
+    /**
+     * Builds a response in the Prometheus text exposition format
+     */
+    private static class PrometheusText {
+        private final StringBuilder text = new StringBuilder(8192);
+
+        private void family(String name, String type, String help) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        private void gauge(String name, String help, double value) {
+            family(name, "gauge", help);
+            sample(name, value);
+        }
+
+        private void counter(String name, String help, double value) {
+            family(name, "counter", help);
+            sample(name, value);
+        }
+
+        private void sample(String name, double value) {
+            text.append(name).append(' ').append(format(value)).append('\n');
+        }
+
+        private void sample(String name, String label, String labelValue, double value) {
+            text.append(name).append('{').append(label).append("=\"").append(escape(labelValue)).append("\"} ")
+                .append(format(value)).append('\n');
+        }
+
+        private void sample(String name, String label, String labelValue,
+                            String label2, String labelValue2, double value) {
+            text.append(name).append('{')
+                .append(label).append("=\"").append(escape(labelValue)).append("\",")
+                .append(label2).append("=\"").append(escape(labelValue2)).append("\"} ")
+                .append(format(value)).append('\n');
+        }
+
+        private static String format(double value) {
+            if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+                return String.valueOf((long) value);
+            }
+            return String.valueOf(value);
+        }
+
+        private static String escape(String value) {
+            return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package controller;
+
+import dao.OTPDao;
+import dao.UserDao;
+import service.CustomerService;
+import service.InvoiceService;
+import service.OTPService;
+import service.OrderService;
+import service.PaymentService;
+import service.ProductService;
+import service.SupplierService;
+import service.UserService;
+import service.implementation.*;
+import util.LogUtil;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+
+/**
+ * Creates the service implementations, one instance each, and passes them
+ * their dependencies through their constructors. Services that use each
+ * other (UserService uses OTPService) call the implementation directly, in
+ * process, and share its in-memory state; only clients go through the
+ * exported stubs.
+ *
+ * Lifecycle: warmUp() loads in-memory state before the services take
+ * calls, start() exports and binds them, stop() unexports them.
+ */
+public class ServiceContainer {
+
+    private final CustomerServiceImpl customerService;
+    private final ProductServiceImpl productService;
+    private final SupplierServiceImpl supplierService;
+    private final OrderServiceImpl orderService;
+    private final InvoiceServiceImpl invoiceService;
+    private final PaymentServiceImpl paymentService;
+    private final OTPServiceImpl otpService;
+    private final UserServiceImpl userService;
+
+    /**
+     * Creates all services
+     *
+     * @throws RemoteException If a service could not be created
+     */
+    public ServiceContainer() throws RemoteException {
+        UserDao userDao = new UserDao();
+        customerService = new CustomerServiceImpl();
+        productService = new ProductServiceImpl();
+        supplierService = new SupplierServiceImpl();
+        orderService = new OrderServiceImpl();
+        invoiceService = new InvoiceServiceImpl();
+        paymentService = new PaymentServiceImpl();
+        otpService = new OTPServiceImpl(new OTPDao(), userDao);
+        userService = new UserServiceImpl(userDao, otpService);
+    }
+
+    /**
+     * Loads the state the services keep in memory, before they take calls
+     */
+    public void warmUp() {
+        otpService.warmUp();
+    }
+
+    /**
+     * Exports the services through the dispatch layer and binds them in the registry
+     *
+     * @param registry The RMI registry
+     * @throws RemoteException If a service could not be exported or bound
+     */
+    public void start(Registry registry) throws RemoteException {
+        bind(registry, "customerService", "Customer Service", CustomerService.class, customerService);
+        bind(registry, "productService", "Product Service", ProductService.class, productService);
+        bind(registry, "supplierService", "Supplier Service", SupplierService.class, supplierService);
+        bind(registry, "orderService", "Order Service", OrderService.class, orderService);
+        bind(registry, "invoiceService", "Invoice Service", InvoiceService.class, invoiceService);
+        bind(registry, "paymentService", "Payment Service", PaymentService.class, paymentService);
+        bind(registry, "otpService", "OTP Service", OTPService.class, otpService);
+        bind(registry, "userService", "User Service", UserService.class, userService);
+    }
+
+    private <T extends Remote> void bind(Registry registry, String name, String label,
+                                         Class<T> serviceInterface, T service) throws RemoteException {
+        registry.rebind(name, ServiceDispatcher.getInstance().export(name, serviceInterface, service));
+        LogUtil.info("  ✓ " + label + " registered");
+    }
+
+    /**
+     * Unexports the services. Calls in progress are allowed to finish.
+     */
+    public void stop() {
+        ServiceDispatcher.getInstance().shutdown();
+    }
+
+    public OTPServiceImpl getOTPService() {
+        return otpService;
+    }
+
+    public UserServiceImpl getUserService() {
+        return userService;
+    }
+}
@@ -0,0 +1,299 @@
+package dao;
+
+import model.OTP;
+import util.LogUtil;
+import util.SessionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory store of the active (unused, unexpired) OTPs, keyed by email and
+ * OTP type, so verification does not have to query the otps table.
+ *
+ * Attempts are counted and OTPs consumed atomically per key. The resulting
+ * changes to verification_attempts and used are written back to the otps
+ * table by a background flusher in batches (write-behind), so the table
+ * keeps its audit trail a moment later instead of on the login path.
+ * New OTPs are still inserted synchronously by OTPDao.createOTP.
+ *
+ * Configured with the system property otp.flushIntervalMs (default 500).
+ * The store is loaded from the database once at startup and is not shared
+ * between server instances.
+ */
+public class ActiveOTPStore {
+
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("otp.flushIntervalMs", 500L);
+    private static final long SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final String UPDATE_SQL =
+        "UPDATE otps SET verification_attempts = GREATEST(verification_attempts, ?), " +
+        "used = (used OR ?) WHERE id = ?";
+
+    private static ActiveOTPStore instance;
+
+    private final OTPDao otpDao = new OTPDao();
+    private final Map<String, List<OTP>> activeOTPs = new ConcurrentHashMap<>();
+    private final Map<Integer, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile long lastSweep = System.currentTimeMillis();
+    private boolean initialized;
+
+    // Statistics
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    private ActiveOTPStore() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "otp-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndSweep,
+            FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the singleton instance of ActiveOTPStore
+     *
+     * @return The ActiveOTPStore instance
+     */
+    public static synchronized ActiveOTPStore getInstance() {
+        if (instance == null) {
+            instance = new ActiveOTPStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the active OTPs from the database, once per server run
+     */
+    public synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        List<OTP> otps = otpDao.findActiveOTPs();
+        if (otps == null) {
+            // Not marked as initialized, so the next service start retries
+            LogUtil.warn("Active OTP store started empty");
+            return;
+        }
+        for (OTP otp : otps) {
+            add(otp);
+        }
+        initialized = true;
+        LogUtil.info("Active OTP store loaded " + otps.size() + " OTPs");
+    }
+
+    /**
+     * Adds a newly saved OTP
+     *
+     * @param otp The OTP, with its database ID set
+     */
+    public void add(OTP otp) {
+        activeOTPs.compute(key(otp.getEmail(), otp.getOtpType()), (key, list) -> {
+            List<OTP> result = list == null ? new ArrayList<>() : list;
+            result.add(otp);
+            return result;
+        });
+    }
+
+    /**
+     * Verifies a code. A matching valid OTP is consumed; otherwise the attempt
+     * is counted against the latest valid OTP of the email and type, as the
+     * database-backed check did.
+     *
+     * @param email The normalized email address
+     * @param otpCode The code entered by the user
+     * @param otpType The OTP type
+     * @return The consumed OTP, or null if the code is not valid
+     */
+    public OTP verify(String email, String otpCode, String otpType) {
+        OTP[] result = new OTP[1];
+        activeOTPs.computeIfPresent(key(email, otpType), (key, list) -> {
+            list.removeIf(otp -> !otp.isValid());
+            OTP latest = null;
+            for (OTP otp : list) {
+                if (otp.getOtpCode().equals(otpCode) &&
+                    (result[0] == null || otp.getCreatedAt().after(result[0].getCreatedAt()))) {
+                    result[0] = otp;
+                }
+                if (latest == null || otp.getCreatedAt().after(latest.getCreatedAt())) {
+                    latest = otp;
+                }
+            }
+            if (result[0] != null) {
+                result[0].markAsUsed();
+                list.remove(result[0]);
+                queueUpdate(result[0]);
+            } else if (latest != null) {
+                latest.incrementVerificationAttempts();
+                queueUpdate(latest);
+                if (!latest.isValid()) {
+                    list.remove(latest);
+                }
+            }
+            // Returning null drops the key once nothing is active
+            return list.isEmpty() ? null : list;
+        });
+        if (result[0] != null) {
+            verified.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+        }
+        return result[0];
+    }
+
+    private void queueUpdate(OTP otp) {
+        pendingUpdates.merge(otp.getId(), new PendingUpdate(otp.getVerificationAttempts(), otp.isUsed()),
+            PendingUpdate::combine);
+    }
+
+    private void flushAndSweep() {
+        try {
+            flush();
+            if (System.currentTimeMillis() - lastSweep >= SWEEP_INTERVAL_MS) {
+                sweep();
+                lastSweep = System.currentTimeMillis();
+            }
+        } catch (RuntimeException e) {
+            LogUtil.error("Error in OTP flusher", e);
+        }
+    }
+
+    /**
+     * Writes all pending attempt and used changes to the otps table in one batch.
+     * Failed writes are kept and retried on the next run.
+     *
+     * @return Number of rows written
+     */
+    public int flush() {
+        if (pendingUpdates.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, PendingUpdate> batch = new HashMap<>();
+        for (Integer id : new ArrayList<>(pendingUpdates.keySet())) {
+            PendingUpdate update = pendingUpdates.remove(id);
+            if (update != null) {
+                batch.put(id, update);
+            }
+        }
+        try {
+            SessionTemplate.executeJdbcInTransaction(con -> {
+                try (PreparedStatement ps = con.prepareStatement(UPDATE_SQL)) {
+                    for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+                        ps.setInt(1, entry.getValue().attempts);
+                        ps.setBoolean(2, entry.getValue().used);
+                        ps.setInt(3, entry.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                return null;
+            });
+            flushedRows.addAndGet(batch.size());
+            LogUtil.debug(() -> "Flushed " + batch.size() + " OTP verification updates");
+            return batch.size();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            LogUtil.error("Failed to flush " + batch.size() + " OTP verification updates, will retry", e);
+            for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+                pendingUpdates.merge(entry.getKey(), entry.getValue(), PendingUpdate::combine);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Drops expired OTPs
+     */
+    private void sweep() {
+        Iterator<String> keys = activeOTPs.keySet().iterator();
+        while (keys.hasNext()) {
+            activeOTPs.computeIfPresent(keys.next(), (key, list) -> {
+                list.removeIf(otp -> !otp.isValid());
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    /**
+     * Stops the flusher and writes what is still pending
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Gets the number of active OTPs held in memory
+     *
+     * @return Active OTP count
+     */
+    public int getActiveCount() {
+        int active = 0;
+        for (List<OTP> list : activeOTPs.values()) {
+            active += list.size();
+        }
+        return active;
+    }
+
+    /**
+     * Gets the number of verification updates not yet written to the database
+     *
+     * @return Pending write count
+     */
+    public int getPendingWriteCount() {
+        return pendingUpdates.size();
+    }
+
+    /**
+     * Gets a one-line summary of the store statistics
+     *
+     * @return Store statistics
+     */
+    public String getStatistics() {
+        return "Active OTPs: " + getActiveCount() +
+            ", Verified: " + verified.get() +
+            ", Rejected: " + rejected.get() +
+            ", Pending writes: " + getPendingWriteCount() +
+            ", Flushed: " + flushedRows.get() +
+            ", Flush failures: " + flushFailures.get();
+    }
+
+    private static String key(String email, String otpType) {
+        return otpType + ":" + email;
+    }
+
+    /**
+     * Latest known attempt count and used flag of an OTP, not yet written
+     */
+    private static class PendingUpdate {
+        private final int attempts;
+        private final boolean used;
+
+        private PendingUpdate(int attempts, boolean used) {
+            this.attempts = attempts;
+            this.used = used;
+        }
+
+        private static PendingUpdate combine(PendingUpdate a, PendingUpdate b) {
+            return new PendingUpdate(Math.max(a.attempts, b.attempts), a.used || b.used);
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package dao;
 
-import java.util.ArrayList;
 import model.Customer;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.CacheManager;
+import util.CacheRegion;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PageUtil;
+import util.SessionTemplate;
 
 import java.util.List;
 
@@ -14,20 +15,35 @@ import java.util.List;
  * FIXED: CustomerDao with proper RMI serialization handling
  */
 public class CustomerDao {
-    
+
+    // Customers by "id:" and "customerId:" keys
+    private static final CacheRegion<String, Customer> customerCache =
+        CacheManager.getInstance().getRegion(CacheManager.CUSTOMER);
+
+    /**
+     * Drops a customer from the cache, e.g. after one of its orders changed
+     */
+    static void evictCustomer(int customerId) {
+        customerCache.invalidateIf(customer -> customer.getId() == customerId);
+    }
+
+    /**
+     * Drops the cached customers whose order list contains the order
+     */
+    static void evictCustomersOfOrder(int orderId) {
+        customerCache.invalidateIf(customer -> customer.getOrders() != null &&
+            customer.getOrders().stream().anyMatch(order -> order.getId() == orderId));
+    }
+
     public Customer createCustomer(Customer customer) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.save(customer);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> session.save(customer));
             LogUtil.info("Customer created successfully: " + customer.getCustomerId());
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
             return customer;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Customer already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create customer: " + customer.getCustomerId(), e);
             return null;
@@ -35,233 +51,252 @@ public class CustomerDao {
     }
     
     public Customer updateCustomer(Customer customer) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(customer);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(customer);
+                return null;
+            });
             LogUtil.info("Customer updated successfully: " + customer.getCustomerId());
             return customer;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update customer: " + customer.getCustomerId(), e);
             return null;
+        } finally {
+            evictCustomer(customer.getId());
         }
     }
     
     public Customer deleteCustomer(Customer customer) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.delete(customer);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.delete(customer);
+                return null;
+            });
             LogUtil.info("Customer deleted successfully: " + customer.getCustomerId());
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
             return customer;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete customer: " + customer.getCustomerId(), e);
             return null;
+        } finally {
+            evictCustomer(customer.getId());
         }
     }
     
     public Customer findCustomerById(int id) {
-        try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Customer customer = (Customer) session.get(Customer.class, id);
-            if (customer != null) {
-                // Initialize for RMI serialization - detach from session
-                session.evict(customer);
-                LogUtil.debug("Found customer by ID: " + id);
-            } else {
-                LogUtil.debug("Customer not found with ID: " + id);
+        return customerCache.get("id:" + id, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Customer customer = (Customer) session.get(Customer.class, id);
+                    if (customer != null) {
+                        // Detach from session
+                        session.evict(customer);
+                        LogUtil.debug(() -> "Found customer by ID: " + id);
+                    } else {
+                        LogUtil.debug(() -> "Customer not found with ID: " + id);
+                    }
+                    return customer;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding customer by ID: " + id, e);
+                return null;
             }
-            session.close();
-            return customer;
-        } catch (Exception e) {
-            LogUtil.error("Error finding customer by ID: " + id, e);
-            return null;
-        }
+        });
     }
     
     public Customer findCustomerByCustomerId(String customerId) {
-        try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Customer c WHERE c.customerId = :customerId");
-            query.setParameter("customerId", customerId);
-            Customer customer = (Customer) query.uniqueResult();
-            
-            if (customer != null) {
-                session.evict(customer); // Detach for RMI
-                LogUtil.debug("Found customer by customer ID: " + customerId);
-            } else {
-                LogUtil.debug("Customer not found with customer ID: " + customerId);
+        return customerCache.get("customerId:" + customerId, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "FROM Customer c WHERE c.customerId = :customerId");
+                    query.setParameter("customerId", customerId);
+                    Customer customer = (Customer) query.uniqueResult();
+                    
+                    if (customer != null) {
+                        session.evict(customer); // Detach for RMI
+                        LogUtil.debug(() -> "Found customer by customer ID: " + customerId);
+                    } else {
+                        LogUtil.debug(() -> "Customer not found with customer ID: " + customerId);
+                    }
+                    return customer;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding customer by customer ID: " + customerId, e);
+                return null;
             }
-            session.close();
-            return customer;
-        } catch (Exception e) {
-            LogUtil.error("Error finding customer by customer ID: " + customerId, e);
-            return null;
-        }
+        });
     }
     
     public List<Customer> findCustomersByName(String name) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Customer c WHERE c.firstName LIKE :name OR c.lastName LIKE :name OR " +
-                "CONCAT(c.firstName, ' ', c.lastName) LIKE :name");
-            query.setParameter("name", "%" + name + "%");
-            List<Customer> customers = query.list();
-            
-            // Detach all customers from session for RMI serialization
-            for (Customer customer : customers) {
-                customer.setOrders(new ArrayList<>(customer.getOrders()));
-                session.evict(customer);
-            }
-            
-            LogUtil.debug("Found " + customers.size() + " customers matching name: " + name);
-            return customers;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.orders " +
+                    "WHERE c.firstName LIKE :name OR c.lastName LIKE :name OR " +
+                    "CONCAT(c.firstName, ' ', c.lastName) LIKE :name");
+                query.setParameter("name", "%" + name + "%");
+                List<Customer> customers = query.list();
+                
+                // Detach all customers from session
+                for (Customer customer : customers) {
+                            session.evict(customer);
+                }
+                
+                LogUtil.debug(() -> "Found " + customers.size() + " customers matching name: " + name);
+                return customers;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding customers by name: " + name, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public Customer findCustomerByEmail(String email) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Customer c WHERE c.email = :email");
-            query.setParameter("email", email);
-            Customer customer = (Customer) query.uniqueResult();
-            
-            if (customer != null) {
-                session.evict(customer);
-                LogUtil.debug("Found customer by email: " + email);
-            } else {
-                LogUtil.debug("Customer not found with email: " + email);
-            }
-            return customer;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Customer c WHERE c.email = :email");
+                query.setParameter("email", email);
+                Customer customer = (Customer) query.uniqueResult();
+                
+                if (customer != null) {
+                    session.evict(customer);
+                    LogUtil.debug(() -> "Found customer by email: " + email);
+                } else {
+                    LogUtil.debug(() -> "Customer not found with email: " + email);
+                }
+                return customer;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding customer by email: " + email, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Customer> findAllCustomers() {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Customer ORDER BY firstName, lastName");
-            List<Customer> customers = query.list();
-            
-            // Detach all customers from session
-            for (Customer customer : customers) {
-                customer.setOrders(new ArrayList<>(customer.getOrders()));
-                session.evict(customer);
-            }
-            
-            LogUtil.debug("Found " + customers.size() + " customers in total");
-            return customers;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.orders ORDER BY c.firstName, c.lastName");
+                List<Customer> customers = query.list();
+                
+                // Detach all customers from session
+                for (Customer customer : customers) {
+                            session.evict(customer);
+                }
+                
+                LogUtil.debug(() -> "Found " + customers.size() + " customers in total");
+                return customers;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all customers", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-    
+
+    public List<Customer> findCustomersPage(int pageNumber, int pageSize) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Customer c ORDER BY c.firstName, c.lastName, c.id");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<Customer> customers = query.list();
+
+                // Detach all customers from session
+                for (Customer customer : customers) {
+                            session.evict(customer);
+                }
+
+                LogUtil.debug(() -> "Found " + customers.size() + " customers on page " + pageNumber + " (size " + pageSize + ")");
+                return customers;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding customers page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    public List<Customer> findCustomersAfter(int lastId, int limit) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Customer c WHERE c.id > :lastId ORDER BY c.id");
+                query.setParameter("lastId", lastId);
+                query.setMaxResults(limit);
+                List<Customer> customers = query.list();
+
+                // Detach all customers from session
+                for (Customer customer : customers) {
+                            session.evict(customer);
+                }
+
+                LogUtil.debug(() -> "Found " + customers.size() + " customers after ID " + lastId);
+                return customers;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding customers after ID: " + lastId, e);
+            return null;
+        }
+    }
+
     public Customer getCustomerWithOrders(int customerId) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            // Use explicit join to avoid lazy loading issues
-            Query query = session.createQuery(
-                "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.orders WHERE c.id = :id");
-            query.setParameter("id", customerId);
-            Customer customer = (Customer) query.uniqueResult();
-            
-            if (customer != null) {
-                // Force initialization of orders collection
-                customer.getOrders().size();
-                session.evict(customer);
-                // Also evict orders to prevent proxy issues
-                if (customer.getOrders() != null) {
-                    for (Object order : customer.getOrders()) {
-                        session.evict(order);
+            return SessionTemplate.executeInSession(session -> {
+                // Use explicit join to avoid lazy loading issues
+                Query query = session.createQuery(
+                    "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.orders WHERE c.id = :id");
+                query.setParameter("id", customerId);
+                Customer customer = (Customer) query.uniqueResult();
+                
+                if (customer != null) {
+                    // Force initialization of orders collection
+                    customer.getOrders().size();
+                    session.evict(customer);
+                    // Also evict orders to prevent proxy issues
+                    if (customer.getOrders() != null) {
+                        for (Object order : customer.getOrders()) {
+                            session.evict(order);
+                        }
                     }
+                    LogUtil.debug(() -> "Found customer with orders: " + customerId + 
+                                       ", Orders count: " + customer.getOrders().size());
+                } else {
+                    LogUtil.debug(() -> "Customer not found with ID: " + customerId);
                 }
-                LogUtil.debug("Found customer with orders: " + customerId + 
-                             ", Orders count: " + customer.getOrders().size());
-            } else {
-                LogUtil.debug("Customer not found with ID: " + customerId);
-            }
-            return customer;
+                return customer;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding customer with orders: " + customerId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public boolean customerIdExists(String customerId) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(c) FROM Customer c WHERE c.customerId = :customerId");
-            query.setParameter("customerId", customerId);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(c) FROM Customer c WHERE c.customerId = :customerId");
+                query.setParameter("customerId", customerId);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if customer ID exists: " + customerId, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public boolean emailExists(String email) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(c) FROM Customer c WHERE c.email = :email");
-            query.setParameter("email", email);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(c) FROM Customer c WHERE c.email = :email");
+                query.setParameter("email", email);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if email exists: " + email, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package dao;
+
+/**
+ * Thrown inside an order transaction when a product does not have enough
+ * stock left, so the whole order is rolled back.
+ */
+public class InsufficientStockException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int productId;
+
+    /**
+     * Creates the exception
+     *
+     * @param productId The ID of the product without enough stock
+     */
+    public InsufficientStockException(int productId) {
+        super("Insufficient stock for product ID " + productId);
+        this.productId = productId;
+    }
+
+    /**
+     * Gets the ID of the product without enough stock
+     *
+     * @return The product ID
+     */
+    public int getProductId() {
+        return productId;
+    }
+}
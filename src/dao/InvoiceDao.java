@@ -1,22 +1,41 @@
 package dao;
 
+import model.BatchItemResult;
 import model.Invoice;
+import model.InvoiceSummary;
 import model.Order;
+import model.Payment;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PageUtil;
+import util.SessionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * FIXED: InvoiceDao with proper RMI serialization handling
  */
 public class InvoiceDao {
     
+    // Maximum number of invoices per IN list when fetching payments for a list
+    private static final int FETCH_CHUNK_SIZE = 1000;
+    
+    private static final String INSERT_INVOICE_SQL =
+        "INSERT INTO invoices (invoice_number, order_id, issue_date, due_date, amount, status) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+    
     /**
      * Creates a new invoice in the database
      * 
@@ -24,29 +43,68 @@ public class InvoiceDao {
      * @return The created invoice with generated ID, or null if failed
      */
     public Invoice createInvoice(Invoice invoice) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.save(invoice);
-            transaction.commit();
-            
-            // Fix RMI serialization
-            if (invoice.getPayments() != null) {
-                invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-            }
+            SessionTemplate.executeInTransaction(session -> session.save(invoice));
             
             LogUtil.info("Invoice created successfully: " + invoice.getInvoiceNumber());
             return invoice;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Invoice already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create invoice: " + invoice.getInvoiceNumber(), e);
             return null;
         }
     }
     
+    /**
+     * Creates several invoices in one transaction, with the rows sent as one
+     * JDBC batch. If the batch fails, none of the invoices is created.
+     * 
+     * @param invoices The invoices to create, already validated and with unique invoice numbers
+     * @return One result per invoice, in the same order
+     */
+    public List<BatchItemResult<Invoice>> createInvoices(List<Invoice> invoices) {
+        List<BatchItemResult<Invoice>> results = new ArrayList<>(invoices.size());
+        try  {
+            SessionTemplate.executeJdbcInTransaction(con -> {
+                try (PreparedStatement pst = con.prepareStatement(INSERT_INVOICE_SQL, new String[] {"id"})) {
+                    for (Invoice invoice : invoices) {
+                        pst.setString(1, invoice.getInvoiceNumber());
+                        pst.setInt(2, invoice.getOrderId());
+                        pst.setDate(3, invoice.getIssueDate() != null ? java.sql.Date.valueOf(invoice.getIssueDate()) : null);
+                        pst.setDate(4, invoice.getDueDate() != null ? java.sql.Date.valueOf(invoice.getDueDate()) : null);
+                        pst.setBigDecimal(5, invoice.getAmount());
+                        pst.setString(6, invoice.getStatus());
+                        pst.addBatch();
+                    }
+                    pst.executeBatch();
+                    try (ResultSet rs = pst.getGeneratedKeys()) {
+                        for (Invoice invoice : invoices) {
+                            if (!rs.next()) {
+                                break;
+                            }
+                            invoice.setId(rs.getInt(1));
+                        }
+                    }
+                }
+                return null;
+            });
+            LogUtil.info("Created batch of " + invoices.size() + " invoices");
+            for (Invoice invoice : invoices) {
+                results.add(BatchItemResult.success(invoice));
+            }
+        } catch (Exception e) {
+            LogUtil.error("Failed to create batch of " + invoices.size() + " invoices", e);
+            for (Invoice invoice : invoices) {
+                invoice.setId(0);
+                results.add(BatchItemResult.failure("Batch failed: " + ConstraintViolations.describe(e)));
+            }
+        }
+        return results;
+    }
+    
     /**
      * Updates an existing invoice in the database
      * 
@@ -54,24 +112,15 @@ public class InvoiceDao {
      * @return The updated invoice, or null if failed
      */
     public Invoice updateInvoice(Invoice invoice) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(invoice);
-            transaction.commit();
-            
-            // Fix RMI serialization
-            if (invoice.getPayments() != null) {
-                invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-            }
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(invoice);
+                return null;
+            });
             
             LogUtil.info("Invoice updated successfully: " + invoice.getInvoiceNumber());
             return invoice;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update invoice: " + invoice.getInvoiceNumber(), e);
             return null;
         }
@@ -85,22 +134,17 @@ public class InvoiceDao {
      * @return Number of rows affected
      */
     public int updateInvoiceStatus(int invoiceId, String status) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            Query query = session.createQuery(
-                "UPDATE Invoice i SET i.status = :status WHERE i.id = :id");
-            query.setParameter("status", status);
-            query.setParameter("id", invoiceId);
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
+            int rowsAffected = SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE Invoice i SET i.status = :status WHERE i.id = :id");
+                query.setParameter("status", status);
+                query.setParameter("id", invoiceId);
+                return query.executeUpdate();
+            });
             LogUtil.info("Updated invoice status for invoice ID " + invoiceId + " to " + status);
             return rowsAffected;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update invoice status for invoice ID: " + invoiceId, e);
             return 0;
         }
@@ -113,28 +157,20 @@ public class InvoiceDao {
      * @return The invoice if found, null otherwise
      */
     public Invoice findInvoiceById(int id) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Invoice invoice = (Invoice) session.get(Invoice.class, id);
-            if (invoice != null) {
-                session.evict(invoice);
-                // Fix RMI serialization
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
+            return SessionTemplate.executeInSession(session -> {
+                Invoice invoice = (Invoice) session.get(Invoice.class, id);
+                if (invoice != null) {
+                    detach(session, invoice);
+                    LogUtil.debug(() -> "Found invoice by ID: " + id);
+                } else {
+                    LogUtil.debug(() -> "Invoice not found with ID: " + id);
                 }
-                LogUtil.debug("Found invoice by ID: " + id);
-            } else {
-                LogUtil.debug("Invoice not found with ID: " + id);
-            }
-            return invoice;
+                return invoice;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoice by ID: " + id, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -145,32 +181,24 @@ public class InvoiceDao {
      * @return The invoice if found, null otherwise
      */
     public Invoice findInvoiceByNumber(String invoiceNumber) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.invoiceNumber = :invoiceNumber");
-            query.setParameter("invoiceNumber", invoiceNumber);
-            Invoice invoice = (Invoice) query.uniqueResult();
-            
-            if (invoice != null) {
-                session.evict(invoice);
-                // Fix RMI serialization
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.invoiceNumber = :invoiceNumber");
+                query.setParameter("invoiceNumber", invoiceNumber);
+                Invoice invoice = (Invoice) query.uniqueResult();
+                
+                if (invoice != null) {
+                    detach(session, invoice);
+                    LogUtil.debug(() -> "Found invoice by number: " + invoiceNumber);
+                } else {
+                    LogUtil.debug(() -> "Invoice not found with number: " + invoiceNumber);
                 }
-                LogUtil.debug("Found invoice by number: " + invoiceNumber);
-            } else {
-                LogUtil.debug("Invoice not found with number: " + invoiceNumber);
-            }
-            return invoice;
+                return invoice;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoice by number: " + invoiceNumber, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -181,31 +209,20 @@ public class InvoiceDao {
      * @return List of matching invoices
      */
     public List<Invoice> findInvoicesByOrder(Order order) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.order = :order ORDER BY i.issueDate DESC");
-            query.setParameter("order", order);
-            List<Invoice> invoices = query.list();
-            
-            // Fix RMI serialization for all invoices
-            for (Invoice invoice : invoices) {
-                session.evict(invoice);
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-                }
-            }
-            
-            LogUtil.debug("Found " + invoices.size() + " invoices for order: " + order.getOrderId());
-            return invoices;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.order = :order ORDER BY i.issueDate DESC");
+                query.setParameter("order", order);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+                
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices for order: " + order.getOrderId());
+                return invoices;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by order: " + order.getId(), e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -216,31 +233,20 @@ public class InvoiceDao {
      * @return List of matching invoices
      */
     public List<Invoice> findInvoicesByStatus(String status) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.status = :status ORDER BY i.issueDate DESC");
-            query.setParameter("status", status);
-            List<Invoice> invoices = query.list();
-            
-            // Fix RMI serialization for all invoices
-            for (Invoice invoice : invoices) {
-                session.evict(invoice);
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-                }
-            }
-            
-            LogUtil.debug("Found " + invoices.size() + " invoices with status: " + status);
-            return invoices;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.status = :status ORDER BY i.issueDate DESC");
+                query.setParameter("status", status);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+                
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices with status: " + status);
+                return invoices;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by status: " + status, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -250,33 +256,22 @@ public class InvoiceDao {
      * @return List of overdue invoices
      */
     public List<Invoice> findOverdueInvoices() {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.dueDate < :today AND i.status != :paid AND i.status != :cancelled ORDER BY i.dueDate");
-            query.setParameter("today", LocalDate.now());
-            query.setParameter("paid", Invoice.STATUS_PAID);
-            query.setParameter("cancelled", Invoice.STATUS_CANCELLED);
-            List<Invoice> invoices = query.list();
-            
-            // Fix RMI serialization for all invoices
-            for (Invoice invoice : invoices) {
-                session.evict(invoice);
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-                }
-            }
-            
-            LogUtil.debug("Found " + invoices.size() + " overdue invoices");
-            return invoices;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.dueDate < :today AND i.status != :paid AND i.status != :cancelled ORDER BY i.dueDate");
+                query.setParameter("today", LocalDate.now());
+                query.setParameter("paid", Invoice.STATUS_PAID);
+                query.setParameter("cancelled", Invoice.STATUS_CANCELLED);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+                
+                LogUtil.debug(() -> "Found " + invoices.size() + " overdue invoices");
+                return invoices;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding overdue invoices", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -288,32 +283,21 @@ public class InvoiceDao {
      * @return List of matching invoices
      */
     public List<Invoice> findInvoicesByDateRange(LocalDate startDate, LocalDate endDate) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.issueDate BETWEEN :startDate AND :endDate ORDER BY i.issueDate DESC");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Invoice> invoices = query.list();
-            
-            // Fix RMI serialization for all invoices
-            for (Invoice invoice : invoices) {
-                session.evict(invoice);
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-                }
-            }
-            
-            LogUtil.debug("Found " + invoices.size() + " invoices between " + startDate + " and " + endDate);
-            return invoices;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.issueDate BETWEEN :startDate AND :endDate ORDER BY i.issueDate DESC");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+                
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices between " + startDate + " and " + endDate);
+                return invoices;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by date range: " + startDate + " to " + endDate, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -323,32 +307,107 @@ public class InvoiceDao {
      * @return List of all invoices
      */
     public List<Invoice> findAllInvoices() {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice ORDER BY issueDate DESC");
-            List<Invoice> invoices = query.list();
-            
-            // Fix RMI serialization for all invoices
-            for (Invoice invoice : invoices) {
-                session.evict(invoice);
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-                }
-            }
-            
-            LogUtil.debug("Found " + invoices.size() + " invoices in total");
-            return invoices;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Invoice ORDER BY issueDate DESC");
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+                
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices in total");
+                return invoices;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all invoices", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-    
+
+    /**
+     * Gets one page of invoices, newest first
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of invoices per page
+     * @return List of invoices on the requested page
+     */
+    public List<Invoice> findInvoicesPage(int pageNumber, int pageSize) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Invoice i ORDER BY i.issueDate DESC, i.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices on page " + pageNumber + " (size " + pageSize + ")");
+                return invoices;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoices page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the next batch of invoices after a keyset cursor, newest first
+     *
+     * @param lastIssueDate Issue date of the last invoice already seen, or null for the first batch
+     * @param lastId Database ID of the last invoice already seen
+     * @param limit Maximum number of invoices to return
+     * @return List of invoices following the cursor
+     */
+    public List<Invoice> findInvoicesAfter(LocalDate lastIssueDate, int lastId, int limit) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query;
+                if (lastIssueDate == null) {
+                    query = session.createQuery("FROM Invoice i ORDER BY i.issueDate DESC, i.id DESC");
+                } else {
+                    query = session.createQuery(
+                        "FROM Invoice i WHERE i.issueDate < :lastDate OR (i.issueDate = :lastDate AND i.id < :lastId) " +
+                        "ORDER BY i.issueDate DESC, i.id DESC");
+                    query.setParameter("lastDate", lastIssueDate);
+                    query.setParameter("lastId", lastId);
+                }
+                query.setMaxResults(limit);
+                List<Invoice> invoices = query.list();
+                detachAll(session, invoices);
+
+                LogUtil.debug(() -> "Found " + invoices.size() + " invoices after cursor (" + lastIssueDate + ", " + lastId + ")");
+                return invoices;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoices after cursor: " + lastIssueDate + ", " + lastId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets one page of invoice summaries, newest first.
+     * Uses a constructor projection, so only the listed columns are read.
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of invoices per page
+     * @return List of invoice summaries on the requested page
+     */
+    public List<InvoiceSummary> findInvoiceSummaries(int pageNumber, int pageSize) {
+        try   {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT new model.InvoiceSummary(i.id, i.invoiceNumber, o.orderId, i.issueDate, i.dueDate, i.amount, i.status) " +
+                    "FROM Invoice i JOIN i.order o ORDER BY i.issueDate DESC, i.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<InvoiceSummary> summaries = query.list();
+
+                LogUtil.debug(() -> "Found " + summaries.size() + " invoice summaries on page " + pageNumber + " (size " + pageSize + ")");
+                return summaries;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoice summaries page: " + pageNumber, e);
+            return null;
+        }
+    }
+
     /**
      * Gets an invoice with its order information
      * 
@@ -356,35 +415,27 @@ public class InvoiceDao {
      * @return The invoice with order loaded
      */
     public Invoice getInvoiceWithOrder(int invoiceId) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i LEFT JOIN FETCH i.order WHERE i.id = :id");
-            query.setParameter("id", invoiceId);
-            Invoice invoice = (Invoice) query.uniqueResult();
-            
-            if (invoice != null) {
-                session.evict(invoice);
-                if (invoice.getOrder() != null) {
-                    session.evict(invoice.getOrder());
-                }
-                // Fix RMI serialization
-                if (invoice.getPayments() != null) {
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i LEFT JOIN FETCH i.order WHERE i.id = :id");
+                query.setParameter("id", invoiceId);
+                Invoice invoice = (Invoice) query.uniqueResult();
+                
+                if (invoice != null) {
+                    detach(session, invoice);
+                    if (invoice.getOrder() != null) {
+                        session.evict(invoice.getOrder());
+                    }
+                    LogUtil.debug(() -> "Found invoice with order: " + invoiceId);
+                } else {
+                    LogUtil.debug(() -> "Invoice not found with ID: " + invoiceId);
                 }
-                LogUtil.debug("Found invoice with order: " + invoiceId);
-            } else {
-                LogUtil.debug("Invoice not found with ID: " + invoiceId);
-            }
-            return invoice;
+                return invoice;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoice with order: " + invoiceId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -395,40 +446,25 @@ public class InvoiceDao {
      * @return The invoice with payments loaded
      */
     public Invoice getInvoiceWithPayments(int invoiceId) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i LEFT JOIN FETCH i.payments WHERE i.id = :id");
-            query.setParameter("id", invoiceId);
-            Invoice invoice = (Invoice) query.uniqueResult();
-            
-            if (invoice != null) {
-                // Force initialization of payments collection
-                invoice.getPayments().size();
-                session.evict(invoice);
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i LEFT JOIN FETCH i.payments WHERE i.id = :id");
+                query.setParameter("id", invoiceId);
+                Invoice invoice = (Invoice) query.uniqueResult();
                 
-                // Detach all payments
-                if (invoice.getPayments() != null) {
-                    for (Object payment : invoice.getPayments()) {
-                        session.evict(payment);
-                    }
-                    // Fix RMI serialization
-                    invoice.setPayments(new ArrayList<>(invoice.getPayments()));
+                if (invoice != null) {
+                    detach(session, invoice);
+                    
+                    LogUtil.debug(() -> "Found invoice with payments: " + invoiceId + ", Payments count: " + invoice.getPayments().size());
+                } else {
+                    LogUtil.debug(() -> "Invoice not found with ID: " + invoiceId);
                 }
-                
-                LogUtil.debug("Found invoice with payments: " + invoiceId + ", Payments count: " + invoice.getPayments().size());
-            } else {
-                LogUtil.debug("Invoice not found with ID: " + invoiceId);
-            }
-            return invoice;
+                return invoice;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding invoice with payments: " + invoiceId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -439,31 +475,21 @@ public class InvoiceDao {
      * @return The deleted invoice, or null if failed
      */
     public Invoice deleteInvoice(Invoice invoice) {
-        Transaction transaction = null;
+        // Check if the invoice has payments
+        if (invoice.getPayments() != null && !invoice.getPayments().isEmpty()) {
+            LogUtil.warn("Cannot delete invoice with payments: " + invoice.getInvoiceNumber());
+            return null;
+        }
+        
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Check if the invoice has payments
-            if (invoice.getPayments() != null && !invoice.getPayments().isEmpty()) {
-                LogUtil.warn("Cannot delete invoice with payments: " + invoice.getInvoiceNumber());
+            SessionTemplate.executeInTransaction(session -> {
+                session.delete(invoice);
                 return null;
-            }
-            
-            session.delete(invoice);
-            transaction.commit();
-            
-            // Fix RMI serialization
-            if (invoice.getPayments() != null) {
-                invoice.setPayments(new ArrayList<>(invoice.getPayments()));
-            }
+            });
             
             LogUtil.info("Invoice deleted successfully: " + invoice.getInvoiceNumber());
             return invoice;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete invoice: " + invoice.getInvoiceNumber(), e);
             return null;
         }
@@ -476,21 +502,91 @@ public class InvoiceDao {
      * @return true if exists, false otherwise
      */
     public boolean invoiceNumberExists(String invoiceNumber) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(i) FROM Invoice i WHERE i.invoiceNumber = :invoiceNumber");
-            query.setParameter("invoiceNumber", invoiceNumber);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(i) FROM Invoice i WHERE i.invoiceNumber = :invoiceNumber");
+                query.setParameter("invoiceNumber", invoiceNumber);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if invoice number exists: " + invoiceNumber, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
+        }
+    }
+    
+    /**
+     * Finds which of the given invoice numbers already exist, with one IN
+     * query per FETCH_CHUNK_SIZE numbers
+     * 
+     * @param invoiceNumbers The invoice numbers to check
+     * @return The invoice numbers that exist, or null if the query failed
+     */
+    public Set<String> findExistingInvoiceNumbers(Collection<String> invoiceNumbers) {
+        try  {
+            List<String> numbers = new ArrayList<>(invoiceNumbers);
+            return SessionTemplate.executeInSession(session -> {
+                Set<String> existing = new HashSet<>();
+                for (int i = 0; i < numbers.size(); i += FETCH_CHUNK_SIZE) {
+                    Query query = session.createQuery(
+                        "SELECT i.invoiceNumber FROM Invoice i WHERE i.invoiceNumber IN (:numbers)");
+                    query.setParameterList("numbers", numbers.subList(i, Math.min(i + FETCH_CHUNK_SIZE, numbers.size())));
+                    existing.addAll(query.list());
+                }
+                return existing;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error checking " + invoiceNumbers.size() + " invoice numbers", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Detaches a list of invoices with their payments loaded.
+     * The payments of the whole list are fetched up front, so a list costs a
+     * fixed number of queries instead of one lazy load per invoice.
+     */
+    private static void detachAll(Session session, List<Invoice> invoices) {
+        fetchPayments(session, invoices);
+        for (Invoice invoice : invoices) {
+            detach(session, invoice);
+        }
+    }
+    
+    /**
+     * Loads the payments of all invoices with one query per chunk of invoices
+     * and sets them as plain lists. All queries run before any collection is
+     * replaced, so no auto-flush sees a half-modified invoice.
+     */
+    private static void fetchPayments(Session session, List<Invoice> invoices) {
+        if (invoices.size() < 2) {
+            return;
+        }
+        Map<Integer, List<Payment>> paymentsByInvoice = new HashMap<>();
+        for (int i = 0; i < invoices.size(); i += FETCH_CHUNK_SIZE) {
+            List<Integer> ids = new ArrayList<>();
+            for (Invoice invoice : invoices.subList(i, Math.min(i + FETCH_CHUNK_SIZE, invoices.size()))) {
+                ids.add(invoice.getId());
             }
+            Query query = session.createQuery("FROM Payment p WHERE p.invoice.id IN (:ids)");
+            query.setParameterList("ids", ids);
+            for (Object row : query.list()) {
+                Payment payment = (Payment) row;
+                paymentsByInvoice.computeIfAbsent(payment.getInvoice().getId(), id -> new ArrayList<>()).add(payment);
+            }
+        }
+        for (Invoice invoice : invoices) {
+            invoice.setPayments(paymentsByInvoice.getOrDefault(invoice.getId(), new ArrayList<>()));
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Loads an invoice's payments and detaches it. The payments are loaded
+     * before the evict, while they still can be.
+     */
+    private static void detach(Session session, Invoice invoice) {
+        Hibernate.initialize(invoice.getPayments());
+        session.evict(invoice);
+    }
+}
@@ -1,11 +1,9 @@
 package dao;
 
 import model.OTP;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
 import util.LogUtil;
+import util.SessionTemplate;
 
 import java.util.Date;
 import java.util.List;
@@ -24,12 +22,7 @@ public class OTPDao {
      * @return The created OTP with generated ID, or null if failed
      */
     public OTP createOTP(OTP otp) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
             // Ensure dates are properly set
             if (otp.getCreatedAt() == null) {
                 otp.setCreatedAt(new Date());
@@ -41,20 +34,12 @@ public class OTPDao {
                 otp.setExpiresAt(cal.getTime());
             }
             
-            session.save(otp);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> session.save(otp));
             LogUtil.info("OTP created successfully for email: " + otp.getEmail());
             return otp;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to create OTP for email: " + otp.getEmail(), e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -65,25 +50,16 @@ public class OTPDao {
      * @return The updated OTP, or null if failed
      */
     public OTP updateOTP(OTP otp) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(otp);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(otp);
+                return null;
+            });
             LogUtil.info("OTP updated successfully for email: " + otp.getEmail());
             return otp;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update OTP for email: " + otp.getEmail(), e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -94,24 +70,20 @@ public class OTPDao {
      * @return The OTP if found, null otherwise
      */
     public OTP findOTPById(int id) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            OTP otp = (OTP) session.get(OTP.class, id);
-            if (otp != null) {
-                session.evict(otp);
-                LogUtil.debug("Found OTP by ID: " + id);
-            } else {
-                LogUtil.debug("OTP not found with ID: " + id);
-            }
-            return otp;
+            return SessionTemplate.executeInSession(session -> {
+                OTP otp = (OTP) session.get(OTP.class, id);
+                if (otp != null) {
+                    session.evict(otp);
+                    LogUtil.debug(() -> "Found OTP by ID: " + id);
+                } else {
+                    LogUtil.debug(() -> "OTP not found with ID: " + id);
+                }
+                return otp;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding OTP by ID: " + id, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -124,35 +96,31 @@ public class OTPDao {
      * @return The valid OTP if found, null otherwise
      */
     public OTP findValidOTP(String email, String otpCode, String otpType) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM OTP o WHERE o.email = :email AND o.otpCode = :otpCode AND o.otpType = :otpType " +
-                "AND o.used = false AND o.expiresAt > :now AND o.verificationAttempts < :maxAttempts " +
-                "ORDER BY o.createdAt DESC");
-            query.setParameter("email", email);
-            query.setParameter("otpCode", otpCode);
-            query.setParameter("otpType", otpType);
-            query.setParameter("now", new Date());
-            query.setParameter("maxAttempts", OTP.MAX_VERIFICATION_ATTEMPTS);
-            query.setMaxResults(1);
-            
-            OTP otp = (OTP) query.uniqueResult();
-            if (otp != null) {
-                session.evict(otp);
-                LogUtil.debug("Found valid OTP for email: " + email);
-            } else {
-                LogUtil.debug("No valid OTP found for email: " + email + " with code: " + otpCode);
-            }
-            return otp;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM OTP o WHERE o.email = :email AND o.otpCode = :otpCode AND o.otpType = :otpType " +
+                    "AND o.used = false AND o.expiresAt > :now AND o.verificationAttempts < :maxAttempts " +
+                    "ORDER BY o.createdAt DESC");
+                query.setParameter("email", email);
+                query.setParameter("otpCode", otpCode);
+                query.setParameter("otpType", otpType);
+                query.setParameter("now", new Date());
+                query.setParameter("maxAttempts", OTP.MAX_VERIFICATION_ATTEMPTS);
+                query.setMaxResults(1);
+                
+                OTP otp = (OTP) query.uniqueResult();
+                if (otp != null) {
+                    session.evict(otp);
+                    LogUtil.debug(() -> "Found valid OTP for email: " + email);
+                } else {
+                    LogUtil.debug(() -> "No valid OTP found for email: " + email + " with code: " + otpCode);
+                }
+                return otp;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding valid OTP for email: " + email, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -164,31 +132,27 @@ public class OTPDao {
      * @return The latest OTP if found, null otherwise
      */
     public OTP findLatestOTPByEmail(String email, String otpType) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
-                "ORDER BY o.createdAt DESC");
-            query.setParameter("email", email);
-            query.setParameter("otpType", otpType);
-            query.setMaxResults(1);
-            
-            OTP otp = (OTP) query.uniqueResult();
-            if (otp != null) {
-                session.evict(otp);
-                LogUtil.debug("Found latest OTP for email: " + email);
-            } else {
-                LogUtil.debug("No OTP found for email: " + email);
-            }
-            return otp;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
+                    "ORDER BY o.createdAt DESC");
+                query.setParameter("email", email);
+                query.setParameter("otpType", otpType);
+                query.setMaxResults(1);
+                
+                OTP otp = (OTP) query.uniqueResult();
+                if (otp != null) {
+                    session.evict(otp);
+                    LogUtil.debug(() -> "Found latest OTP for email: " + email);
+                } else {
+                    LogUtil.debug(() -> "No OTP found for email: " + email);
+                }
+                return otp;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding latest OTP for email: " + email, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -200,38 +164,33 @@ public class OTPDao {
      * @return List of recent OTPs
      */
     public List<OTP> findRecentOTPsByEmail(String email, String otpType) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
             // Calculate one hour ago
             Calendar cal = Calendar.getInstance();
             cal.add(Calendar.HOUR_OF_DAY, -1);
             Date oneHourAgo = cal.getTime();
             
-            Query query = session.createQuery(
-                "FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
-                "AND o.createdAt > :oneHourAgo ORDER BY o.createdAt DESC");
-            query.setParameter("email", email);
-            query.setParameter("otpType", otpType);
-            query.setParameter("oneHourAgo", oneHourAgo);
-            
-            List<OTP> otps = query.list();
-            
-            // Detach all OTPs from session
-            for (OTP otp : otps) {
-                session.evict(otp);
-            }
-            
-            LogUtil.debug("Found " + otps.size() + " recent OTPs for email: " + email);
-            return otps;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
+                    "AND o.createdAt > :oneHourAgo ORDER BY o.createdAt DESC");
+                query.setParameter("email", email);
+                query.setParameter("otpType", otpType);
+                query.setParameter("oneHourAgo", oneHourAgo);
+                
+                List<OTP> otps = query.list();
+                
+                // Detach all OTPs from session
+                for (OTP otp : otps) {
+                    session.evict(otp);
+                }
+                
+                LogUtil.debug(() -> "Found " + otps.size() + " recent OTPs for email: " + email);
+                return otps;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding recent OTPs for email: " + email, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -242,18 +201,13 @@ public class OTPDao {
      * @return Number of rows affected
      */
     public int markOTPAsUsed(int otpId) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            Query query = session.createQuery(
-                "UPDATE OTP o SET o.used = true WHERE o.id = :id");
-            query.setParameter("id", otpId);
-            
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
+            int rowsAffected = SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE OTP o SET o.used = true WHERE o.id = :id");
+                query.setParameter("id", otpId);
+                return query.executeUpdate();
+            });
             
             if (rowsAffected > 0) {
                 LogUtil.info("Marked OTP as used: " + otpId);
@@ -261,15 +215,8 @@ public class OTPDao {
             
             return rowsAffected;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to mark OTP as used: " + otpId, e);
             return 0;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -280,77 +227,35 @@ public class OTPDao {
      * @return Number of rows affected
      */
     public int incrementVerificationAttempts(int otpId) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            Query query = session.createQuery(
-                "UPDATE OTP o SET o.verificationAttempts = o.verificationAttempts + 1 WHERE o.id = :id");
-            query.setParameter("id", otpId);
-            
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
+            int rowsAffected = SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE OTP o SET o.verificationAttempts = o.verificationAttempts + 1 WHERE o.id = :id");
+                query.setParameter("id", otpId);
+                return query.executeUpdate();
+            });
             
             if (rowsAffected > 0) {
-                LogUtil.debug("Incremented verification attempts for OTP: " + otpId);
+                LogUtil.debug(() -> "Incremented verification attempts for OTP: " + otpId);
             }
             
             return rowsAffected;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to increment verification attempts for OTP: " + otpId, e);
             return 0;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     /**
-     * Deletes expired OTPs from the database (cleanup method)
+     * Deletes expired OTPs from the database (cleanup method).
+     * OTPs that expired more than 24 hours ago or are used are purged in
+     * chunks by OTPPurger.
      * 
      * @return Number of deleted OTPs
      */
     public int deleteExpiredOTPs() {
-        Transaction transaction = null;
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Delete OTPs that expired more than 24 hours ago or are used
-            Calendar cal = Calendar.getInstance();
-            cal.add(Calendar.DAY_OF_MONTH, -1);
-            Date oneDayAgo = cal.getTime();
-            
-            Query query = session.createQuery(
-                "DELETE FROM OTP o WHERE o.expiresAt < :oneDayAgo OR o.used = true");
-            query.setParameter("oneDayAgo", oneDayAgo);
-            
-            int deletedCount = query.executeUpdate();
-            transaction.commit();
-            
-            if (deletedCount > 0) {
-                LogUtil.info("Deleted " + deletedCount + " expired/used OTPs");
-            }
-            
-            return deletedCount;
-        } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
-            LogUtil.error("Failed to delete expired OTPs", e);
-            return 0;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
-        }
+        OTPPurger.PurgeResult result = OTPPurger.getInstance().purge();
+        return result == null ? 0 : result.getRowsPurged();
     }
     
     /**
@@ -361,31 +266,79 @@ public class OTPDao {
      * @return Count of OTPs sent in the last hour
      */
     public long getOTPCountLastHour(String email, String otpType) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            
             // Calculate one hour ago
             Calendar cal = Calendar.getInstance();
             cal.add(Calendar.HOUR_OF_DAY, -1);
             Date oneHourAgo = cal.getTime();
             
-            Query query = session.createQuery(
-                "SELECT COUNT(o) FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
-                "AND o.createdAt > :oneHourAgo");
-            query.setParameter("email", email);
-            query.setParameter("otpType", otpType);
-            query.setParameter("oneHourAgo", oneHourAgo);
-            
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(o) FROM OTP o WHERE o.email = :email AND o.otpType = :otpType " +
+                    "AND o.createdAt > :oneHourAgo");
+                query.setParameter("email", email);
+                query.setParameter("otpType", otpType);
+                query.setParameter("oneHourAgo", oneHourAgo);
+                return (Long) query.uniqueResult();
+            });
             return count != null ? count : 0;
         } catch (Exception e) {
             LogUtil.error("Error getting OTP count for email: " + email, e);
             return 0;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Gets the email, type and creation time of every OTP created since a
+     * given time, for rebuilding the in-memory rate limiter
+     * 
+     * @param since Only include OTPs created after this time
+     * @return Rows of [email, otpType, createdAt], or null if the query failed
+     */
+    public List<Object[]> findOTPSendTimesSince(Date since) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT o.email, o.otpType, o.createdAt FROM OTP o " +
+                    "WHERE o.createdAt > :since ORDER BY o.createdAt");
+                query.setParameter("since", since);
+                List<Object[]> rows = query.list();
+                LogUtil.debug(() -> "Found " + rows.size() + " OTPs created since " + since);
+                return rows;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding OTP send times since: " + since, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Finds all OTPs that can still be verified (unused, unexpired and within
+     * the attempt limit), for loading the in-memory active OTP store
+     * 
+     * @return List of active OTPs, or null if the query failed
+     */
+    public List<OTP> findActiveOTPs() {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM OTP o WHERE o.used = false AND o.expiresAt > :now " +
+                    "AND o.verificationAttempts < :maxAttempts ORDER BY o.createdAt");
+                query.setParameter("now", new Date());
+                query.setParameter("maxAttempts", OTP.MAX_VERIFICATION_ATTEMPTS);
+                List<OTP> otps = query.list();
+                
+                // Detach all OTPs from session
+                for (OTP otp : otps) {
+                    session.evict(otp);
+                }
+                
+                LogUtil.debug(() -> "Found " + otps.size() + " active OTPs");
+                return otps;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding active OTPs", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package dao;
+
+import util.LogUtil;
+import util.SessionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purges expired and used OTPs from the otps table.
+ *
+ * Rows are deleted in chunks of otp.purgeChunkSize (default 1000), each in
+ * its own short transaction, so a purge never holds locks on a large part of
+ * the table. Expired rows are found through the expires_at index and used
+ * rows through a partial index, instead of one scan over the whole table.
+ *
+ * If the table has been converted to the daily-partitioned layout
+ * (sql/otps_partitioned.sql), partitions whose whole day expired more than
+ * RETENTION_DAYS ago are dropped instead of deleted row by row, and the
+ * partitions for the next days are created ahead of time.
+ *
+ * Hibernate writes expires_at as the server JVM's local time, so the cutoff
+ * is computed in Java and bound as a parameter, and the partition days are
+ * the JVM's local days, rather than relying on the database clock and zone.
+ */
+public class OTPPurger {
+
+    private static final int CHUNK_SIZE = Integer.getInteger("otp.purgeChunkSize", 1000);
+    private static final int RETENTION_DAYS = 1;
+    private static final int PARTITIONS_AHEAD = 2;
+    private static final String PARTITION_PREFIX = "otps_p";
+    private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String DELETE_EXPIRED_SQL =
+        "DELETE FROM otps WHERE id IN (SELECT id FROM otps WHERE expires_at < ? LIMIT ?)";
+    private static final String DELETE_USED_SQL =
+        "DELETE FROM otps WHERE id IN (SELECT id FROM otps WHERE used LIMIT ?)";
+
+    private static final String[] INDEX_SQL = {
+        // Rate-limit history and the latest-OTP lookups
+        "CREATE INDEX IF NOT EXISTS idx_otps_email_type_created ON otps (email, otp_type, created_at)",
+        // Expired-row purge
+        "CREATE INDEX IF NOT EXISTS idx_otps_expires_at ON otps (expires_at)",
+        // Used-row purge; stays small because used rows are purged every run
+        "CREATE INDEX IF NOT EXISTS idx_otps_used ON otps (id) WHERE used"
+    };
+
+    private static OTPPurger instance;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private boolean initialized;
+    private volatile PurgeResult lastResult;
+
+    // Statistics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalRowsPurged = new AtomicLong();
+    private final AtomicLong totalPartitionsDropped = new AtomicLong();
+
+    private OTPPurger() {
+    }
+
+    /**
+     * Gets the singleton instance of OTPPurger
+     *
+     * @return The OTPPurger instance
+     */
+    public static synchronized OTPPurger getInstance() {
+        if (instance == null) {
+            instance = new OTPPurger();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the otps indexes and, for the partitioned layout, the upcoming
+     * partitions, once per server run
+     */
+    public synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        try {
+            SessionTemplate.executeJdbcInTransaction(con -> {
+                try (Statement statement = con.createStatement()) {
+                    for (String sql : INDEX_SQL) {
+                        statement.execute(sql);
+                    }
+                }
+                return null;
+            });
+            if (isPartitioned()) {
+                createUpcomingPartitions();
+                LogUtil.info("OTP table uses daily partitions");
+            }
+            initialized = true;
+        } catch (Exception e) {
+            // Not marked as initialized, so the next service start retries
+            LogUtil.error("Failed to prepare OTP table indexes", e);
+        }
+    }
+
+    /**
+     * Runs one purge. Only one purge runs at a time; a purge requested while
+     * another is running is skipped.
+     *
+     * @return The result of the run, or null if a purge was already running
+     */
+    public PurgeResult purge() {
+        if (!running.compareAndSet(false, true)) {
+            LogUtil.warn("OTP purge already running, skipped");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        PurgeResult result = new PurgeResult();
+        try {
+            if (isPartitioned()) {
+                result.partitionsDropped = dropExpiredPartitions();
+                createUpcomingPartitions();
+            }
+            Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+            deleteInChunks(DELETE_EXPIRED_SQL, cutoff, result);
+            deleteInChunks(DELETE_USED_SQL, null, result);
+        } catch (Exception e) {
+            result.failed = true;
+            LogUtil.error("OTP purge stopped after " + result.rowsPurged + " rows", e);
+        } finally {
+            result.elapsedMs = System.currentTimeMillis() - start;
+            running.set(false);
+        }
+
+        runs.incrementAndGet();
+        totalRowsPurged.addAndGet(result.rowsPurged);
+        totalPartitionsDropped.addAndGet(result.partitionsDropped);
+        lastResult = result;
+        LogUtil.info("OTP purge: " + result);
+        return result;
+    }
+
+    /**
+     * Deletes matching rows a chunk at a time until a chunk comes back short
+     *
+     * @param cutoff Bound before the chunk size if not null
+     */
+    private void deleteInChunks(String sql, Timestamp cutoff, PurgeResult result) throws Exception {
+        int deleted;
+        do {
+            deleted = SessionTemplate.executeJdbcInTransaction(con -> {
+                try (PreparedStatement ps = con.prepareStatement(sql)) {
+                    int index = 1;
+                    if (cutoff != null) {
+                        ps.setTimestamp(index++, cutoff);
+                    }
+                    ps.setInt(index, CHUNK_SIZE);
+                    return ps.executeUpdate();
+                }
+            });
+            result.rowsPurged += deleted;
+            result.chunks++;
+        } while (deleted >= CHUNK_SIZE);
+    }
+
+    /**
+     * Checks whether otps is a partitioned table (PostgreSQL 10+)
+     */
+    private boolean isPartitioned() throws Exception {
+        return SessionTemplate.executeJdbc(con -> {
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT relkind FROM pg_class WHERE relname = 'otps' AND pg_table_is_visible(oid)")) {
+                return rs.next() && "p".equals(rs.getString(1));
+            }
+        });
+    }
+
+    /**
+     * Drops the daily partitions whose day ended before the retention cutoff
+     *
+     * @return Number of partitions dropped
+     */
+    private int dropExpiredPartitions() throws Exception {
+        LocalDate cutoffDay = LocalDate.now().minusDays(RETENTION_DAYS);
+        List<String> partitions = SessionTemplate.executeJdbc(con -> {
+            List<String> names = new ArrayList<>();
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT c.relname FROM pg_inherits i " +
+                     "JOIN pg_class c ON c.oid = i.inhrelid " +
+                     "JOIN pg_class p ON p.oid = i.inhparent " +
+                     "WHERE p.relname = 'otps'")) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+            return names;
+        });
+
+        int dropped = 0;
+        for (String partition : partitions) {
+            LocalDate day = partitionDay(partition);
+            // A partition holds one day of expires_at, so it is all past the
+            // cutoff once the cutoff has reached the end of that day
+            if (day == null || day.plusDays(1).isAfter(cutoffDay)) {
+                continue;
+            }
+            SessionTemplate.executeJdbcInTransaction(con -> {
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("DROP TABLE " + partition);
+                }
+                return null;
+            });
+            LogUtil.info("Dropped OTP partition " + partition);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Creates the partitions for today and the next PARTITIONS_AHEAD days
+     */
+    private void createUpcomingPartitions() throws Exception {
+        LocalDate today = LocalDate.now();
+        SessionTemplate.executeJdbcInTransaction(con -> {
+            try (Statement statement = con.createStatement()) {
+                for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+                    LocalDate day = today.plusDays(i);
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + day.format(PARTITION_DAY) +
+                        " PARTITION OF otps FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets the day of a daily partition from its name
+     *
+     * @return The day, or null if the table is not a daily partition (e.g. otps_default)
+     */
+    private static LocalDate partitionDay(String partition) {
+        if (!partition.matches(PARTITION_PREFIX + "\\d{8}")) {
+            return null;
+        }
+        return LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_DAY);
+    }
+
+    /**
+     * Gets the result of the most recent purge
+     *
+     * @return The last result, or null if no purge has run yet
+     */
+    public PurgeResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Gets a one-line summary of the purge statistics
+     *
+     * @return Purge statistics
+     */
+    public String getStatistics() {
+        PurgeResult last = lastResult;
+        return "Purge runs: " + runs.get() +
+            ", Rows purged: " + totalRowsPurged.get() +
+            ", Partitions dropped: " + totalPartitionsDropped.get() +
+            ", Last run: " + (last == null ? "never" : last.toString());
+    }
+
+    /**
+     * Outcome of one purge run
+     */
+    public static class PurgeResult {
+        private final long startedAt = System.currentTimeMillis();
+        private int rowsPurged;
+        private int chunks;
+        private int partitionsDropped;
+        private long elapsedMs;
+        private boolean failed;
+
+        public int getRowsPurged() {
+            return rowsPurged;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getPartitionsDropped() {
+            return partitionsDropped;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return rowsPurged + " rows in " + chunks + " chunks, " +
+                partitionsDropped + " partitions dropped, " + elapsedMs + " ms" +
+                (failed ? " (stopped early)" : "") +
+                " at " + new Date(startedAt);
+        }
+    }
+}
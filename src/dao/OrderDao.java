@@ -1,70 +1,224 @@
 package dao;
 
+import model.BatchItemResult;
 import model.Customer;
+import model.Invoice;
 import model.Order;
+import model.OrderSummary;
 import model.OrderItem;
-import model.Product;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PageUtil;
+import util.SessionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * FIXED: OrderDao with proper RMI serialization handling
  */
 public class OrderDao {
     
+    // Maximum number of orders per IN list when fetching collections for a list
+    private static final int FETCH_CHUNK_SIZE = 1000;
+    
+    private static final String INSERT_ORDER_SQL =
+        "INSERT INTO orders (order_id, customer_id, order_date, total_amount, status, payment_method) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+    
     /**
-     * Creates a new order in the database
+     * Creates a new order in the database.
+     * The order row, the stock reservation and the item inserts run in one
+     * transaction: stock is decremented with one conditional UPDATE per product
+     * (sent as a single batch) and the whole order is rejected and rolled back
+     * if any product would go below zero. The items are inserted as one JDBC
+     * batch, since IDENTITY keys stop Hibernate from batching them.
      * 
      * @param order The order to create
-     * @return The created order with generated ID, or null if failed
+     * @return The created order with generated ID, or null if failed or out of stock
      */
     public Order createOrder(Order order) {
-        Transaction transaction = null;
+        List<OrderItem> items = order.getOrderItems() != null
+            ? new ArrayList<>(order.getOrderItems()) : new ArrayList<>();
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Save the order first
-            session.save(order);
-            
-            // Save order items and update product stock
-            for (OrderItem item : order.getOrderItems()) {
-                item.setOrder(order);
-                session.save(item);
+            SessionTemplate.executeInTransaction(session -> {
+                // Save the order row alone; the items are batched below instead of cascaded
+                order.setOrderItems(new ArrayList<>());
+                session.save(order);
+                session.flush();
+                session.evict(order);
                 
-                // Update product stock
-                Product product = (Product) session.get(Product.class, item.getProduct().getId());
-                if (product != null) {
-                    product.setStockQuantity(product.getStockQuantity() - item.getQuantity());
-                    session.update(product);
+                for (OrderItem item : items) {
+                    item.setOrder(order);
                 }
-            }
-            
-            transaction.commit();
-            
-            // Fix RMI serialization - convert Hibernate collections to ArrayList
-            if (order.getOrderItems() != null) {
-                order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-            }
-            if (order.getInvoices() != null) {
-                order.setInvoices(new ArrayList<>(order.getInvoices()));
-            }
+                int shortProductId = SessionTemplate.doWork(session, con -> OrderItemDao.reserveStock(con, items));
+                if (shortProductId != OrderItemDao.ALL_RESERVED) {
+                    throw new InsufficientStockException(shortProductId);
+                }
+                SessionTemplate.doWork(session, con -> {
+                    OrderItemDao.insertOrderItems(con, items);
+                    return null;
+                });
+                return null;
+            });
             
-            LogUtil.info("Order created successfully: " + order.getOrderId());
+            LogUtil.info("Order created successfully: " + order.getOrderId() + " (" + items.size() + " items)");
             return order;
+        } catch (InsufficientStockException e) {
+            LogUtil.warn("Order rejected: " + order.getOrderId() + " - " + e.getMessage());
+            order.setId(0);
+            return null;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Order already exists: " + ConstraintViolations.describe(e));
+                order.setId(0);
+                return null;
             }
             LogUtil.error("Failed to create order: " + order.getOrderId(), e);
+            order.setId(0);
             return null;
+        } finally {
+            order.setOrderItems(items);
+            evictCachedReferences(order);
+        }
+    }
+    
+    /**
+     * Creates several orders in one transaction.
+     * The order rows go out as one JDBC batch, the stock of all their items is
+     * reserved with one batch, and all items are inserted with one batch.
+     * If a product runs out of stock, the orders that need it are rejected and
+     * the transaction is retried without them. Any other failure rejects the
+     * whole batch.
+     * 
+     * @param orders The orders to create, already validated and with unique order IDs
+     * @return One result per order, in the same order
+     */
+    public List<BatchItemResult<Order>> createOrders(List<Order> orders) {
+        Map<Order, String> rejected = new IdentityHashMap<>();
+        List<Order> pending = new ArrayList<>(orders);
+        while (!pending.isEmpty()) {
+            try {
+                insertOrders(pending);
+                LogUtil.info("Created batch of " + pending.size() + " orders");
+                break;
+            } catch (InsufficientStockException e) {
+                resetIds(pending);
+                Iterator<Order> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    Order order = iterator.next();
+                    if (containsProduct(order, e.getProductId())) {
+                        rejected.put(order, e.getMessage());
+                        iterator.remove();
+                    }
+                }
+                LogUtil.warn("Order batch: " + e.getMessage() + ", retrying without the orders that need it");
+            } catch (Exception e) {
+                LogUtil.error("Failed to create batch of " + pending.size() + " orders", e);
+                resetIds(pending);
+                for (Order order : pending) {
+                    rejected.put(order, "Batch failed: " + ConstraintViolations.describe(e));
+                }
+                break;
+            }
+        }
+        
+        List<BatchItemResult<Order>> results = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            String error = rejected.get(order);
+            results.add(error == null ? BatchItemResult.success(order) : BatchItemResult.failure(error));
+            evictCachedReferences(order);
+        }
+        return results;
+    }
+    
+    /**
+     * Inserts orders and their items in one transaction
+     * 
+     * @throws InsufficientStockException If a product does not have enough stock for all orders
+     */
+    private static void insertOrders(List<Order> orders) throws Exception {
+        SessionTemplate.executeInTransaction(session -> {
+            SessionTemplate.doWork(session, con -> {
+                try (PreparedStatement pst = con.prepareStatement(INSERT_ORDER_SQL, new String[] {"id"})) {
+                    for (Order order : orders) {
+                        pst.setString(1, order.getOrderId());
+                        pst.setInt(2, order.getCustomerId());
+                        pst.setDate(3, order.getOrderDate() != null ? java.sql.Date.valueOf(order.getOrderDate()) : null);
+                        pst.setBigDecimal(4, order.getTotalAmount());
+                        pst.setString(5, order.getStatus());
+                        pst.setString(6, order.getPaymentMethod());
+                        pst.addBatch();
+                    }
+                    pst.executeBatch();
+                    try (ResultSet rs = pst.getGeneratedKeys()) {
+                        for (Order order : orders) {
+                            if (!rs.next()) {
+                                break;
+                            }
+                            order.setId(rs.getInt(1));
+                        }
+                    }
+                }
+                return null;
+            });
+            
+            List<OrderItem> items = new ArrayList<>();
+            for (Order order : orders) {
+                if (order.getOrderItems() != null) {
+                    for (OrderItem item : order.getOrderItems()) {
+                        item.setOrder(order);
+                        items.add(item);
+                    }
+                }
+            }
+            int shortProductId = SessionTemplate.doWork(session, con -> OrderItemDao.reserveStock(con, items));
+            if (shortProductId != OrderItemDao.ALL_RESERVED) {
+                throw new InsufficientStockException(shortProductId);
+            }
+            SessionTemplate.doWork(session, con -> {
+                OrderItemDao.insertOrderItems(con, items);
+                return null;
+            });
+            return null;
+        });
+    }
+    
+    private static boolean containsProduct(Order order, int productId) {
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                if (item.getProductId() == productId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Clears the IDs set by a batch that was rolled back
+     */
+    private static void resetIds(List<Order> orders) {
+        for (Order order : orders) {
+            order.setId(0);
+            if (order.getOrderItems() != null) {
+                for (OrderItem item : order.getOrderItems()) {
+                    item.setId(0);
+                }
+            }
         }
     }
     
@@ -75,29 +229,19 @@ public class OrderDao {
      * @return The updated order, or null if failed
      */
     public Order updateOrder(Order order) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(order);
-            transaction.commit();
-            
-            // Fix RMI serialization
-            if (order.getOrderItems() != null) {
-                order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-            }
-            if (order.getInvoices() != null) {
-                order.setInvoices(new ArrayList<>(order.getInvoices()));
-            }
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(order);
+                return null;
+            });
             
             LogUtil.info("Order updated successfully: " + order.getOrderId());
             return order;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update order: " + order.getOrderId(), e);
             return null;
+        } finally {
+            evictCachedReferences(order);
         }
     }
     
@@ -109,24 +253,21 @@ public class OrderDao {
      * @return Number of rows affected
      */
     public int updateOrderStatus(int orderId, String status) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            Query query = session.createQuery(
-                "UPDATE Order o SET o.status = :status WHERE o.id = :id");
-            query.setParameter("status", status);
-            query.setParameter("id", orderId);
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
+            int rowsAffected = SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE Order o SET o.status = :status WHERE o.id = :id");
+                query.setParameter("status", status);
+                query.setParameter("id", orderId);
+                return query.executeUpdate();
+            });
             LogUtil.info("Updated order status for order ID " + orderId + " to " + status);
             return rowsAffected;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update order status for order ID: " + orderId, e);
             return 0;
+        } finally {
+            CustomerDao.evictCustomersOfOrder(orderId);
         }
     }
     
@@ -137,31 +278,20 @@ public class OrderDao {
      * @return The order if found, null otherwise
      */
     public Order findOrderById(int id) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Order order = (Order) session.get(Order.class, id);
-            if (order != null) {
-                session.evict(order);
-                // Fix RMI serialization
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
+            return SessionTemplate.executeInSession(session -> {
+                Order order = (Order) session.get(Order.class, id);
+                if (order != null) {
+                    detach(session, order);
+                    LogUtil.debug(() -> "Found order by ID: " + id);
+                } else {
+                    LogUtil.debug(() -> "Order not found with ID: " + id);
                 }
-                LogUtil.debug("Found order by ID: " + id);
-            } else {
-                LogUtil.debug("Order not found with ID: " + id);
-            }
-            return order;
+                return order;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding order by ID: " + id, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -172,35 +302,24 @@ public class OrderDao {
      * @return The order if found, null otherwise
      */
     public Order findOrderByOrderId(String orderId) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Order o WHERE o.orderId = :orderId");
-            query.setParameter("orderId", orderId);
-            Order order = (Order) query.uniqueResult();
-            
-            if (order != null) {
-                session.evict(order);
-                // Fix RMI serialization
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Order o WHERE o.orderId = :orderId");
+                query.setParameter("orderId", orderId);
+                Order order = (Order) query.uniqueResult();
+                
+                if (order != null) {
+                    detach(session, order);
+                    LogUtil.debug(() -> "Found order by order ID: " + orderId);
+                } else {
+                    LogUtil.debug(() -> "Order not found with order ID: " + orderId);
                 }
-                LogUtil.debug("Found order by order ID: " + orderId);
-            } else {
-                LogUtil.debug("Order not found with order ID: " + orderId);
-            }
-            return order;
+                return order;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding order by order ID: " + orderId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -211,34 +330,20 @@ public class OrderDao {
      * @return List of matching orders
      */
     public List<Order> findOrdersByCustomer(Customer customer) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Order o WHERE o.customer = :customer ORDER BY o.orderDate DESC");
-            query.setParameter("customer", customer);
-            List<Order> orders = query.list();
-            
-            // Fix RMI serialization for all orders
-            for (Order order : orders) {
-                session.evict(order);
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
-                }
-            }
-            
-            LogUtil.debug("Found " + orders.size() + " orders for customer: " + customer.getFullName());
-            return orders;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Order o WHERE o.customer = :customer ORDER BY o.orderDate DESC");
+                query.setParameter("customer", customer);
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+                
+                LogUtil.debug(() -> "Found " + orders.size() + " orders for customer: " + customer.getFullName());
+                return orders;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding orders by customer: " + customer.getId(), e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -249,34 +354,20 @@ public class OrderDao {
      * @return List of matching orders
      */
     public List<Order> findOrdersByStatus(String status) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Order o WHERE o.status = :status ORDER BY o.orderDate DESC");
-            query.setParameter("status", status);
-            List<Order> orders = query.list();
-            
-            // Fix RMI serialization for all orders
-            for (Order order : orders) {
-                session.evict(order);
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
-                }
-            }
-            
-            LogUtil.debug("Found " + orders.size() + " orders with status: " + status);
-            return orders;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Order o WHERE o.status = :status ORDER BY o.orderDate DESC");
+                query.setParameter("status", status);
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+                
+                LogUtil.debug(() -> "Found " + orders.size() + " orders with status: " + status);
+                return orders;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding orders by status: " + status, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -288,35 +379,21 @@ public class OrderDao {
      * @return List of matching orders
      */
     public List<Order> findOrdersByDateRange(LocalDate startDate, LocalDate endDate) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate ORDER BY o.orderDate DESC");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Order> orders = query.list();
-            
-            // Fix RMI serialization for all orders
-            for (Order order : orders) {
-                session.evict(order);
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
-                }
-            }
-            
-            LogUtil.debug("Found " + orders.size() + " orders between " + startDate + " and " + endDate);
-            return orders;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate ORDER BY o.orderDate DESC");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+                
+                LogUtil.debug(() -> "Found " + orders.size() + " orders between " + startDate + " and " + endDate);
+                return orders;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding orders by date range: " + startDate + " to " + endDate, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -326,35 +403,124 @@ public class OrderDao {
      * @return List of all orders
      */
     public List<Order> findAllOrders() {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Order ORDER BY orderDate DESC");
-            List<Order> orders = query.list();
-            
-            // Fix RMI serialization for all orders
-            for (Order order : orders) {
-                session.evict(order);
-                if (order.getOrderItems() != null) {
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                if (order.getInvoices() != null) {
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
-                }
-            }
-            
-            LogUtil.debug("Found " + orders.size() + " orders in total");
-            return orders;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Order ORDER BY orderDate DESC");
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+                
+                LogUtil.debug(() -> "Found " + orders.size() + " orders in total");
+                return orders;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all orders", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-    
+
+    /**
+     * Gets one page of orders, newest first
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of orders per page
+     * @return List of orders on the requested page
+     */
+    public List<Order> findOrdersPage(int pageNumber, int pageSize) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Order o ORDER BY o.orderDate DESC, o.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+
+                LogUtil.debug(() -> "Found " + orders.size() + " orders on page " + pageNumber + " (size " + pageSize + ")");
+                return orders;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding orders page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the next batch of orders after a keyset cursor, newest first.
+     * Uses a (orderDate, id) predicate instead of an offset so every batch
+     * costs the same no matter how deep the client has scrolled.
+     *
+     * @param lastOrderDate Order date of the last order already seen, or null for the first batch
+     * @param lastId Database ID of the last order already seen
+     * @param limit Maximum number of orders to return
+     * @return List of orders following the cursor
+     */
+    public List<Order> findOrdersAfter(LocalDate lastOrderDate, int lastId, int limit) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query;
+                if (lastOrderDate == null) {
+                    query = session.createQuery("FROM Order o ORDER BY o.orderDate DESC, o.id DESC");
+                } else {
+                    query = session.createQuery(
+                        "FROM Order o WHERE o.orderDate < :lastDate OR (o.orderDate = :lastDate AND o.id < :lastId) " +
+                        "ORDER BY o.orderDate DESC, o.id DESC");
+                    query.setParameter("lastDate", lastOrderDate);
+                    query.setParameter("lastId", lastId);
+                }
+                query.setMaxResults(limit);
+                List<Order> orders = query.list();
+                detachAll(session, orders);
+
+                LogUtil.debug(() -> "Found " + orders.size() + " orders after cursor (" + lastOrderDate + ", " + lastId + ")");
+                return orders;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding orders after cursor: " + lastOrderDate + ", " + lastId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets one page of order summaries, newest first.
+     * Uses a constructor projection, so only the listed columns are read.
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of orders per page
+     * @return List of order summaries on the requested page
+     */
+    public List<OrderSummary> findOrderSummaries(int pageNumber, int pageSize) {
+        try   {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT new model.OrderSummary(o.id, o.orderId, c.firstName, c.lastName, o.orderDate, o.totalAmount, o.status) " +
+                    "FROM Order o JOIN o.customer c ORDER BY o.orderDate DESC, o.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<OrderSummary> summaries = query.list();
+
+                LogUtil.debug(() -> "Found " + summaries.size() + " order summaries on page " + pageNumber + " (size " + pageSize + ")");
+                return summaries;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding order summaries page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens a streaming cursor over orders, newest first
+     *
+     * @param status Only include orders with this status, or null for all orders
+     * @return The open cursor, or null if it could not be opened
+     */
+    public ScrollCursor<Order> openOrderCursor(String status) {
+        String hql = status == null
+            ? "FROM Order o ORDER BY o.orderDate DESC, o.id DESC"
+            : "FROM Order o WHERE o.status = :status ORDER BY o.orderDate DESC, o.id DESC";
+        // Load the collections while the cursor session is still open
+        return ScrollCursor.open(hql, status == null ? null : "status", status, OrderDao::initializeCollections,
+            "orders" + (status == null ? "" : " with status " + status));
+    }
+
     /**
      * Gets an order with all its items and customer information
      * 
@@ -362,59 +528,25 @@ public class OrderDao {
      * @return The order with items and customer loaded
      */
     public Order getOrderWithDetails(int orderId) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Order o LEFT JOIN FETCH o.customer LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product WHERE o.id = :id");
-            query.setParameter("id", orderId);
-            Order order = (Order) query.uniqueResult();
-            
-            if (order != null) {
-                // Force initialization of collections
-                order.getOrderItems().size();
-                if (order.getInvoices() != null) {
-                    order.getInvoices().size();
-                }
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Order o LEFT JOIN FETCH o.customer LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product WHERE o.id = :id");
+                query.setParameter("id", orderId);
+                Order order = (Order) query.uniqueResult();
                 
-                // Detach from session
-                session.evict(order);
-                if (order.getCustomer() != null) {
-                    session.evict(order.getCustomer());
+                if (order != null) {
+                    detach(session, order);
+                    
+                    LogUtil.debug(() -> "Found order with details: " + orderId + ", Items count: " + order.getOrderItems().size());
+                } else {
+                    LogUtil.debug(() -> "Order not found with ID: " + orderId);
                 }
-                
-                // Detach order items and their products
-                if (order.getOrderItems() != null) {
-                    for (OrderItem item : order.getOrderItems()) {
-                        session.evict(item);
-                        if (item.getProduct() != null) {
-                            session.evict(item.getProduct());
-                        }
-                    }
-                    // Fix RMI serialization
-                    order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-                }
-                
-                // Fix RMI serialization for invoices
-                if (order.getInvoices() != null) {
-                    for (Object invoice : order.getInvoices()) {
-                        session.evict(invoice);
-                    }
-                    order.setInvoices(new ArrayList<>(order.getInvoices()));
-                }
-                
-                LogUtil.debug("Found order with details: " + orderId + ", Items count: " + order.getOrderItems().size());
-            } else {
-                LogUtil.debug("Order not found with ID: " + orderId);
-            }
-            return order;
+                return order;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding order with details: " + orderId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
@@ -425,40 +557,29 @@ public class OrderDao {
      * @return The deleted order, or null if failed
      */
     public Order deleteOrder(Order order) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Restore product stock for order items
-            for (OrderItem item : order.getOrderItems()) {
-                Product product = (Product) session.get(Product.class, item.getProduct().getId());
-                if (product != null) {
-                    product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                    session.update(product);
+            SessionTemplate.executeInTransaction(session -> {
+                // Restore product stock for order items, one set-based UPDATE per product
+                List<OrderItem> items = order.getOrderItems();
+                if (items != null && !items.isEmpty()) {
+                    SessionTemplate.doWork(session, con -> {
+                        OrderItemDao.restoreStock(con, items);
+                        return null;
+                    });
                 }
-            }
-            
-            // Delete the order (cascade will handle order items)
-            session.delete(order);
-            transaction.commit();
-            
-            // Fix RMI serialization
-            if (order.getOrderItems() != null) {
-                order.setOrderItems(new ArrayList<>(order.getOrderItems()));
-            }
-            if (order.getInvoices() != null) {
-                order.setInvoices(new ArrayList<>(order.getInvoices()));
-            }
+                
+                // Delete the order (cascade will handle order items)
+                session.delete(order);
+                return null;
+            });
             
             LogUtil.info("Order deleted successfully: " + order.getOrderId());
             return order;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete order: " + order.getOrderId(), e);
             return null;
+        } finally {
+            evictCachedReferences(order);
         }
     }
     
@@ -469,21 +590,143 @@ public class OrderDao {
      * @return true if exists, false otherwise
      */
     public boolean orderIdExists(String orderId) {
-        Session session = null;
         try  {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(o) FROM Order o WHERE o.orderId = :orderId");
-            query.setParameter("orderId", orderId);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(o) FROM Order o WHERE o.orderId = :orderId");
+                query.setParameter("orderId", orderId);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if order ID exists: " + orderId, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
+        }
+    }
+    
+    /**
+     * Finds which of the given order IDs already exist, with one IN query per
+     * FETCH_CHUNK_SIZE IDs
+     * 
+     * @param orderIds The order IDs to check
+     * @return The order IDs that exist, or null if the query failed
+     */
+    public Set<String> findExistingOrderIds(Collection<String> orderIds) {
+        try  {
+            List<String> ids = new ArrayList<>(orderIds);
+            return SessionTemplate.executeInSession(session -> {
+                Set<String> existing = new HashSet<>();
+                for (int i = 0; i < ids.size(); i += FETCH_CHUNK_SIZE) {
+                    Query query = session.createQuery(
+                        "SELECT o.orderId FROM Order o WHERE o.orderId IN (:ids)");
+                    query.setParameterList("ids", ids.subList(i, Math.min(i + FETCH_CHUNK_SIZE, ids.size())));
+                    existing.addAll(query.list());
+                }
+                return existing;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error checking " + orderIds.size() + " order IDs", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Drops the cached customer and products an order write may have changed
+     *
+     * @param order The order that was written
+     */
+    private static void evictCachedReferences(Order order) {
+        if (order.getCustomer() != null) {
+            CustomerDao.evictCustomer(order.getCustomer().getId());
+        }
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                ProductDao.evictProduct(item.getProductId());
+            }
+        }
+    }
+
+    /**
+     * Detaches a list of orders with their collections loaded.
+     * The collections of the whole list are fetched up front, so a list costs a
+     * fixed number of queries instead of two lazy loads per order.
+     */
+    private static void detachAll(Session session, List<Order> orders) {
+        fetchCollections(session, orders);
+        for (Order order : orders) {
+            detach(session, order);
+        }
+    }
+    
+    /**
+     * Loads the items (with their products) and invoices of all orders with one
+     * query per collection per chunk of orders and sets them as plain lists.
+     * All queries run before any collection is replaced, so no auto-flush sees
+     * a half-modified order.
+     */
+    private static void fetchCollections(Session session, List<Order> orders) {
+        if (orders.size() < 2) {
+            return;
+        }
+        Map<Integer, List<OrderItem>> itemsByOrder = new HashMap<>();
+        Map<Integer, List<Invoice>> invoicesByOrder = new HashMap<>();
+        for (List<Integer> ids : idChunks(orders)) {
+            Query itemQuery = session.createQuery(
+                "FROM OrderItem i JOIN FETCH i.product WHERE i.order.id IN (:ids)");
+            itemQuery.setParameterList("ids", ids);
+            for (Object row : itemQuery.list()) {
+                OrderItem item = (OrderItem) row;
+                itemsByOrder.computeIfAbsent(item.getOrderId(), id -> new ArrayList<>()).add(item);
             }
+            
+            Query invoiceQuery = session.createQuery(
+                "FROM Invoice i WHERE i.order.id IN (:ids)");
+            invoiceQuery.setParameterList("ids", ids);
+            for (Object row : invoiceQuery.list()) {
+                Invoice invoice = (Invoice) row;
+                invoicesByOrder.computeIfAbsent(invoice.getOrder().getId(), id -> new ArrayList<>()).add(invoice);
+            }
+        }
+        for (Order order : orders) {
+            order.setOrderItems(itemsByOrder.getOrDefault(order.getId(), new ArrayList<>()));
+            order.setInvoices(invoicesByOrder.getOrDefault(order.getId(), new ArrayList<>()));
+        }
+    }
+    
+    /**
+     * Splits the IDs of a list of orders into chunks for IN queries
+     */
+    private static List<List<Integer>> idChunks(List<Order> orders) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i += FETCH_CHUNK_SIZE) {
+            List<Integer> ids = new ArrayList<>();
+            for (Order order : orders.subList(i, Math.min(i + FETCH_CHUNK_SIZE, orders.size()))) {
+                ids.add(order.getId());
+            }
+            chunks.add(ids);
+        }
+        return chunks;
+    }
+    
+    /**
+     * Loads an order's collections and detaches it. The collections are loaded
+     * before the evict, while they still can be; the service layer converts
+     * them for RMI serialization.
+     */
+    private static void detach(Session session, Order order) {
+        initializeCollections(order);
+        session.evict(order);
+    }
+    
+    /**
+     * Loads the items (with their products) and invoices of an order, the same
+     * graph fetchCollections loads for a list
+     */
+    private static void initializeCollections(Order order) {
+        Hibernate.initialize(order.getOrderItems());
+        for (OrderItem item : order.getOrderItems()) {
+            Hibernate.initialize(item.getProduct());
         }
+        Hibernate.initialize(order.getInvoices());
     }
-}
\ No newline at end of file
+}
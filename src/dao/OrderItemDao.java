@@ -1,369 +1,454 @@
 package dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import model.Order;
 import model.OrderItem;
 import model.Product;
+import util.LogUtil;
+import util.SessionTemplate;
 
 /**
  * Data Access Object for OrderItem operations.
+ * Runs plain JDBC on connections borrowed from the shared Hibernate (c3p0) pool,
+ * so no connection is opened per call and every item write and its stock
+ * adjustment commit or roll back together.
  */
 public class OrderItemDao {
-    private String db_url = "jdbc:postgresql://localhost:5432/business_db";
-    private String db_username = "postgres";
-    private String db_passwd = "078868";
-    
+
+    private static final String INSERT_ITEM_SQL =
+        "INSERT INTO order_items (order_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?)";
+    // Only succeeds while enough stock is left, so concurrent orders cannot oversell
+    private static final String RESERVE_STOCK_SQL =
+        "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String INCREMENT_STOCK_SQL =
+        "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
+
+    // Returned by reserveStock when every product was reserved; never a product ID
+    static final int ALL_RESERVED = -1;
+
     /**
-     * Creates a new order item in the database
-     * 
+     * Creates a new order item and reserves the product stock in one transaction.
+     * Nothing is stored if the product does not have enough stock.
+     *
      * @param orderItem The order item to create
      * @return Number of rows affected
      */
     public int createOrderItem(OrderItem orderItem) {
         try {
-            // Create connection
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            
-            // Prepare statement
-            String sql = "INSERT INTO order_items (order_id, product_id, quantity, unit_price) " +
-                         "VALUES (?, ?, ?, ?)";
-            PreparedStatement pst = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            
-            pst.setInt(1, orderItem.getOrderId());
-            pst.setInt(2, orderItem.getProductId());
-            pst.setInt(3, orderItem.getQuantity());
-            pst.setBigDecimal(4, orderItem.getUnitPrice());
-            
-            // Execute statement
-            int rowsAffected = pst.executeUpdate();
-            
-            // Get generated ID
-            if (rowsAffected > 0) {
-                ResultSet rs = pst.getGeneratedKeys();
-                if (rs.next()) {
-                    orderItem.setId(rs.getInt(1));
+            int rowsAffected = SessionTemplate.executeJdbcInTransaction(con -> {
+                if (!reserveStock(con, orderItem.getProductId(), orderItem.getQuantity())) {
+                    throw new SQLException("Insufficient stock for product ID " + orderItem.getProductId());
                 }
-                rs.close();
-            }
-            
-            // Update product stock
-            sql = "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ?";
-            PreparedStatement stockPst = con.prepareStatement(sql);
-            stockPst.setInt(1, orderItem.getQuantity());
-            stockPst.setInt(2, orderItem.getProductId());
-            stockPst.executeUpdate();
-            stockPst.close();
-            
-            // Close connection
-            con.close();
+                try (PreparedStatement pst = con.prepareStatement(INSERT_ITEM_SQL, new String[] {"id"})) {
+                    bindItem(pst, orderItem);
+                    int rows = pst.executeUpdate();
+                    if (rows > 0) {
+                        readGeneratedIds(pst, Collections.singletonList(orderItem));
+                    }
+                    return rows;
+                }
+            });
+            LogUtil.debug(() -> "Created order item " + orderItem.getId() + " for order " + orderItem.getOrderId());
             return rowsAffected;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        } catch (Exception e) {
+            LogUtil.error("Failed to create order item for order: " + orderItem.getOrderId(), e);
             return 0;
+        } finally {
+            evictCachedReferences(orderItem);
         }
     }
-    
+
     /**
-     * Updates an existing order item in the database
-     * 
+     * Creates several order items in one transaction using JDBC batching.
+     * The stock of every product is reserved first, then all inserts go out as
+     * one batch. Either every item is stored or none is; the batch is rejected
+     * if any product does not have enough stock.
+     *
+     * @param orderItems The order items to create
+     * @return Number of items created, 0 if the batch failed
+     */
+    public int createOrderItems(List<OrderItem> orderItems) {
+        if (orderItems == null || orderItems.isEmpty()) {
+            return 0;
+        }
+        try {
+            int created = SessionTemplate.executeJdbcInTransaction(con -> {
+                int shortProductId = reserveStock(con, orderItems);
+                if (shortProductId != ALL_RESERVED) {
+                    throw new SQLException("Insufficient stock for product ID " + shortProductId);
+                }
+                insertOrderItems(con, orderItems);
+                return orderItems.size();
+            });
+            LogUtil.info("Created " + created + " order items in one batch");
+            return created;
+        } catch (Exception e) {
+            LogUtil.error("Failed to create batch of " + orderItems.size() + " order items", e);
+            return 0;
+        } finally {
+            for (OrderItem orderItem : orderItems) {
+                evictCachedReferences(orderItem);
+            }
+        }
+    }
+
+    /**
+     * Updates an existing order item in the database. A larger quantity is
+     * reserved from stock first; nothing is changed if there is not enough.
+     *
      * @param orderItem The order item to update
      * @param oldQuantity The previous quantity for inventory adjustment
      * @return Number of rows affected
      */
     public int updateOrderItem(OrderItem orderItem, int oldQuantity) {
-        Connection con = null;
         try {
-            // Create connection
-            con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            
-            // Start transaction
-            con.setAutoCommit(false);
-            
-            // Prepare statement
-            String sql = "UPDATE order_items SET order_id = ?, product_id = ?, quantity = ?, unit_price = ? WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            
-            pst.setInt(1, orderItem.getOrderId());
-            pst.setInt(2, orderItem.getProductId());
-            pst.setInt(3, orderItem.getQuantity());
-            pst.setBigDecimal(4, orderItem.getUnitPrice());
-            pst.setInt(5, orderItem.getId());
-            
-            // Execute statement
-            int rowsAffected = pst.executeUpdate();
-            
-            // Update product stock - adjust for difference between old and new quantity
-            int quantityDifference = orderItem.getQuantity() - oldQuantity;
-            if (quantityDifference != 0) {
-                sql = "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ?";
-                PreparedStatement stockPst = con.prepareStatement(sql);
-                stockPst.setInt(1, quantityDifference);
-                stockPst.setInt(2, orderItem.getProductId());
-                stockPst.executeUpdate();
-                stockPst.close();
-            }
-            
-            // Commit transaction
-            con.commit();
-            
-            // Close connection
-            con.close();
-            return rowsAffected;
-            
-        } catch (Exception ex) {
-            try {
-                // Rollback transaction on error
-                if (con != null) {
-                    con.rollback();
+            return SessionTemplate.executeJdbcInTransaction(con -> {
+                int rowsAffected;
+                String sql = "UPDATE order_items SET order_id = ?, product_id = ?, quantity = ?, unit_price = ? WHERE id = ?";
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    bindItem(pst, orderItem);
+                    pst.setInt(5, orderItem.getId());
+                    rowsAffected = pst.executeUpdate();
                 }
-            } catch (Exception rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
-            
-            ex.printStackTrace();
+
+                // Update product stock - adjust for difference between old and new quantity
+                int quantityDifference = orderItem.getQuantity() - oldQuantity;
+                if (quantityDifference > 0) {
+                    if (!reserveStock(con, orderItem.getProductId(), quantityDifference)) {
+                        throw new SQLException("Insufficient stock for product ID " + orderItem.getProductId());
+                    }
+                } else if (quantityDifference < 0) {
+                    try (PreparedStatement stockPst = con.prepareStatement(INCREMENT_STOCK_SQL)) {
+                        stockPst.setInt(1, -quantityDifference);
+                        stockPst.setInt(2, orderItem.getProductId());
+                        stockPst.executeUpdate();
+                    }
+                }
+                return rowsAffected;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Failed to update order item: " + orderItem.getId(), e);
             return 0;
         } finally {
-            try {
-                if (con != null) {
-                    con.setAutoCommit(true);
-                    con.close();
-                }
-            } catch (Exception closeEx) {
-                closeEx.printStackTrace();
-            }
+            evictCachedReferences(orderItem);
         }
     }
-    
+
     /**
      * Finds an order item by ID
-     * 
+     *
      * @param id The order item ID to search for
      * @return The order item if found, null otherwise
      */
     public OrderItem findOrderItemById(int id) {
         try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM order_items WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, id);
-            
-            ResultSet rs = pst.executeQuery();
-            OrderItem orderItem = null;
-            
-            if (rs.next()) {
-                orderItem = new OrderItem();
-                orderItem.setId(rs.getInt("id"));
-                orderItem.setOrderId(rs.getInt("order_id"));
-                orderItem.setProductId(rs.getInt("product_id"));
-                orderItem.setQuantity(rs.getInt("quantity"));
-                orderItem.setUnitPrice(rs.getBigDecimal("unit_price"));
-            }
-            
-            con.close();
-            return orderItem;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            return SessionTemplate.executeJdbc(con -> findOrderItemById(con, id));
+        } catch (Exception e) {
+            LogUtil.error("Error finding order item by ID: " + id, e);
             return null;
         }
     }
-    
+
     /**
      * Finds order items by order ID
-     * 
+     *
      * @param orderId The order ID to search for
      * @return List of matching order items
      */
     public List<OrderItem> findOrderItemsByOrderId(int orderId) {
         try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT oi.*, p.name as product_name FROM order_items oi " +
-                         "JOIN products p ON oi.product_id = p.id " +
-                         "WHERE oi.order_id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, orderId);
-            
-            ResultSet rs = pst.executeQuery();
-            List<OrderItem> orderItemList = new ArrayList<>();
-            
-            while (rs.next()) {
-                OrderItem orderItem = new OrderItem();
-                orderItem.setId(rs.getInt("id"));
-                orderItem.setOrderId(rs.getInt("order_id"));
-                orderItem.setProductId(rs.getInt("product_id"));
-                orderItem.setQuantity(rs.getInt("quantity"));
-                orderItem.setUnitPrice(rs.getBigDecimal("unit_price"));
-                
-                // Create a simple product with basic info
-                Product product = new Product();
-                product.setId(orderItem.getProductId());
-                product.setName(rs.getString("product_name"));
-                orderItem.setProduct(product);
-                
-                orderItemList.add(orderItem);
-            }
-            
-            con.close();
-            return orderItemList;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            return SessionTemplate.executeJdbc(con -> {
+                String sql = "SELECT oi.*, p.name as product_name FROM order_items oi " +
+                             "JOIN products p ON oi.product_id = p.id " +
+                             "WHERE oi.order_id = ?";
+                List<OrderItem> orderItemList = new ArrayList<>();
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    pst.setInt(1, orderId);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            OrderItem orderItem = mapOrderItem(rs);
+                            orderItem.getProduct().setName(rs.getString("product_name"));
+
+                            orderItemList.add(orderItem);
+                        }
+                    }
+                }
+                return orderItemList;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding order items for order: " + orderId, e);
             return Collections.emptyList();
         }
     }
-    
+
     /**
      * Finds order items by product ID
-     * 
+     *
      * @param productId The product ID to search for
      * @return List of matching order items
      */
     public List<OrderItem> findOrderItemsByProductId(int productId) {
         try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM order_items WHERE product_id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, productId);
-            
-            ResultSet rs = pst.executeQuery();
-            List<OrderItem> orderItemList = new ArrayList<>();
-            
-            while (rs.next()) {
-                OrderItem orderItem = new OrderItem();
-                orderItem.setId(rs.getInt("id"));
-                orderItem.setOrderId(rs.getInt("order_id"));
-                orderItem.setProductId(rs.getInt("product_id"));
-                orderItem.setQuantity(rs.getInt("quantity"));
-                orderItem.setUnitPrice(rs.getBigDecimal("unit_price"));
-                orderItemList.add(orderItem);
-            }
-            
-            con.close();
-            return orderItemList;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            return SessionTemplate.executeJdbc(con -> {
+                List<OrderItem> orderItemList = new ArrayList<>();
+                try (PreparedStatement pst = con.prepareStatement("SELECT * FROM order_items WHERE product_id = ?")) {
+                    pst.setInt(1, productId);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            orderItemList.add(mapOrderItem(rs));
+                        }
+                    }
+                }
+                return orderItemList;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding order items for product: " + productId, e);
             return Collections.emptyList();
         }
     }
-    
+
     /**
      * Gets an order item with product details
-     * 
+     *
      * @param orderItemId The ID of the order item
      * @return The order item with product loaded
      */
     public OrderItem getOrderItemWithProduct(int orderItemId) {
         try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT oi.*, p.product_code, p.name, p.description, p.price, p.category " +
-                         "FROM order_items oi " +
-                         "JOIN products p ON oi.product_id = p.id " +
-                         "WHERE oi.id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, orderItemId);
-            
-            ResultSet rs = pst.executeQuery();
-            OrderItem orderItem = null;
-            
-            if (rs.next()) {
-                orderItem = new OrderItem();
-                orderItem.setId(rs.getInt("id"));
-                orderItem.setOrderId(rs.getInt("order_id"));
-                orderItem.setProductId(rs.getInt("product_id"));
-                orderItem.setQuantity(rs.getInt("quantity"));
-                orderItem.setUnitPrice(rs.getBigDecimal("unit_price"));
-                
-                Product product = new Product();
-                product.setId(orderItem.getProductId());
-                product.setProductCode(rs.getString("product_code"));
-                product.setName(rs.getString("name"));
-                product.setDescription(rs.getString("description"));
-                product.setPrice(rs.getBigDecimal("price"));
-                product.setCategory(rs.getString("category"));
-                
-                orderItem.setProduct(product);
-            }
-            
-            con.close();
-            return orderItem;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            return SessionTemplate.executeJdbc(con -> {
+                String sql = "SELECT oi.*, p.product_code, p.name, p.description, p.price, p.category " +
+                             "FROM order_items oi " +
+                             "JOIN products p ON oi.product_id = p.id " +
+                             "WHERE oi.id = ?";
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    pst.setInt(1, orderItemId);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        OrderItem orderItem = mapOrderItem(rs);
+
+                        Product product = orderItem.getProduct();
+                        product.setProductCode(rs.getString("product_code"));
+                        product.setName(rs.getString("name"));
+                        product.setDescription(rs.getString("description"));
+                        product.setPrice(rs.getBigDecimal("price"));
+                        product.setCategory(rs.getString("category"));
+                        return orderItem;
+                    }
+                }
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding order item with product: " + orderItemId, e);
             return null;
         }
     }
-    
+
     /**
-     * Deletes an order item from the database
-     * 
+     * Deletes an order item and returns its quantity to stock in one transaction
+     *
      * @param orderItemId The ID of the order item to delete
      * @return Number of rows affected
      */
     public int deleteOrderItem(int orderItemId) {
-        Connection con = null;
+        OrderItem[] deleted = new OrderItem[1];
         try {
-            // First get the order item to know how much stock to return
-            OrderItem orderItem = findOrderItemById(orderItemId);
-            if (orderItem == null) {
-                return 0;
-            }
-            
-            // Create connection
-            con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            
-            // Start transaction
-            con.setAutoCommit(false);
-            
-            // Delete the order item
-            String sql = "DELETE FROM order_items WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, orderItemId);
-            
-            int rowsAffected = pst.executeUpdate();
-            
-            // Update product stock - add back the quantity
-            sql = "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
-            PreparedStatement stockPst = con.prepareStatement(sql);
-            stockPst.setInt(1, orderItem.getQuantity());
-            stockPst.setInt(2, orderItem.getProductId());
-            stockPst.executeUpdate();
-            
-            // Commit transaction
-            con.commit();
-            
-            // Close connection
-            con.close();
-            return rowsAffected;
-            
-        } catch (Exception ex) {
-            try {
-                // Rollback transaction on error
-                if (con != null) {
-                    con.rollback();
+            return SessionTemplate.executeJdbcInTransaction(con -> {
+                // First get the order item to know how much stock to return
+                OrderItem orderItem = findOrderItemById(con, orderItemId);
+                if (orderItem == null) {
+                    return 0;
                 }
-            } catch (Exception rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
-            
-            ex.printStackTrace();
+                deleted[0] = orderItem;
+
+                int rowsAffected;
+                try (PreparedStatement pst = con.prepareStatement("DELETE FROM order_items WHERE id = ?")) {
+                    pst.setInt(1, orderItemId);
+                    rowsAffected = pst.executeUpdate();
+                }
+
+                // Update product stock - add back the quantity
+                try (PreparedStatement stockPst = con.prepareStatement(INCREMENT_STOCK_SQL)) {
+                    stockPst.setInt(1, orderItem.getQuantity());
+                    stockPst.setInt(2, orderItem.getProductId());
+                    stockPst.executeUpdate();
+                }
+                return rowsAffected;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Failed to delete order item: " + orderItemId, e);
             return 0;
         } finally {
-            try {
-                if (con != null) {
-                    con.setAutoCommit(true);
-                    con.close();
+            if (deleted[0] != null) {
+                evictCachedReferences(deleted[0]);
+            }
+        }
+    }
+
+    /**
+     * Inserts order items as one JDBC batch and sets their generated IDs.
+     * Must run inside the caller's transaction.
+     *
+     * @param con The connection of the current transaction
+     * @param orderItems The items to insert, each with its order and product set
+     * @throws SQLException If an insert fails
+     */
+    static void insertOrderItems(Connection con, List<OrderItem> orderItems) throws SQLException {
+        try (PreparedStatement pst = con.prepareStatement(INSERT_ITEM_SQL, new String[] {"id"})) {
+            for (OrderItem orderItem : orderItems) {
+                bindItem(pst, orderItem);
+                pst.addBatch();
+            }
+            pst.executeBatch();
+            readGeneratedIds(pst, orderItems);
+        }
+    }
+
+    /**
+     * Decrements the stock of every product in the items with one conditional
+     * UPDATE per distinct product, sent as a single batch. Products are updated
+     * in ID order so concurrent orders lock rows in the same order and cannot
+     * deadlock. Must run inside the caller's transaction, which has to be rolled
+     * back if a product is short.
+     *
+     * @param con The connection of the current transaction
+     * @param orderItems The items whose quantities to reserve
+     * @return ALL_RESERVED if all stock was reserved, otherwise the ID of a product without enough stock
+     * @throws SQLException If an item has no valid product ID or an update fails
+     */
+    static int reserveStock(Connection con, List<OrderItem> orderItems) throws SQLException {
+        Map<Integer, Integer> quantityByProduct = quantitiesByProduct(orderItems);
+        for (Integer productId : quantityByProduct.keySet()) {
+            if (productId <= 0) {
+                throw new SQLException("Order item has no valid product ID: " + productId);
+            }
+        }
+        try (PreparedStatement pst = con.prepareStatement(RESERVE_STOCK_SQL)) {
+            for (Map.Entry<Integer, Integer> entry : quantityByProduct.entrySet()) {
+                pst.setInt(1, entry.getValue());
+                pst.setInt(2, entry.getKey());
+                pst.setInt(3, entry.getValue());
+                pst.addBatch();
+            }
+            int[] counts = pst.executeBatch();
+            int i = 0;
+            for (Integer productId : quantityByProduct.keySet()) {
+                if (counts[i++] == 0) {
+                    return productId;
+                }
+            }
+        }
+        return ALL_RESERVED;
+    }
+
+    /**
+     * Decrements the stock of one product with the conditional UPDATE.
+     * Must run inside the caller's transaction, which has to be rolled back
+     * if the product is short.
+     *
+     * @param con The connection of the current transaction
+     * @param productId The product ID
+     * @param quantity The quantity to reserve
+     * @return true if the stock was reserved, false if not enough was left
+     * @throws SQLException If the update fails
+     */
+    private static boolean reserveStock(Connection con, int productId, int quantity) throws SQLException {
+        try (PreparedStatement pst = con.prepareStatement(RESERVE_STOCK_SQL)) {
+            pst.setInt(1, quantity);
+            pst.setInt(2, productId);
+            pst.setInt(3, quantity);
+            return pst.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Returns the quantities of the items to stock, one UPDATE per distinct
+     * product sent as a single batch. Must run inside the caller's transaction.
+     *
+     * @param con The connection of the current transaction
+     * @param orderItems The items whose quantities to return
+     * @throws SQLException If an update fails
+     */
+    static void restoreStock(Connection con, List<OrderItem> orderItems) throws SQLException {
+        try (PreparedStatement pst = con.prepareStatement(INCREMENT_STOCK_SQL)) {
+            for (Map.Entry<Integer, Integer> entry : quantitiesByProduct(orderItems).entrySet()) {
+                pst.setInt(1, entry.getValue());
+                pst.setInt(2, entry.getKey());
+                pst.addBatch();
+            }
+            pst.executeBatch();
+        }
+    }
+
+    private static Map<Integer, Integer> quantitiesByProduct(List<OrderItem> orderItems) {
+        Map<Integer, Integer> quantityByProduct = new TreeMap<>();
+        for (OrderItem orderItem : orderItems) {
+            quantityByProduct.merge(orderItem.getProductId(), orderItem.getQuantity(), Integer::sum);
+        }
+        return quantityByProduct;
+    }
+
+    /**
+     * Drops the cached product and customer whose stock or orders an item write changed
+     */
+    private static void evictCachedReferences(OrderItem orderItem) {
+        ProductDao.evictProduct(orderItem.getProductId());
+        CustomerDao.evictCustomersOfOrder(orderItem.getOrderId());
+    }
+
+    private static OrderItem findOrderItemById(Connection con, int id) throws SQLException {
+        try (PreparedStatement pst = con.prepareStatement("SELECT * FROM order_items WHERE id = ?")) {
+            pst.setInt(1, id);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? mapOrderItem(rs) : null;
+            }
+        }
+    }
+
+    private static void bindItem(PreparedStatement pst, OrderItem orderItem) throws SQLException {
+        pst.setInt(1, orderItem.getOrderId());
+        pst.setInt(2, orderItem.getProductId());
+        pst.setInt(3, orderItem.getQuantity());
+        pst.setBigDecimal(4, orderItem.getUnitPrice());
+    }
+
+    private static void readGeneratedIds(PreparedStatement pst, List<OrderItem> orderItems) throws SQLException {
+        try (ResultSet rs = pst.getGeneratedKeys()) {
+            for (OrderItem orderItem : orderItems) {
+                if (!rs.next()) {
+                    break;
                 }
-            } catch (Exception closeEx) {
-                closeEx.printStackTrace();
+                orderItem.setId(rs.getInt(1));
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Maps an order_items row. OrderItem.setOrderId/setProductId are no-ops,
+     * so the order and product are set as ID-only references.
+     */
+    private static OrderItem mapOrderItem(ResultSet rs) throws SQLException {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setId(rs.getInt("id"));
+
+        Order order = new Order();
+        order.setId(rs.getInt("order_id"));
+        orderItem.setOrder(order);
+
+        Product product = new Product();
+        product.setId(rs.getInt("product_id"));
+        orderItem.setProduct(product);
+
+        orderItem.setQuantity(rs.getInt("quantity"));
+        orderItem.setUnitPrice(rs.getBigDecimal("unit_price"));
+        return orderItem;
+    }
+}
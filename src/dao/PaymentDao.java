@@ -1,21 +1,46 @@
 package dao;
 
+import model.BatchItemResult;
 import model.Invoice;
 import model.Payment;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
+import model.PaymentSummary;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PageUtil;
+import util.SessionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Data Access Object for Payment operations using Hibernate.
  */
 public class PaymentDao {
     
+    // Maximum number of payment IDs per IN list
+    private static final int FETCH_CHUNK_SIZE = 1000;
+    
+    private static final String INSERT_PAYMENT_SQL =
+        "INSERT INTO payments (payment_id, invoice_id, amount, payment_date, payment_method) " +
+        "VALUES (?, ?, ?, ?, ?)";
+    // Same rules as Invoice.updateStatus, computed from the payments in the database
+    private static final String UPDATE_INVOICE_STATUS_SQL =
+        "UPDATE invoices i SET status = CASE " +
+        "WHEN p.paid >= i.amount THEN '" + Invoice.STATUS_PAID + "' " +
+        "WHEN CURRENT_DATE > i.due_date THEN '" + Invoice.STATUS_OVERDUE + "' " +
+        "WHEN i.status IN ('" + Invoice.STATUS_DRAFT + "', '" + Invoice.STATUS_CANCELLED + "') THEN i.status " +
+        "ELSE '" + Invoice.STATUS_ISSUED + "' END " +
+        "FROM (SELECT COALESCE(SUM(amount), 0) AS paid FROM payments WHERE invoice_id = ?) p " +
+        "WHERE i.id = ?";
+    
     /**
      * Creates a new payment in the database
      * 
@@ -23,33 +48,91 @@ public class PaymentDao {
      * @return The created payment with generated ID, or null if failed
      */
     public Payment createPayment(Payment payment) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Save the payment
-            session.save(payment);
-            
-            // Update invoice status if needed
-            Invoice invoice = payment.getInvoice();
-            if (invoice != null) {
-                invoice.updateStatus();
-                session.update(invoice);
-            }
-            
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                // Save the payment
+                session.save(payment);
+                
+                // Update invoice status if needed
+                Invoice invoice = payment.getInvoice();
+                if (invoice != null) {
+                    invoice.updateStatus();
+                    session.update(invoice);
+                }
+                return null;
+            });
             LogUtil.info("Payment created successfully: " + payment.getPaymentId());
             return payment;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Payment already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create payment: " + payment.getPaymentId(), e);
             return null;
         }
     }
     
+    /**
+     * Creates several payments in one transaction. The payment rows go out as
+     * one JDBC batch, then the status of every invoice they pay is updated
+     * with one batch. If the batch fails, none of the payments is created.
+     * 
+     * @param payments The payments to create, already validated and with unique payment IDs
+     * @return One result per payment, in the same order
+     */
+    public List<BatchItemResult<Payment>> createPayments(List<Payment> payments) {
+        List<BatchItemResult<Payment>> results = new ArrayList<>(payments.size());
+        Set<Integer> invoiceIds = new TreeSet<>();
+        for (Payment payment : payments) {
+            invoiceIds.add(payment.getInvoiceId());
+        }
+        try  {
+            SessionTemplate.executeJdbcInTransaction(con -> {
+                try (PreparedStatement pst = con.prepareStatement(INSERT_PAYMENT_SQL, new String[] {"id"})) {
+                    for (Payment payment : payments) {
+                        pst.setString(1, payment.getPaymentId());
+                        pst.setInt(2, payment.getInvoiceId());
+                        pst.setBigDecimal(3, payment.getAmount());
+                        pst.setDate(4, payment.getPaymentDate() != null ? java.sql.Date.valueOf(payment.getPaymentDate()) : null);
+                        pst.setString(5, payment.getPaymentMethod());
+                        pst.addBatch();
+                    }
+                    pst.executeBatch();
+                    try (ResultSet rs = pst.getGeneratedKeys()) {
+                        for (Payment payment : payments) {
+                            if (!rs.next()) {
+                                break;
+                            }
+                            payment.setId(rs.getInt(1));
+                        }
+                    }
+                }
+                // Invoices in ID order, so concurrent batches lock them in the same order
+                try (PreparedStatement pst = con.prepareStatement(UPDATE_INVOICE_STATUS_SQL)) {
+                    for (Integer invoiceId : invoiceIds) {
+                        pst.setInt(1, invoiceId);
+                        pst.setInt(2, invoiceId);
+                        pst.addBatch();
+                    }
+                    pst.executeBatch();
+                }
+                return null;
+            });
+            LogUtil.info("Created batch of " + payments.size() + " payments for " + invoiceIds.size() + " invoices");
+            for (Payment payment : payments) {
+                results.add(BatchItemResult.success(payment));
+            }
+        } catch (Exception e) {
+            LogUtil.error("Failed to create batch of " + payments.size() + " payments", e);
+            for (Payment payment : payments) {
+                payment.setId(0);
+                results.add(BatchItemResult.failure("Batch failed: " + ConstraintViolations.describe(e)));
+            }
+        }
+        return results;
+    }
+    
     /**
      * Updates an existing payment in the database
      * 
@@ -57,28 +140,22 @@ public class PaymentDao {
      * @return The updated payment, or null if failed
      */
     public Payment updatePayment(Payment payment) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Update the payment
-            session.update(payment);
-            
-            // Update invoice status
-            Invoice invoice = payment.getInvoice();
-            if (invoice != null) {
-                invoice.updateStatus();
-                session.update(invoice);
-            }
-            
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                // Update the payment
+                session.update(payment);
+                
+                // Update invoice status
+                Invoice invoice = payment.getInvoice();
+                if (invoice != null) {
+                    invoice.updateStatus();
+                    session.update(invoice);
+                }
+                return null;
+            });
             LogUtil.info("Payment updated successfully: " + payment.getPaymentId());
             return payment;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update payment: " + payment.getPaymentId(), e);
             return null;
         }
@@ -91,28 +168,22 @@ public class PaymentDao {
      * @return The deleted payment, or null if failed
      */
     public Payment deletePayment(Payment payment) {
-        Transaction transaction = null;
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
-            // Delete the payment
-            session.delete(payment);
-            
-            // Update invoice status
-            Invoice invoice = payment.getInvoice();
-            if (invoice != null) {
-                invoice.updateStatus();
-                session.update(invoice);
-            }
-            
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                // Delete the payment
+                session.delete(payment);
+                
+                // Update invoice status
+                Invoice invoice = payment.getInvoice();
+                if (invoice != null) {
+                    invoice.updateStatus();
+                    session.update(invoice);
+                }
+                return null;
+            });
             LogUtil.info("Payment deleted successfully: " + payment.getPaymentId());
             return payment;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete payment: " + payment.getPaymentId(), e);
             return null;
         }
@@ -126,14 +197,15 @@ public class PaymentDao {
      */
     public Payment findPaymentById(int id) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Payment payment = (Payment) session.get(Payment.class, id);
-            if (payment != null) {
-                LogUtil.debug("Found payment by ID: " + id);
-            } else {
-                LogUtil.debug("Payment not found with ID: " + id);
-            }
-            return payment;
+            return SessionTemplate.executeInSession(session -> {
+                Payment payment = (Payment) session.get(Payment.class, id);
+                if (payment != null) {
+                    LogUtil.debug(() -> "Found payment by ID: " + id);
+                } else {
+                    LogUtil.debug(() -> "Payment not found with ID: " + id);
+                }
+                return payment;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payment by ID: " + id, e);
             return null;
@@ -148,18 +220,19 @@ public class PaymentDao {
      */
     public Payment findPaymentByPaymentId(String paymentId) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Payment p WHERE p.paymentId = :paymentId");
-            query.setParameter("paymentId", paymentId);
-            Payment payment = (Payment) query.uniqueResult();
-            
-            if (payment != null) {
-                LogUtil.debug("Found payment by payment ID: " + paymentId);
-            } else {
-                LogUtil.debug("Payment not found with payment ID: " + paymentId);
-            }
-            return payment;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Payment p WHERE p.paymentId = :paymentId");
+                query.setParameter("paymentId", paymentId);
+                Payment payment = (Payment) query.uniqueResult();
+                
+                if (payment != null) {
+                    LogUtil.debug(() -> "Found payment by payment ID: " + paymentId);
+                } else {
+                    LogUtil.debug(() -> "Payment not found with payment ID: " + paymentId);
+                }
+                return payment;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payment by payment ID: " + paymentId, e);
             return null;
@@ -174,13 +247,14 @@ public class PaymentDao {
      */
     public List<Payment> findPaymentsByInvoice(Invoice invoice) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Payment p WHERE p.invoice = :invoice ORDER BY p.paymentDate");
-            query.setParameter("invoice", invoice);
-            List<Payment> payments = query.list();
-            LogUtil.debug("Found " + payments.size() + " payments for invoice: " + invoice.getInvoiceNumber());
-            return payments;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Payment p WHERE p.invoice = :invoice ORDER BY p.paymentDate");
+                query.setParameter("invoice", invoice);
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments for invoice: " + invoice.getInvoiceNumber());
+                return payments;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payments by invoice: " + invoice.getId(), e);
             return null;
@@ -196,14 +270,15 @@ public class PaymentDao {
      */
     public List<Payment> findPaymentsByDateRange(LocalDate startDate, LocalDate endDate) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate ORDER BY p.paymentDate DESC");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Payment> payments = query.list();
-            LogUtil.debug("Found " + payments.size() + " payments between " + startDate + " and " + endDate);
-            return payments;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate ORDER BY p.paymentDate DESC");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments between " + startDate + " and " + endDate);
+                return payments;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payments by date range: " + startDate + " to " + endDate, e);
             return null;
@@ -218,13 +293,14 @@ public class PaymentDao {
      */
     public List<Payment> findPaymentsByMethod(String paymentMethod) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Payment p WHERE p.paymentMethod = :paymentMethod ORDER BY p.paymentDate DESC");
-            query.setParameter("paymentMethod", paymentMethod);
-            List<Payment> payments = query.list();
-            LogUtil.debug("Found " + payments.size() + " payments with method: " + paymentMethod);
-            return payments;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Payment p WHERE p.paymentMethod = :paymentMethod ORDER BY p.paymentDate DESC");
+                query.setParameter("paymentMethod", paymentMethod);
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments with method: " + paymentMethod);
+                return payments;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payments by method: " + paymentMethod, e);
             return null;
@@ -238,17 +314,115 @@ public class PaymentDao {
      */
     public List<Payment> findAllPayments() {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment ORDER BY paymentDate DESC");
-            List<Payment> payments = query.list();
-            LogUtil.debug("Found " + payments.size() + " payments in total");
-            return payments;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Payment ORDER BY paymentDate DESC");
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments in total");
+                return payments;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all payments", e);
             return null;
         }
     }
-    
+
+    /**
+     * Gets one page of payments, newest first
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of payments per page
+     * @return List of payments on the requested page
+     */
+    public List<Payment> findPaymentsPage(int pageNumber, int pageSize) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Payment p ORDER BY p.paymentDate DESC, p.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments on page " + pageNumber + " (size " + pageSize + ")");
+                return payments;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding payments page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the next batch of payments after a keyset cursor, newest first
+     *
+     * @param lastPaymentDate Payment date of the last payment already seen, or null for the first batch
+     * @param lastId Database ID of the last payment already seen
+     * @param limit Maximum number of payments to return
+     * @return List of payments following the cursor
+     */
+    public List<Payment> findPaymentsAfter(LocalDate lastPaymentDate, int lastId, int limit) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query;
+                if (lastPaymentDate == null) {
+                    query = session.createQuery("FROM Payment p ORDER BY p.paymentDate DESC, p.id DESC");
+                } else {
+                    query = session.createQuery(
+                        "FROM Payment p WHERE p.paymentDate < :lastDate OR (p.paymentDate = :lastDate AND p.id < :lastId) " +
+                        "ORDER BY p.paymentDate DESC, p.id DESC");
+                    query.setParameter("lastDate", lastPaymentDate);
+                    query.setParameter("lastId", lastId);
+                }
+                query.setMaxResults(limit);
+                List<Payment> payments = query.list();
+                LogUtil.debug(() -> "Found " + payments.size() + " payments after cursor (" + lastPaymentDate + ", " + lastId + ")");
+                return payments;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding payments after cursor: " + lastPaymentDate + ", " + lastId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets one page of payment summaries, newest first.
+     * Uses a constructor projection, so only the listed columns are read.
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of payments per page
+     * @return List of payment summaries on the requested page
+     */
+    public List<PaymentSummary> findPaymentSummaries(int pageNumber, int pageSize) {
+        try  {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT new model.PaymentSummary(p.id, p.paymentId, i.invoiceNumber, p.amount, p.paymentDate, p.paymentMethod) " +
+                    "FROM Payment p JOIN p.invoice i ORDER BY p.paymentDate DESC, p.id DESC");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<PaymentSummary> summaries = query.list();
+
+                LogUtil.debug(() -> "Found " + summaries.size() + " payment summaries on page " + pageNumber + " (size " + pageSize + ")");
+                return summaries;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding payment summaries page: " + pageNumber, e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens a streaming cursor over payments, newest first, with their invoices loaded
+     *
+     * @param paymentMethod Only include payments made with this method, or null for all payments
+     * @return The open cursor, or null if it could not be opened
+     */
+    public ScrollCursor<Payment> openPaymentCursor(String paymentMethod) {
+        String hql = paymentMethod == null
+            ? "FROM Payment p LEFT JOIN FETCH p.invoice ORDER BY p.paymentDate DESC, p.id DESC"
+            : "FROM Payment p LEFT JOIN FETCH p.invoice WHERE p.paymentMethod = :paymentMethod " +
+              "ORDER BY p.paymentDate DESC, p.id DESC";
+        return ScrollCursor.open(hql, paymentMethod == null ? null : "paymentMethod", paymentMethod, null,
+            "payments" + (paymentMethod == null ? "" : " by " + paymentMethod));
+    }
+
     /**
      * Gets a payment with its invoice information
      * 
@@ -257,18 +431,19 @@ public class PaymentDao {
      */
     public Payment getPaymentWithInvoice(int paymentId) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Payment p LEFT JOIN FETCH p.invoice WHERE p.id = :id");
-            query.setParameter("id", paymentId);
-            Payment payment = (Payment) query.uniqueResult();
-            
-            if (payment != null) {
-                LogUtil.debug("Found payment with invoice: " + paymentId);
-            } else {
-                LogUtil.debug("Payment not found with ID: " + paymentId);
-            }
-            return payment;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Payment p LEFT JOIN FETCH p.invoice WHERE p.id = :id");
+                query.setParameter("id", paymentId);
+                Payment payment = (Payment) query.uniqueResult();
+                
+                if (payment != null) {
+                    LogUtil.debug(() -> "Found payment with invoice: " + paymentId);
+                } else {
+                    LogUtil.debug(() -> "Payment not found with ID: " + paymentId);
+                }
+                return payment;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding payment with invoice: " + paymentId, e);
             return null;
@@ -283,11 +458,12 @@ public class PaymentDao {
      */
     public boolean paymentIdExists(String paymentId) {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(p) FROM Payment p WHERE p.paymentId = :paymentId");
-            query.setParameter("paymentId", paymentId);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(p) FROM Payment p WHERE p.paymentId = :paymentId");
+                query.setParameter("paymentId", paymentId);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if payment ID exists: " + paymentId, e);
@@ -295,6 +471,32 @@ public class PaymentDao {
         }
     }
     
+    /**
+     * Finds which of the given payment IDs already exist, with one IN query
+     * per FETCH_CHUNK_SIZE IDs
+     * 
+     * @param paymentIds The payment IDs to check
+     * @return The payment IDs that exist, or null if the query failed
+     */
+    public Set<String> findExistingPaymentIds(Collection<String> paymentIds) {
+        try  {
+            List<String> ids = new ArrayList<>(paymentIds);
+            return SessionTemplate.executeInSession(session -> {
+                Set<String> existing = new HashSet<>();
+                for (int i = 0; i < ids.size(); i += FETCH_CHUNK_SIZE) {
+                    Query query = session.createQuery(
+                        "SELECT p.paymentId FROM Payment p WHERE p.paymentId IN (:ids)");
+                    query.setParameterList("ids", ids.subList(i, Math.min(i + FETCH_CHUNK_SIZE, ids.size())));
+                    existing.addAll(query.list());
+                }
+                return existing;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error checking " + paymentIds.size() + " payment IDs", e);
+            return null;
+        }
+    }
+    
     /**
      * Gets all distinct payment methods
      * 
@@ -302,15 +504,16 @@ public class PaymentDao {
      */
     public List<String> findAllPaymentMethods() {
         try  {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT DISTINCT p.paymentMethod FROM Payment p WHERE p.paymentMethod IS NOT NULL ORDER BY p.paymentMethod");
-            List<String> methods = query.list();
-            LogUtil.debug("Found " + methods.size() + " distinct payment methods");
-            return methods;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT p.paymentMethod FROM Payment p WHERE p.paymentMethod IS NOT NULL ORDER BY p.paymentMethod");
+                List<String> methods = query.list();
+                LogUtil.debug(() -> "Found " + methods.size() + " distinct payment methods");
+                return methods;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all payment methods", e);
             return null;
         }
     }
-}
\ No newline at end of file
+}
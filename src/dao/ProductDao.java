@@ -2,34 +2,51 @@ package dao;
 
 import java.util.ArrayList;
 import model.Product;
+import model.ProductSummary;
 import model.Supplier;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.CacheManager;
+import util.CacheRegion;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PageUtil;
+import util.SessionTemplate;
 
 import java.util.List;
-import org.hibernate.Hibernate;
-import org.hibernate.proxy.HibernateProxy;
 
 /**
  * FIXED: ProductDao with proper RMI serialization handling
  */
 public class ProductDao {
-    
+
+    // Products by "id:" and "code:" keys, and cached query results
+    private static final CacheRegion<String, Product> productCache =
+        CacheManager.getInstance().getRegion(CacheManager.PRODUCT);
+    private static final CacheRegion<String, List<String>> productQueryCache =
+        CacheManager.getInstance().getRegion(CacheManager.PRODUCT_QUERY);
+    private static final String CATEGORIES_KEY = "categories";
+
+    /**
+     * Drops a product from the cache after its row changed outside this DAO,
+     * e.g. a stock decrement by an order. Its suppliers are dropped too because
+     * they cache their product list.
+     */
+    static void evictProduct(int productId) {
+        productCache.invalidateIf(product -> product.getId() == productId);
+        SupplierDao.evictSuppliersOfProduct(productId);
+    }
+
     public Product createProduct(Product product) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.save(product);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> session.save(product));
+            productQueryCache.invalidate(CATEGORIES_KEY);
+            SupplierDao.evictAllSuppliers();
             LogUtil.info("Product created successfully: " + product.getProductCode());
             return product;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Product already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create product: " + product.getProductCode(), e);
             return null;
@@ -37,313 +54,329 @@ public class ProductDao {
     }
     
     public Product updateProduct(Product product) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(product);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(product);
+                return null;
+            });
             LogUtil.info("Product updated successfully: " + product.getProductCode());
             return product;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update product: " + product.getProductCode(), e);
             return null;
+        } finally {
+            // Also on failure, in case the caller modified a cached instance
+            evictProduct(product.getId());
+            productQueryCache.invalidate(CATEGORIES_KEY);
+            SupplierDao.evictAllSuppliers();
         }
     }
     
     public int updateProductStock(int productId, int quantity) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            Query query = session.createQuery(
-                "UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity WHERE p.id = :id");
-            query.setParameter("quantity", quantity);
-            query.setParameter("id", productId);
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
+            int rowsAffected = SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity WHERE p.id = :id");
+                query.setParameter("quantity", quantity);
+                query.setParameter("id", productId);
+                return query.executeUpdate();
+            });
             LogUtil.info("Updated stock for product ID " + productId + " by " + quantity + " units");
             return rowsAffected;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update stock for product ID: " + productId, e);
             return 0;
         } finally {
-            if (session != null) {
-                session.close();
-            }
+            evictProduct(productId);
         }
     }
     
     public Product findProductById(int id) {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Product product = (Product) session.get(Product.class, id);
-            if (product != null) {
-                session.evict(product); // Detach for RMI
-                LogUtil.debug("Found product by ID: " + id);
-            } else {
-                LogUtil.debug("Product not found with ID: " + id);
+        return productCache.get("id:" + id, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Product product = (Product) session.get(Product.class, id);
+                    if (product != null) {
+                        session.evict(product); // Detach for RMI
+                        LogUtil.debug(() -> "Found product by ID: " + id);
+                    } else {
+                        LogUtil.debug(() -> "Product not found with ID: " + id);
+                    }
+                    return product;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding product by ID: " + id, e);
+                return null;
             }
-            return product;
-        } catch (Exception e) {
-            LogUtil.error("Error finding product by ID: " + id, e);
-            return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
-        }
+        });
     }
     
     public Product findProductByCode(String productCode) {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p WHERE p.productCode = :productCode");
-            query.setParameter("productCode", productCode);
-            Product product = (Product) query.uniqueResult();
-            
-            if (product != null) {
-                session.evict(product);
-                LogUtil.debug("Found product by code: " + productCode);
-            } else {
-                LogUtil.debug("Product not found with code: " + productCode);
-            }
-            return product;
-        } catch (Exception e) {
-            LogUtil.error("Error finding product by code: " + productCode, e);
-            return null;
-        } finally {
-            if (session != null) {
-                session.close();
+        return productCache.get("code:" + productCode, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "FROM Product p WHERE p.productCode = :productCode");
+                    query.setParameter("productCode", productCode);
+                    Product product = (Product) query.uniqueResult();
+                    
+                    if (product != null) {
+                        session.evict(product);
+                        LogUtil.debug(() -> "Found product by code: " + productCode);
+                    } else {
+                        LogUtil.debug(() -> "Product not found with code: " + productCode);
+                    }
+                    return product;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding product by code: " + productCode, e);
+                return null;
             }
-        }
+        });
     }
     
     public List<Product> findProductsByName(String name) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p WHERE p.name LIKE :name");
-            query.setParameter("name", "%" + name + "%");
-            List<Product> products = query.list();
-            
-            // Detach all products
-            for (Product product : products) {
-                session.evict(product);
-            }
-            
-            LogUtil.debug("Found " + products.size() + " products matching name: " + name);
-            return products;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Product p WHERE p.name LIKE :name");
+                query.setParameter("name", "%" + name + "%");
+                List<Product> products = query.list();
+                
+                // Detach all products
+                for (Product product : products) {
+                    session.evict(product);
+                }
+                
+                LogUtil.debug(() -> "Found " + products.size() + " products matching name: " + name);
+                return products;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding products by name: " + name, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Product> findProductsByCategory(String category) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p WHERE p.category = :category");
-            query.setParameter("category", category);
-            List<Product> products = query.list();
-            
-            for (Product product : products) {
-                session.evict(product);
-            }
-            
-            LogUtil.debug("Found " + products.size() + " products in category: " + category);
-            return products;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Product p WHERE p.category = :category");
+                query.setParameter("category", category);
+                List<Product> products = query.list();
+                
+                for (Product product : products) {
+                    session.evict(product);
+                }
+                
+                LogUtil.debug(() -> "Found " + products.size() + " products in category: " + category);
+                return products;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding products by category: " + category, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Product> findProductsBySupplier(Supplier supplier) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p WHERE p.supplier.id = :supplierId");
-            query.setParameter("supplierId", supplier.getId());
-            List<Product> products = query.list();
-            
-            for (Product product : products) {
-                session.evict(product);
-            }
-            
-            LogUtil.debug("Found " + products.size() + " products for supplier: " + supplier.getName());
-            return products;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Product p WHERE p.supplier.id = :supplierId");
+                query.setParameter("supplierId", supplier.getId());
+                List<Product> products = query.list();
+                
+                for (Product product : products) {
+                    session.evict(product);
+                }
+                
+                LogUtil.debug(() -> "Found " + products.size() + " products for supplier: " + supplier.getName());
+                return products;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding products by supplier: " + supplier.getId(), e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Product> findLowStockProducts(int threshold) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p WHERE p.stockQuantity < :threshold ORDER BY p.stockQuantity");
-            query.setParameter("threshold", threshold);
-            List<Product> products = query.list();
-            
-            for (Product product : products) {
-                session.evict(product);
-            }
-            
-            LogUtil.debug("Found " + products.size() + " products with low stock (below " + threshold + ")");
-            return products;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Product p WHERE p.stockQuantity < :threshold ORDER BY p.stockQuantity");
+                query.setParameter("threshold", threshold);
+                List<Product> products = query.list();
+                
+                for (Product product : products) {
+                    session.evict(product);
+                }
+                
+                LogUtil.debug(() -> "Found " + products.size() + " products with low stock (below " + threshold + ")");
+                return products;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding low stock products with threshold: " + threshold, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Product> findAllProducts() {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Product ORDER BY name");
-            List<Product> products = query.list();
-            
-            for (Product product : products) {
-                product.setSupplier(unproxy(product.getSupplier()));
-                session.evict(product);
-            }
-            
-            LogUtil.debug("Found " + products.size() + " products in total");
-            return new ArrayList<>(products);
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Product p LEFT JOIN FETCH p.supplier ORDER BY p.name");
+                List<Product> products = query.list();
+                
+                for (Product product : products) {
+                    session.evict(product);
+                }
+                
+                LogUtil.debug(() -> "Found " + products.size() + " products in total");
+                return new ArrayList<>(products);
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all products", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-    
-    public static <T> T unproxy(T entity) {
-    if (entity instanceof HibernateProxy) {
-        return (T) ((HibernateProxy) entity).getHibernateLazyInitializer().getImplementation();
+
+    public List<Product> findProductsPage(int pageNumber, int pageSize) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM Product p LEFT JOIN FETCH p.supplier ORDER BY p.name, p.id");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<Product> products = query.list();
+
+                for (Product product : products) {
+                    session.evict(product);
+                }
+
+                LogUtil.debug(() -> "Found " + products.size() + " products on page " + pageNumber + " (size " + pageSize + ")");
+                return new ArrayList<>(products);
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding products page: " + pageNumber, e);
+            return null;
+        }
     }
-    return entity;
+
+    public List<Product> findProductsAfter(String lastName, int lastId, int limit) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query;
+                if (lastName == null) {
+                    query = session.createQuery("FROM Product p LEFT JOIN FETCH p.supplier ORDER BY p.name, p.id");
+                } else {
+                    query = session.createQuery(
+                        "FROM Product p LEFT JOIN FETCH p.supplier WHERE p.name > :lastName OR (p.name = :lastName AND p.id > :lastId) " +
+                        "ORDER BY p.name, p.id");
+                    query.setParameter("lastName", lastName);
+                    query.setParameter("lastId", lastId);
+                }
+                query.setMaxResults(limit);
+                List<Product> products = query.list();
+
+                for (Product product : products) {
+                    session.evict(product);
+                }
+
+                LogUtil.debug(() -> "Found " + products.size() + " products after cursor (" + lastName + ", " + lastId + ")");
+                return new ArrayList<>(products);
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding products after cursor: " + lastName + ", " + lastId, e);
+            return null;
+        }
     }
-    
+
+    public List<ProductSummary> findProductSummaries(int pageNumber, int pageSize) {
+        try {
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT new model.ProductSummary(p.id, p.productCode, p.name, p.category, p.price, p.stockQuantity, s.name) " +
+                    "FROM Product p LEFT JOIN p.supplier s ORDER BY p.name, p.id");
+                query.setFirstResult(PageUtil.firstResult(pageNumber, pageSize));
+                query.setMaxResults(pageSize);
+                List<ProductSummary> summaries = query.list();
+
+                LogUtil.debug(() -> "Found " + summaries.size() + " product summaries on page " + pageNumber + " (size " + pageSize + ")");
+                return summaries;
+            });
+        } catch (Exception e) {
+            LogUtil.error("Error finding product summaries page: " + pageNumber, e);
+            return null;
+        }
+    }
+
     public Product getProductWithSupplier(int productId) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Product p LEFT JOIN FETCH p.supplier WHERE p.id = :id");
-            query.setParameter("id", productId);
-            Product product = (Product) query.uniqueResult();
-            
-            if (product != null) {
-                session.evict(product);
-                if (product.getSupplier() != null) {
-                    session.evict(product.getSupplier());
-                    product.setSupplier(unproxy(product.getSupplier()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Product p LEFT JOIN FETCH p.supplier WHERE p.id = :id");
+                query.setParameter("id", productId);
+                Product product = (Product) query.uniqueResult();
+                
+                if (product != null) {
+                    session.evict(product);
+                    LogUtil.debug(() -> "Found product with supplier: " + productId);
+                } else {
+                    LogUtil.debug(() -> "Product not found with ID: " + productId);
                 }
-                LogUtil.debug("Found product with supplier: " + productId);
-            } else {
-                LogUtil.debug("Product not found with ID: " + productId);
-            }
-            return product;
+                return product;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding product with supplier: " + productId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public Product deleteProduct(Product product) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.delete(product);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.delete(product);
+                return null;
+            });
             LogUtil.info("Product deleted successfully: " + product.getProductCode());
             return product;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete product: " + product.getProductCode(), e);
             return null;
+        } finally {
+            evictProduct(product.getId());
+            productQueryCache.invalidate(CATEGORIES_KEY);
+            SupplierDao.evictAllSuppliers();
         }
     }
     
     public boolean productCodeExists(String productCode) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(p) FROM Product p WHERE p.productCode = :productCode");
-            query.setParameter("productCode", productCode);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(p) FROM Product p WHERE p.productCode = :productCode");
+                query.setParameter("productCode", productCode);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if product code exists: " + productCode, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<String> findAllCategories() {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT DISTINCT p.category FROM Product p WHERE p.category IS NOT NULL ORDER BY p.category");
-            List<String> categories = query.list();
-            LogUtil.debug("Found " + categories.size() + " distinct categories");
-            return categories;
-        } catch (Exception e) {
-            LogUtil.error("Error finding all categories", e);
-            return null;
-        } finally {
-            if (session != null) {
-                session.close();
+        return productQueryCache.get(CATEGORIES_KEY, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "SELECT DISTINCT p.category FROM Product p WHERE p.category IS NOT NULL ORDER BY p.category");
+                    List<String> categories = query.list();
+                    LogUtil.debug(() -> "Found " + categories.size() + " distinct categories");
+                    return categories;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding all categories", e);
+                return null;
             }
-        }
+        });
     }
-}
\ No newline at end of file
+}
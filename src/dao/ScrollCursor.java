@@ -0,0 +1,175 @@
+package dao;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import util.LogUtil;
+import util.SessionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Forward-only cursor over a Hibernate query.
+ * Keeps its own session and read-only transaction open until closed, so rows are
+ * streamed from the database in fetch-size chunks instead of being materialized
+ * with query.list(). The session is cleared after every batch to keep heap usage
+ * constant regardless of the result size.
+ *
+ * @param <T> The entity type returned by the query
+ */
+public class ScrollCursor<T> {
+
+    // PostgreSQL only streams a result set when a fetch size is set inside a transaction
+    private static final int FETCH_SIZE = 500;
+
+    private final Session session;
+    private final Transaction transaction;
+    private final ScrollableResults results;
+    private final Consumer<T> detacher;
+    private final String description;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private long rowsRead = 0;
+
+    private ScrollCursor(Session session, Transaction transaction, ScrollableResults results,
+                         Consumer<T> detacher, String description) {
+        this.session = session;
+        this.transaction = transaction;
+        this.results = results;
+        this.detacher = detacher;
+        this.description = description;
+    }
+
+    /**
+     * Opens a cursor for the given HQL query
+     *
+     * @param hql The HQL query, which must select a single entity
+     * @param paramName Name of the single query parameter, or null if none
+     * @param paramValue Value of the query parameter
+     * @param detacher Prepares each entity for RMI serialization while the session is open, may be null
+     * @param description Short description used in log messages
+     * @return The open cursor, or null if it could not be opened
+     */
+    static <T> ScrollCursor<T> open(String hql, String paramName, Object paramValue,
+                                    Consumer<T> detacher, String description) {
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = SessionTemplate.openSession();
+            session.setFlushMode(FlushMode.MANUAL);
+            session.setCacheMode(CacheMode.IGNORE);
+            transaction = session.beginTransaction();
+
+            Query query = session.createQuery(hql);
+            if (paramName != null) {
+                query.setParameter(paramName, paramValue);
+            }
+            query.setReadOnly(true);
+            query.setFetchSize(FETCH_SIZE);
+            ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+
+            LogUtil.debug(() -> "Opened cursor for " + description);
+            return new ScrollCursor<>(session, transaction, results, detacher, description);
+        } catch (Exception e) {
+            LogUtil.error("Failed to open cursor for " + description, e);
+            if (transaction != null) {
+                try {
+                    transaction.rollback();
+                } catch (Exception ignored) {
+                    // Connection is being discarded anyway
+                }
+            }
+            SessionTemplate.closeSession(session);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the next batch of entities
+     *
+     * @param batchSize Maximum number of entities to return
+     * @return The next batch, empty once the cursor is exhausted
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> nextBatch(int batchSize) {
+        List<T> batch = new ArrayList<>(batchSize);
+        if (closed || exhausted) {
+            return batch;
+        }
+
+        while (batch.size() < batchSize) {
+            if (!results.next()) {
+                exhausted = true;
+                break;
+            }
+            T entity = (T) results.get(0);
+            if (detacher != null) {
+                detacher.accept(entity);
+            }
+            batch.add(entity);
+        }
+        rowsRead += batch.size();
+
+        // Drop everything loaded for this batch from the persistence context
+        session.clear();
+        return batch;
+    }
+
+    /**
+     * Checks whether more rows may be available
+     *
+     * @return false once the last row was read or the cursor was closed
+     */
+    public synchronized boolean hasMore() {
+        return !closed && !exhausted;
+    }
+
+    /**
+     * Gets the number of rows read so far
+     *
+     * @return Rows read
+     */
+    public synchronized long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Gets the cursor description
+     *
+     * @return The description given when the cursor was opened
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Closes the result set, ends the read-only transaction and releases the session.
+     * Safe to call more than once.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            results.close();
+        } catch (Exception e) {
+            LogUtil.warn("Error closing results for cursor " + description, e);
+        }
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        } catch (Exception e) {
+            LogUtil.warn("Error ending transaction for cursor " + description, e);
+        }
+        SessionTemplate.closeSession(session);
+        LogUtil.debug(() -> "Closed cursor for " + description + " after " + rowsRead + " rows");
+    }
+}
@@ -1,36 +1,50 @@
 package dao;
 
 import model.Supplier;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.CacheManager;
+import util.CacheRegion;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.SessionTemplate;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * FIXED: SupplierDao with proper RMI serialization handling
  */
 public class SupplierDao {
-    
+
+    // Suppliers by "id:" and "code:" keys
+    private static final CacheRegion<String, Supplier> supplierCache =
+        CacheManager.getInstance().getRegion(CacheManager.SUPPLIER);
+
+    /**
+     * Drops every cached supplier, e.g. after a product was added, moved or removed
+     */
+    static void evictAllSuppliers() {
+        supplierCache.clear();
+    }
+
+    /**
+     * Drops the cached suppliers whose product list contains the product
+     */
+    static void evictSuppliersOfProduct(int productId) {
+        supplierCache.invalidateIf(supplier -> supplier.getProducts() != null &&
+            supplier.getProducts().stream().anyMatch(product -> product.getId() == productId));
+    }
+
     public Supplier createSupplier(Supplier supplier) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.save(supplier);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> session.save(supplier));
             LogUtil.info("Supplier created successfully: " + supplier.getSupplierCode());
-            // Fix RMI serialization
-            if (supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
             return supplier;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("Supplier already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create supplier: " + supplier.getSupplierCode(), e);
             return null;
@@ -38,292 +52,231 @@ public class SupplierDao {
     }
     
     public Supplier updateSupplier(Supplier supplier) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(supplier);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(supplier);
+                return null;
+            });
             LogUtil.info("Supplier updated successfully: " + supplier.getSupplierCode());
-            // Fix RMI serialization
-            if (supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
             return supplier;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update supplier: " + supplier.getSupplierCode(), e);
             return null;
+        } finally {
+            supplierCache.invalidateIf(cached -> cached.getId() == supplier.getId());
         }
     }
     
     public Supplier deleteSupplier(Supplier supplier) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.delete(supplier);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.delete(supplier);
+                return null;
+            });
             LogUtil.info("Supplier deleted successfully: " + supplier.getSupplierCode());
-            // Fix RMI serialization
-            if (supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
             return supplier;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete supplier: " + supplier.getSupplierCode(), e);
             return null;
+        } finally {
+            supplierCache.invalidateIf(cached -> cached.getId() == supplier.getId());
         }
     }
     
     public Supplier findSupplierById(int id) {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Supplier supplier = (Supplier) session.get(Supplier.class, id);
-            if (supplier != null) {
-                session.evict(supplier); // Detach for RMI
-                // Fix RMI serialization - convert Hibernate collection to ArrayList
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                }
-                LogUtil.debug("Found supplier by ID: " + id);
-            } else {
-                LogUtil.debug("Supplier not found with ID: " + id);
-            }
-            return supplier;
-        } catch (Exception e) {
-            LogUtil.error("Error finding supplier by ID: " + id, e);
-            return null;
-        } finally {
-            if (session != null) {
-                session.close();
+        return supplierCache.get("id:" + id, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Supplier supplier = (Supplier) session.get(Supplier.class, id);
+                    if (supplier != null) {
+                        detach(session, supplier); // Detach for RMI
+                        LogUtil.debug(() -> "Found supplier by ID: " + id);
+                    } else {
+                        LogUtil.debug(() -> "Supplier not found with ID: " + id);
+                    }
+                    return supplier;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding supplier by ID: " + id, e);
+                return null;
             }
-        }
+        });
     }
     
     public Supplier findSupplierByCode(String supplierCode) {
-        Session session = null;
-        try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Supplier s WHERE s.supplierCode = :supplierCode");
-            query.setParameter("supplierCode", supplierCode);
-            Supplier supplier = (Supplier) query.uniqueResult();
-            
-            if (supplier != null) {
-                session.evict(supplier);
-                // Fix RMI serialization
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                }
-                LogUtil.debug("Found supplier by code: " + supplierCode);
-            } else {
-                LogUtil.debug("Supplier not found with code: " + supplierCode);
-            }
-            return supplier;
-        } catch (Exception e) {
-            LogUtil.error("Error finding supplier by code: " + supplierCode, e);
-            return null;
-        } finally {
-            if (session != null) {
-                session.close();
+        return supplierCache.get("code:" + supplierCode, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "FROM Supplier s WHERE s.supplierCode = :supplierCode");
+                    query.setParameter("supplierCode", supplierCode);
+                    Supplier supplier = (Supplier) query.uniqueResult();
+                    
+                    if (supplier != null) {
+                        detach(session, supplier);
+                        LogUtil.debug(() -> "Found supplier by code: " + supplierCode);
+                    } else {
+                        LogUtil.debug(() -> "Supplier not found with code: " + supplierCode);
+                    }
+                    return supplier;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding supplier by code: " + supplierCode, e);
+                return null;
             }
-        }
+        });
     }
     
     public List<Supplier> findSuppliersByName(String name) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Supplier s WHERE s.name LIKE :name");
-            query.setParameter("name", "%" + name + "%");
-            List<Supplier> suppliers = query.list();
-            
-            // Detach all suppliers and fix RMI serialization
-            for (Supplier supplier : suppliers) {
-                session.evict(supplier);
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                }
-            }
-            
-            LogUtil.debug("Found " + suppliers.size() + " suppliers matching name: " + name);
-            return suppliers;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT s FROM Supplier s LEFT JOIN FETCH s.products WHERE s.name LIKE :name");
+                query.setParameter("name", "%" + name + "%");
+                List<Supplier> suppliers = query.list();
+                
+                // Detach all suppliers and fix RMI serialization
+                detachAll(session, suppliers);
+                
+                LogUtil.debug(() -> "Found " + suppliers.size() + " suppliers matching name: " + name);
+                return suppliers;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding suppliers by name: " + name, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public Supplier findSupplierByEmail(String email) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Supplier s WHERE s.email = :email");
-            query.setParameter("email", email);
-            Supplier supplier = (Supplier) query.uniqueResult();
-            
-            if (supplier != null) {
-                session.evict(supplier);
-                // Fix RMI serialization
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Supplier s WHERE s.email = :email");
+                query.setParameter("email", email);
+                Supplier supplier = (Supplier) query.uniqueResult();
+                
+                if (supplier != null) {
+                    detach(session, supplier);
+                    LogUtil.debug(() -> "Found supplier by email: " + email);
+                } else {
+                    LogUtil.debug(() -> "Supplier not found with email: " + email);
                 }
-                LogUtil.debug("Found supplier by email: " + email);
-            } else {
-                LogUtil.debug("Supplier not found with email: " + email);
-            }
-            return supplier;
+                return supplier;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding supplier by email: " + email, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Supplier> findAllSuppliers() {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Supplier ORDER BY name");
-            List<Supplier> suppliers = query.list();
-            
-            // Detach all suppliers to avoid proxy issues and fix RMI serialization
-            for (Supplier supplier : suppliers) {
-                session.evict(supplier);
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                }
-            }
-            
-            LogUtil.debug("Found " + suppliers.size() + " suppliers in total");
-            return suppliers;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT s FROM Supplier s LEFT JOIN FETCH s.products ORDER BY s.name");
+                List<Supplier> suppliers = query.list();
+                
+                // Detach all suppliers to avoid proxy issues and fix RMI serialization
+                detachAll(session, suppliers);
+                
+                LogUtil.debug(() -> "Found " + suppliers.size() + " suppliers in total");
+                return suppliers;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all suppliers", e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public Supplier getSupplierWithProducts(int supplierId) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Supplier s LEFT JOIN FETCH s.products WHERE s.id = :id");
-            query.setParameter("id", supplierId);
-            Supplier supplier = (Supplier) query.uniqueResult();
-            
-            if (supplier != null) {
-                // Force initialization and detach
-                supplier.getProducts().size();
-                session.evict(supplier);
-                // Also evict all products to prevent proxy issues
-                if (supplier.getProducts() != null) {
-                    for (Object product : supplier.getProducts()) {
-                        session.evict(product);
-                    }
-                    // Fix RMI serialization - convert to ArrayList
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM Supplier s LEFT JOIN FETCH s.products WHERE s.id = :id");
+                query.setParameter("id", supplierId);
+                Supplier supplier = (Supplier) query.uniqueResult();
+                
+                if (supplier != null) {
+                    detach(session, supplier);
+                    LogUtil.debug(() -> "Found supplier with products: " + supplierId + 
+                                       ", Products count: " + supplier.getProducts().size());
+                } else {
+                    LogUtil.debug(() -> "Supplier not found with ID: " + supplierId);
                 }
-                LogUtil.debug("Found supplier with products: " + supplierId + 
-                             ", Products count: " + supplier.getProducts().size());
-            } else {
-                LogUtil.debug("Supplier not found with ID: " + supplierId);
-            }
-            return supplier;
+                return supplier;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding supplier with products: " + supplierId, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public boolean supplierCodeExists(String supplierCode) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(s) FROM Supplier s WHERE s.supplierCode = :supplierCode");
-            query.setParameter("supplierCode", supplierCode);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(s) FROM Supplier s WHERE s.supplierCode = :supplierCode");
+                query.setParameter("supplierCode", supplierCode);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if supplier code exists: " + supplierCode, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public boolean emailExists(String email) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(s) FROM Supplier s WHERE s.email = :email");
-            query.setParameter("email", email);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(s) FROM Supplier s WHERE s.email = :email");
+                query.setParameter("email", email);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if email exists: " + email, e);
             return false;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
     
     public List<Supplier> findSuppliersByContactPerson(String contactPerson) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Supplier s WHERE s.contactPerson LIKE :contactPerson");
-            query.setParameter("contactPerson", "%" + contactPerson + "%");
-            List<Supplier> suppliers = query.list();
-            
-            // Fix RMI serialization for all suppliers
-            for (Supplier supplier : suppliers) {
-                session.evict(supplier);
-                if (supplier.getProducts() != null) {
-                    supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                }
-            }
-            
-            LogUtil.debug("Found " + suppliers.size() + " suppliers with contact person: " + contactPerson);
-            return suppliers;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT DISTINCT s FROM Supplier s LEFT JOIN FETCH s.products WHERE s.contactPerson LIKE :contactPerson");
+                query.setParameter("contactPerson", "%" + contactPerson + "%");
+                List<Supplier> suppliers = query.list();
+                
+                // Fix RMI serialization for all suppliers
+                detachAll(session, suppliers);
+                
+                LogUtil.debug(() -> "Found " + suppliers.size() + " suppliers with contact person: " + contactPerson);
+                return suppliers;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding suppliers by contact person: " + contactPerson, e);
             return null;
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Detaches a list of suppliers with their products loaded.
+     * List queries fetch-join the eager products collection; otherwise Hibernate
+     * would load it with one extra select per supplier.
+     */
+    private static void detachAll(Session session, List<Supplier> suppliers) {
+        for (Supplier supplier : suppliers) {
+            detach(session, supplier);
+        }
+    }
+    
+    /**
+     * Loads a supplier's products and detaches it
+     */
+    private static void detach(Session session, Supplier supplier) {
+        Hibernate.initialize(supplier.getProducts());
+        session.evict(supplier);
+    }
+}
@@ -1,12 +1,14 @@
 package dao;
 
 import model.User;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.Query;
-import util.HibernateUtil;
+import util.CacheManager;
+import util.CacheRegion;
+import util.ConstraintViolations;
 import util.LogUtil;
+import util.PasswordHasher;
 import util.SecurityUtil;
+import util.SessionTemplate;
 
 import java.util.Date;
 import java.util.List;
@@ -16,7 +18,20 @@ import java.util.List;
  * Follows the same pattern as other DAOs but includes security features.
  */
 public class UserDao {
-    
+
+    // Users by "id:", "username:" and "email:" keys
+    private static final CacheRegion<String, User> userCache =
+        CacheManager.getInstance().getRegion(CacheManager.USER);
+
+    /**
+     * Drops a user from the cache after its row changed
+     *
+     * @param userId The ID of the user
+     */
+    private static void evictUser(int userId) {
+        userCache.invalidateIf(user -> user.getId() == userId);
+    }
+
     /**
      * Creates a new user in the database
      * 
@@ -24,15 +39,17 @@ public class UserDao {
      * @return The created user with generated ID, or null if failed
      */
     public User createUser(User user) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
             // Hash the password if it's not already hashed
             if (user.getSalt() == null) {
+                // A duplicate would only fail at the insert, after the expensive hash
+                if (usernameExists(user.getUsername())) {
+                    LogUtil.warn("User already exists: " + user.getUsername());
+                    return null;
+                }
+                
                 String salt = SecurityUtil.generateSaltString();
-                String hashedPassword = SecurityUtil.hashPasswordString(user.getPassword(), salt);
+                String hashedPassword = PasswordHasher.getInstance().hash(user.getPassword(), salt);
                 user.setSalt(salt);
                 user.setPassword(hashedPassword);
             }
@@ -42,13 +59,13 @@ public class UserDao {
                 user.setCreatedAt(new Date());
             }
             
-            session.save(user);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> session.save(user));
             LogUtil.info("User created successfully: " + user.getUsername());
             return user;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            if (ConstraintViolations.isUniqueViolation(e)) {
+                LogUtil.warn("User already exists: " + ConstraintViolations.describe(e));
+                return null;
             }
             LogUtil.error("Failed to create user: " + user.getUsername(), e);
             return null;
@@ -62,20 +79,18 @@ public class UserDao {
      * @return The updated user, or null if failed
      */
     public User updateUser(User user) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.update(user);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.update(user);
+                return null;
+            });
             LogUtil.info("User updated successfully: " + user.getUsername());
             return user;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update user: " + user.getUsername(), e);
             return null;
+        } finally {
+            evictUser(user.getId());
         }
     }
     
@@ -87,56 +102,78 @@ public class UserDao {
      * @return Number of rows affected
      */
     public int updatePassword(int userId, String newPassword) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            
             // Generate new salt and hash
             String salt = SecurityUtil.generateSaltString();
-            String hashedPassword = SecurityUtil.hashPasswordString(newPassword, salt);
+            String hashedPassword = PasswordHasher.getInstance().hash(newPassword, salt);
             
+            int rowsAffected = storePasswordHash(userId, hashedPassword, salt);
+            LogUtil.info("Password updated for user ID: " + userId);
+            return rowsAffected;
+        } catch (Exception e) {
+            LogUtil.error("Failed to update password for user ID: " + userId, e);
+            return 0;
+        } finally {
+            evictUser(userId);
+        }
+    }
+    
+    /**
+     * Writes a new password hash and salt
+     */
+    private int storePasswordHash(int userId, String hashedPassword, String salt) throws Exception {
+        return SessionTemplate.executeInTransaction(session -> {
             Query query = session.createQuery(
                 "UPDATE User u SET u.password = :password, u.salt = :salt WHERE u.id = :id");
             query.setParameter("password", hashedPassword);
             query.setParameter("salt", salt);
             query.setParameter("id", userId);
-            
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
-            LogUtil.info("Password updated for user ID: " + userId);
-            return rowsAffected;
-        } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
+            return query.executeUpdate();
+        });
+    }
+    
+    /**
+     * Re-hashes a password with the current hashing parameters after a
+     * successful login, replacing a legacy or outdated hash. A failure only
+     * leaves the old hash in place.
+     * 
+     * @param user The authenticated user
+     * @param password The password (plaintext) that was just verified
+     */
+    private void rehashPassword(User user, String password) {
+        try {
+            String salt = SecurityUtil.generateSaltString();
+            String hashedPassword = PasswordHasher.getInstance().hash(password, salt);
+            if (storePasswordHash(user.getId(), hashedPassword, salt) > 0) {
+                user.setPassword(hashedPassword);
+                user.setSalt(salt);
+                LogUtil.info("Password hash upgraded for user: " + user.getUsername());
             }
-            LogUtil.error("Failed to update password for user ID: " + userId, e);
-            return 0;
+        } catch (Exception e) {
+            LogUtil.warn("Failed to upgrade password hash for user: " + user.getUsername() + " - " + e.getMessage());
+        } finally {
+            evictUser(user.getId());
         }
     }
     
     /**
-     * Updates a user's last login time
+     * Updates a user's last login time.
+     * Does not evict the cached user, so a login does not cost a cache miss;
+     * the cached copy shows the previous login time until it expires.
      * 
      * @param userId The ID of the user
      * @return Number of rows affected
      */
     public int updateLastLogin(int userId) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            Query query = session.createQuery(
-                "UPDATE User u SET u.lastLogin = :lastLogin WHERE u.id = :id");
-            query.setParameter("lastLogin", new Date());
-            query.setParameter("id", userId);
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
-            return rowsAffected;
+            return SessionTemplate.executeInTransaction(session -> {
+                Query query = session.createQuery(
+                    "UPDATE User u SET u.lastLogin = :lastLogin WHERE u.id = :id");
+                query.setParameter("lastLogin", new Date());
+                query.setParameter("id", userId);
+                return query.executeUpdate();
+            });
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to update last login for user ID: " + userId, e);
             return 0;
         }
@@ -149,19 +186,22 @@ public class UserDao {
      * @return The user if found, null otherwise
      */
     public User findUserById(int id) {
-        try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            User user = (User) session.get(User.class, id);
-            if (user != null) {
-                LogUtil.debug("Found user by ID: " + id);
-            } else {
-                LogUtil.debug("User not found with ID: " + id);
+        return userCache.get("id:" + id, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    User user = (User) session.get(User.class, id);
+                    if (user != null) {
+                        LogUtil.debug(() -> "Found user by ID: " + id);
+                    } else {
+                        LogUtil.debug(() -> "User not found with ID: " + id);
+                    }
+                    return user;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding user by ID: " + id, e);
+                return null;
             }
-            return user;
-        } catch (Exception e) {
-            LogUtil.error("Error finding user by ID: " + id, e);
-            return null;
-        }
+        });
     }
     
     /**
@@ -171,23 +211,26 @@ public class UserDao {
      * @return The user if found, null otherwise
      */
     public User findUserByUsername(String username) {
-        try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM User u WHERE u.username = :username");
-            query.setParameter("username", username);
-            User user = (User) query.uniqueResult();
-            
-            if (user != null) {
-                LogUtil.debug("Found user by username: " + username);
-            } else {
-                LogUtil.debug("User not found with username: " + username);
+        return userCache.get("username:" + username, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "FROM User u WHERE u.username = :username");
+                    query.setParameter("username", username);
+                    User user = (User) query.uniqueResult();
+                    
+                    if (user != null) {
+                        LogUtil.debug(() -> "Found user by username: " + username);
+                    } else {
+                        LogUtil.debug(() -> "User not found with username: " + username);
+                    }
+                    return user;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding user by username: " + username, e);
+                return null;
             }
-            return user;
-        } catch (Exception e) {
-            LogUtil.error("Error finding user by username: " + username, e);
-            return null;
-        }
+        });
     }
     
     /**
@@ -197,23 +240,26 @@ public class UserDao {
      * @return The user if found, null otherwise
      */
     public User findUserByEmail(String email) {
-        try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM User u WHERE u.email = :email");
-            query.setParameter("email", email);
-            User user = (User) query.uniqueResult();
-            
-            if (user != null) {
-                LogUtil.debug("Found user by email: " + email);
-            } else {
-                LogUtil.debug("User not found with email: " + email);
+        return userCache.get("email:" + email, () -> {
+            try {
+                return SessionTemplate.executeInSession(session -> {
+                    Query query = session.createQuery(
+                        "FROM User u WHERE u.email = :email");
+                    query.setParameter("email", email);
+                    User user = (User) query.uniqueResult();
+                    
+                    if (user != null) {
+                        LogUtil.debug(() -> "Found user by email: " + email);
+                    } else {
+                        LogUtil.debug(() -> "User not found with email: " + email);
+                    }
+                    return user;
+                });
+            } catch (Exception e) {
+                LogUtil.error("Error finding user by email: " + email, e);
+                return null;
             }
-            return user;
-        } catch (Exception e) {
-            LogUtil.error("Error finding user by email: " + email, e);
-            return null;
-        }
+        });
     }
     
     /**
@@ -223,11 +269,12 @@ public class UserDao {
      */
     public List<User> findAllUsers() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User ORDER BY username");
-            List<User> users = query.list();
-            LogUtil.debug("Found " + users.size() + " users in total");
-            return users;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery("FROM User ORDER BY username");
+                List<User> users = query.list();
+                LogUtil.debug(() -> "Found " + users.size() + " users in total");
+                return users;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding all users", e);
             return null;
@@ -242,13 +289,14 @@ public class UserDao {
      */
     public List<User> findUsersByRole(String role) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM User u WHERE u.role = :role ORDER BY u.username");
-            query.setParameter("role", role);
-            List<User> users = query.list();
-            LogUtil.debug("Found " + users.size() + " users with role: " + role);
-            return users;
+            return SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "FROM User u WHERE u.role = :role ORDER BY u.username");
+                query.setParameter("role", role);
+                List<User> users = query.list();
+                LogUtil.debug(() -> "Found " + users.size() + " users with role: " + role);
+                return users;
+            });
         } catch (Exception e) {
             LogUtil.error("Error finding users by role: " + role, e);
             return null;
@@ -277,8 +325,13 @@ public class UserDao {
                 return null;
             }
             
-            // Verify the password
-            if (SecurityUtil.verifyPasswordString(password, user.getPassword(), user.getSalt())) {
+            // Verify the password on the bounded hashing pool
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (hasher.verify(password, user.getPassword(), user.getSalt())) {
+                if (hasher.needsRehash(user.getPassword())) {
+                    rehashPassword(user, password);
+                }
+                
                 // Update last login time
                 updateLastLogin(user.getId());
                 user.updateLastLogin();
@@ -302,20 +355,18 @@ public class UserDao {
      * @return The deleted user, or null if failed
      */
     public User deleteUser(User user) {
-        Transaction transaction = null;
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            session.delete(user);
-            transaction.commit();
+            SessionTemplate.executeInTransaction(session -> {
+                session.delete(user);
+                return null;
+            });
             LogUtil.info("User deleted successfully: " + user.getUsername());
             return user;
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LogUtil.error("Failed to delete user: " + user.getUsername(), e);
             return null;
+        } finally {
+            evictUser(user.getId());
         }
     }
     
@@ -327,11 +378,12 @@ public class UserDao {
      */
     public boolean usernameExists(String username) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(u) FROM User u WHERE u.username = :username");
-            query.setParameter("username", username);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(u) FROM User u WHERE u.username = :username");
+                query.setParameter("username", username);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if username exists: " + username, e);
@@ -347,11 +399,12 @@ public class UserDao {
      */
     public boolean emailExists(String email) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "SELECT COUNT(u) FROM User u WHERE u.email = :email");
-            query.setParameter("email", email);
-            Long count = (Long) query.uniqueResult();
+            Long count = SessionTemplate.executeInSession(session -> {
+                Query query = session.createQuery(
+                    "SELECT COUNT(u) FROM User u WHERE u.email = :email");
+                query.setParameter("email", email);
+                return (Long) query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception e) {
             LogUtil.error("Error checking if email exists: " + email, e);
@@ -367,9 +420,10 @@ public class UserDao {
     public User createDefaultAdmin() {
         try {
             // Check if there are any users by using a simple count query instead
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query countQuery = session.createQuery("SELECT COUNT(u) FROM User u");
-            Long userCount = (Long) countQuery.uniqueResult();
+            Long userCount = SessionTemplate.executeInSession(session -> {
+                Query countQuery = session.createQuery("SELECT COUNT(u) FROM User u");
+                return (Long) countQuery.uniqueResult();
+            });
             
             if (userCount != null && userCount > 0) {
                 LogUtil.debug("Users already exist, skipping default admin creation");
@@ -0,0 +1,73 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * An authenticated client session, returned by the login methods of
+ * UserService. The token is passed back on later calls instead of the
+ * username and password; the other fields describe the logged-in user so the
+ * client does not have to look the user up again.
+ */
+public class AuthSession implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String token;
+    private final int userId;
+    private final String username;
+    private final String fullName;
+    private final String email;
+    private final String role;
+    private final Date expiresAt;
+
+    /**
+     * Creates a session view
+     *
+     * @param token Opaque session token
+     * @param user The logged-in user
+     * @param expiresAt When the session expires if it is not used
+     */
+    public AuthSession(String token, User user, Date expiresAt) {
+        this.token = token;
+        this.userId = user.getId();
+        this.username = user.getUsername();
+        this.fullName = user.getFullName();
+        this.email = user.getEmail();
+        this.role = user.getRole();
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthSession [userId=" + userId + ", username=" + username +
+               ", role=" + role + ", expiresAt=" + expiresAt + "]";
+    }
+}
@@ -0,0 +1,69 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of one item of a batch write. Batch methods return one result per
+ * submitted item, in the order the items were submitted.
+ *
+ * @param <T> The entity type
+ */
+public class BatchItemResult<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final T item;
+    private final String error;
+
+    private BatchItemResult(T item, String error) {
+        this.item = item;
+        this.error = error;
+    }
+
+    /**
+     * Creates the result of an item that was written
+     *
+     * @param item The written item, with its generated ID set
+     * @return The result
+     */
+    public static <T> BatchItemResult<T> success(T item) {
+        return new BatchItemResult<>(item, null);
+    }
+
+    /**
+     * Creates the result of an item that was not written
+     *
+     * @param error Why the item was rejected
+     * @return The result
+     */
+    public static <T> BatchItemResult<T> failure(String error) {
+        return new BatchItemResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets the written item
+     *
+     * @return The item, or null if it was not written
+     */
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * Gets the reason the item was not written
+     *
+     * @return The error, or null if the item was written
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "BatchItemResult [success, item=" + item + "]"
+                           : "BatchItemResult [failed, error=" + error + "]";
+    }
+}
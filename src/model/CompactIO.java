@@ -0,0 +1,89 @@
+package model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+/**
+ * Compact field encodings used by the custom writeObject/readObject methods of
+ * the model entities. Amounts are written as an unscaled long plus a scale and
+ * dates as an epoch day, instead of full BigDecimal/LocalDate object streams
+ * with their class descriptors.
+ *
+ * Each entity declares no serializable fields and writes its own fields with
+ * these encodings in writeObject. Related entities and collections keep
+ * normal object serialization, so shared references and cycles between
+ * entities are preserved.
+ */
+final class CompactIO {
+
+    // Markers for nullable values
+    private static final byte NULL = 0;
+    private static final byte PRESENT = 1;
+    private static final byte DECIMAL_BIG = 2;
+
+    // Epoch day written for a null date
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private CompactIO() {
+    }
+
+    static void writeString(ObjectOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(PRESENT);
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(ObjectInputStream in) throws IOException {
+        return in.readByte() == NULL ? null : in.readUTF();
+    }
+
+    /**
+     * Writes an amount as unscaled long + scale, falling back to the full
+     * unscaled value only when it does not fit in a long
+     */
+    static void writeDecimal(ObjectOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value.unscaledValue().bitLength() < 64) {
+            out.writeByte(PRESENT);
+            out.writeLong(value.unscaledValue().longValue());
+            out.writeInt(value.scale());
+        } else {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeByte(DECIMAL_BIG);
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+            out.writeInt(value.scale());
+        }
+    }
+
+    static BigDecimal readDecimal(ObjectInputStream in) throws IOException {
+        byte marker = in.readByte();
+        if (marker == NULL) {
+            return null;
+        }
+        if (marker == PRESENT) {
+            long unscaled = in.readLong();
+            return BigDecimal.valueOf(unscaled, in.readInt());
+        }
+        byte[] unscaled = new byte[in.readInt()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.readInt());
+    }
+
+    static void writeDate(ObjectOutputStream out, LocalDate value) throws IOException {
+        out.writeLong(value == null ? NULL_DATE : value.toEpochDay());
+    }
+
+    static LocalDate readDate(ObjectInputStream in) throws IOException {
+        long epochDay = in.readLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -13,7 +17,10 @@ import java.util.List;
 @Entity
 @Table(name = "customers")
 public class Customer implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -202,4 +209,34 @@ public class Customer implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        CompactIO.writeString(out, customerId);
+        CompactIO.writeString(out, firstName);
+        CompactIO.writeString(out, lastName);
+        CompactIO.writeString(out, email);
+        CompactIO.writeString(out, phone);
+        CompactIO.writeString(out, address);
+        CompactIO.writeDate(out, registrationDate);
+        out.writeObject(orders);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        customerId = CompactIO.readString(in);
+        firstName = CompactIO.readString(in);
+        lastName = CompactIO.readString(in);
+        email = CompactIO.readString(in);
+        phone = CompactIO.readString(in);
+        address = CompactIO.readString(in);
+        registrationDate = CompactIO.readDate(in);
+        orders = (List<Order>) in.readObject();
+    }
+}
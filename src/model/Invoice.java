@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,7 +18,10 @@ import java.util.List;
 @Entity
 @Table(name = "invoices")
 public class Invoice implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -264,4 +271,32 @@ public class Invoice implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        CompactIO.writeString(out, invoiceNumber);
+        out.writeObject(order);
+        CompactIO.writeDate(out, issueDate);
+        CompactIO.writeDate(out, dueDate);
+        CompactIO.writeDecimal(out, amount);
+        CompactIO.writeString(out, status);
+        out.writeObject(payments);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        invoiceNumber = CompactIO.readString(in);
+        order = (Order) in.readObject();
+        issueDate = CompactIO.readDate(in);
+        dueDate = CompactIO.readDate(in);
+        amount = CompactIO.readDecimal(in);
+        status = CompactIO.readString(in);
+        payments = (List<Payment>) in.readObject();
+    }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, read-only view of an invoice for list screens.
+ * Built directly by an HQL constructor projection, so no order or payments
+ * are loaded or sent over RMI.
+ */
+public class InvoiceSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int id;
+    private final String invoiceNumber;
+    private final String orderId;
+    private final LocalDate issueDate;
+    private final LocalDate dueDate;
+    private final BigDecimal amount;
+    private final String status;
+    
+    /**
+     * Projection constructor used by HQL "SELECT new model.InvoiceSummary(...)"
+     * 
+     * @param id Database ID
+     * @param invoiceNumber Unique invoice number
+     * @param orderId Business ID of the invoiced order
+     * @param issueDate Date the invoice was issued
+     * @param dueDate Date the invoice is due
+     * @param amount Invoice amount
+     * @param status Invoice status
+     */
+    public InvoiceSummary(int id, String invoiceNumber, String orderId, LocalDate issueDate,
+                          LocalDate dueDate, BigDecimal amount, String status) {
+        this.id = id;
+        this.invoiceNumber = invoiceNumber;
+        this.orderId = orderId;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.amount = amount;
+        this.status = status;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getInvoiceNumber() {
+        return invoiceNumber;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public LocalDate getIssueDate() {
+        return issueDate;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+    
+    @Override
+    public String toString() {
+        return "InvoiceSummary [id=" + id + ", invoiceNumber=" + invoiceNumber + ", orderId=" + orderId +
+               ", issueDate=" + issueDate + ", amount=" + amount + ", status=" + status + "]";
+    }
+}
@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,7 +18,10 @@ import java.util.List;
 @Entity
 @Table(name = "orders")
 public class Order implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -272,4 +279,34 @@ public class Order implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        CompactIO.writeString(out, orderId);
+        out.writeObject(customer);
+        CompactIO.writeDate(out, orderDate);
+        CompactIO.writeDecimal(out, totalAmount);
+        CompactIO.writeString(out, status);
+        CompactIO.writeString(out, paymentMethod);
+        out.writeObject(orderItems);
+        out.writeObject(invoices);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        orderId = CompactIO.readString(in);
+        customer = (Customer) in.readObject();
+        orderDate = CompactIO.readDate(in);
+        totalAmount = CompactIO.readDecimal(in);
+        status = CompactIO.readString(in);
+        paymentMethod = CompactIO.readString(in);
+        orderItems = (List<OrderItem>) in.readObject();
+        invoices = (List<Invoice>) in.readObject();
+    }
+}
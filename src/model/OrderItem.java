@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 
@@ -11,7 +15,10 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "order_items")
 public class OrderItem implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -187,4 +194,25 @@ public class OrderItem implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        out.writeObject(order);
+        out.writeObject(product);
+        out.writeInt(quantity);
+        CompactIO.writeDecimal(out, unitPrice);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        order = (Order) in.readObject();
+        product = (Product) in.readObject();
+        quantity = in.readInt();
+        unitPrice = CompactIO.readDecimal(in);
+    }
+}
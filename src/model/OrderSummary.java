@@ -0,0 +1,72 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, read-only view of an order for list screens.
+ * Built directly by an HQL constructor projection, so no items, invoices or
+ * customer entity are loaded or sent over RMI.
+ */
+public class OrderSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int id;
+    private final String orderId;
+    private final String customerName;
+    private final LocalDate orderDate;
+    private final BigDecimal totalAmount;
+    private final String status;
+    
+    /**
+     * Projection constructor used by HQL "SELECT new model.OrderSummary(...)"
+     * 
+     * @param id Database ID
+     * @param orderId Business order ID
+     * @param customerFirstName Customer first name
+     * @param customerLastName Customer last name
+     * @param orderDate Date of the order
+     * @param totalAmount Order total
+     * @param status Order status
+     */
+    public OrderSummary(int id, String orderId, String customerFirstName, String customerLastName,
+                        LocalDate orderDate, BigDecimal totalAmount, String status) {
+        this.id = id;
+        this.orderId = orderId;
+        this.customerName = customerFirstName + " " + customerLastName;
+        this.orderDate = orderDate;
+        this.totalAmount = totalAmount;
+        this.status = status;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public LocalDate getOrderDate() {
+        return orderDate;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+    
+    @Override
+    public String toString() {
+        return "OrderSummary [id=" + id + ", orderId=" + orderId + ", customer=" + customerName +
+               ", date=" + orderDate + ", total=" + totalAmount + ", status=" + status + "]";
+    }
+}
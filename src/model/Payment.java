@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -12,7 +16,10 @@ import java.time.LocalDate;
 @Entity
 @Table(name = "payments")
 public class Payment implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -175,4 +182,27 @@ public class Payment implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        CompactIO.writeString(out, paymentId);
+        out.writeObject(invoice);
+        CompactIO.writeDecimal(out, amount);
+        CompactIO.writeDate(out, paymentDate);
+        CompactIO.writeString(out, paymentMethod);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        paymentId = CompactIO.readString(in);
+        invoice = (Invoice) in.readObject();
+        amount = CompactIO.readDecimal(in);
+        paymentDate = CompactIO.readDate(in);
+        paymentMethod = CompactIO.readString(in);
+    }
+}
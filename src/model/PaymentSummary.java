@@ -0,0 +1,71 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, read-only view of a payment for list screens.
+ * Built directly by an HQL constructor projection, so the invoice is not
+ * loaded or sent over RMI.
+ */
+public class PaymentSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int id;
+    private final String paymentId;
+    private final String invoiceNumber;
+    private final BigDecimal amount;
+    private final LocalDate paymentDate;
+    private final String paymentMethod;
+    
+    /**
+     * Projection constructor used by HQL "SELECT new model.PaymentSummary(...)"
+     * 
+     * @param id Database ID
+     * @param paymentId Business payment ID
+     * @param invoiceNumber Number of the paid invoice
+     * @param amount Amount paid
+     * @param paymentDate Date of the payment
+     * @param paymentMethod Payment method
+     */
+    public PaymentSummary(int id, String paymentId, String invoiceNumber, BigDecimal amount,
+                          LocalDate paymentDate, String paymentMethod) {
+        this.id = id;
+        this.paymentId = paymentId;
+        this.invoiceNumber = invoiceNumber;
+        this.amount = amount;
+        this.paymentDate = paymentDate;
+        this.paymentMethod = paymentMethod;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+
+    public String getInvoiceNumber() {
+        return invoiceNumber;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDate getPaymentDate() {
+        return paymentDate;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+    
+    @Override
+    public String toString() {
+        return "PaymentSummary [id=" + id + ", paymentId=" + paymentId + ", invoice=" + invoiceNumber +
+               ", amount=" + amount + ", date=" + paymentDate + ", method=" + paymentMethod + "]";
+    }
+}
@@ -1,6 +1,10 @@
 package model;
 
 import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 
@@ -11,7 +15,10 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "products")
 public class Product implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // All fields are written by writeObject; none by default serialization
+    private static final ObjectStreamField[] serialPersistentFields = {};
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -222,4 +229,31 @@ public class Product implements Serializable {
     public int hashCode() {
         return Integer.hashCode(id);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Serialized field by field with CompactIO; readObject reads the same order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(id);
+        CompactIO.writeString(out, productCode);
+        CompactIO.writeString(out, name);
+        CompactIO.writeString(out, description);
+        CompactIO.writeDecimal(out, price);
+        out.writeInt(stockQuantity);
+        CompactIO.writeString(out, category);
+        out.writeObject(supplier);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = in.readInt();
+        productCode = CompactIO.readString(in);
+        name = CompactIO.readString(in);
+        description = CompactIO.readString(in);
+        price = CompactIO.readDecimal(in);
+        stockQuantity = in.readInt();
+        category = CompactIO.readString(in);
+        supplier = (Supplier) in.readObject();
+    }
+}
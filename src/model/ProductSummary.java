@@ -0,0 +1,77 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Flat, read-only view of a product for list screens.
+ * Built directly by an HQL constructor projection, so the supplier entity is
+ * not loaded or sent over RMI.
+ */
+public class ProductSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int id;
+    private final String productCode;
+    private final String name;
+    private final String category;
+    private final BigDecimal price;
+    private final int stockQuantity;
+    private final String supplierName;
+    
+    /**
+     * Projection constructor used by HQL "SELECT new model.ProductSummary(...)"
+     * 
+     * @param id Database ID
+     * @param productCode Unique product code
+     * @param name Product name
+     * @param category Product category
+     * @param price Product price
+     * @param stockQuantity Current stock level
+     * @param supplierName Supplier name, null if the product has no supplier
+     */
+    public ProductSummary(int id, String productCode, String name, String category,
+                          BigDecimal price, int stockQuantity, String supplierName) {
+        this.id = id;
+        this.productCode = productCode;
+        this.name = name;
+        this.category = category;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+        this.supplierName = supplierName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductSummary [id=" + id + ", code=" + productCode + ", name=" + name +
+               ", price=" + price + ", stock=" + stockQuantity + "]";
+    }
+}
@@ -82,6 +82,26 @@ public interface CustomerService extends Remote {
      */
     List<Customer> findAllCustomers() throws RemoteException;
     
+    /**
+     * Gets one page of customers
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of customers per page (capped by the server)
+     * @return List of customers on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Customer> findCustomersPage(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Gets the next batch of customers with a database ID greater than lastId
+     * 
+     * @param lastId Database ID of the last customer already seen, or 0 for the first batch
+     * @param limit Maximum number of customers to return (capped by the server)
+     * @return List of customers following the cursor
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Customer> findCustomersAfter(int lastId, int limit) throws RemoteException;
+    
     /**
      * Gets a customer with all their orders loaded
      * 
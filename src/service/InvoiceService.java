@@ -1,6 +1,8 @@
 package service;
 
+import model.BatchItemResult;
 import model.Invoice;
+import model.InvoiceSummary;
 import model.Order;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -22,6 +24,17 @@ public interface InvoiceService extends Remote {
      */
     Invoice createInvoice(Invoice invoice) throws RemoteException;
     
+    /**
+     * Creates several invoices in one transaction. Invoice numbers are checked
+     * for the whole batch with one query; invoices that are invalid or repeat
+     * an invoice number are rejected, the rest are created.
+     * 
+     * @param invoices The invoices to create
+     * @return One result per invoice, in the same order
+     * @throws RemoteException If RMI communication fails
+     */
+    List<BatchItemResult<Invoice>> createInvoices(List<Invoice> invoices) throws RemoteException;
+    
     /**
      * Updates an existing invoice
      * 
@@ -112,6 +125,39 @@ public interface InvoiceService extends Remote {
      */
     List<Invoice> findAllInvoices() throws RemoteException;
     
+    /**
+     * Gets one page of invoices
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of invoices per page (capped by the server)
+     * @return List of invoices on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Invoice> findInvoicesPage(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Gets the next batch of invoices after a keyset cursor taken from the
+     * last invoice of the previous batch
+     * 
+     * @param lastIssueDate Issue date of the last invoice already seen, or null for the first batch
+     * @param lastId Database ID of the last invoice already seen
+     * @param limit Maximum number of invoices to return (capped by the server)
+     * @return List of invoices following the cursor
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Invoice> findInvoicesAfter(LocalDate lastIssueDate, int lastId, int limit) throws RemoteException;
+    
+    /**
+     * Gets one page of invoice summaries for list screens. Much smaller than
+     * full Invoice entities: no related entities or collections are included.
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of invoices per page (capped by the server)
+     * @return List of invoice summaries on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<InvoiceSummary> findInvoiceSummaries(int pageNumber, int pageSize) throws RemoteException;
+    
     /**
      * Gets an invoice with its order information loaded
      * 
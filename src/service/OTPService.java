@@ -11,7 +11,8 @@ import java.rmi.RemoteException;
 public interface OTPService extends Remote {
     
     /**
-     * Generates and sends an OTP to the specified email address
+     * Generates and sends an OTP to the specified email address.
+     * Returns once the OTP is saved; the email is sent in the background.
      * 
      * @param email The email address to send OTP to
      * @param otpType The type of OTP (LOGIN, PASSWORD_RESET, etc.)
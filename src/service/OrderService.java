@@ -1,7 +1,9 @@
 package service;
 
+import model.BatchItemResult;
 import model.Customer;
 import model.Order;
+import model.OrderSummary;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
@@ -14,14 +16,26 @@ import java.util.List;
 public interface OrderService extends Remote {
     
     /**
-     * Creates a new order
+     * Creates a new order and reserves the stock of its items in the same
+     * transaction. The order is rejected if any product does not have enough stock.
      * 
      * @param order The order to create
-     * @return The created order with generated ID
+     * @return The created order with generated ID, or null if rejected
      * @throws RemoteException If RMI communication fails
      */
     Order createOrder(Order order) throws RemoteException;
     
+    /**
+     * Creates several orders in one transaction. Order IDs are checked for the
+     * whole batch with one query; orders that are invalid, repeat an order ID
+     * or need a product that runs out of stock are rejected, the rest are created.
+     * 
+     * @param orders The orders to create
+     * @return One result per order, in the same order
+     * @throws RemoteException If RMI communication fails
+     */
+    List<BatchItemResult<Order>> createOrders(List<Order> orders) throws RemoteException;
+    
     /**
      * Updates an existing order
      * 
@@ -104,6 +118,50 @@ public interface OrderService extends Remote {
      */
     List<Order> findAllOrders() throws RemoteException;
     
+    /**
+     * Gets one page of orders
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of orders per page (capped by the server)
+     * @return List of orders on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Order> findOrdersPage(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Gets the next batch of orders after a keyset cursor taken from the
+     * last order of the previous batch
+     * 
+     * @param lastOrderDate Order date of the last order already seen, or null for the first batch
+     * @param lastId Database ID of the last order already seen
+     * @param limit Maximum number of orders to return (capped by the server)
+     * @return List of orders following the cursor
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Order> findOrdersAfter(LocalDate lastOrderDate, int lastId, int limit) throws RemoteException;
+    
+    /**
+     * Gets one page of order summaries for list screens. Much smaller than
+     * full Order entities: no related entities or collections are included.
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of orders per page (capped by the server)
+     * @return List of order summaries on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<OrderSummary> findOrderSummaries(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Opens a remote cursor that streams all orders in fixed-size batches,
+     * newest first. The cursor must be closed by the client when done; idle
+     * cursors are closed by the server.
+     * 
+     * @param status Only include orders with this status, or null for all orders
+     * @return The remote cursor
+     * @throws RemoteException If the cursor cannot be opened or RMI communication fails
+     */
+    RemoteCursor<Order> openOrderCursor(String status) throws RemoteException;
+    
     /**
      * Gets an order with all its items and customer information loaded
      * 
@@ -1,7 +1,9 @@
 package service;
 
+import model.BatchItemResult;
 import model.Invoice;
 import model.Payment;
+import model.PaymentSummary;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
@@ -22,6 +24,18 @@ public interface PaymentService extends Remote {
      */
     Payment createPayment(Payment payment) throws RemoteException;
     
+    /**
+     * Creates several payments in one transaction and updates the status of
+     * the invoices they pay. Payment IDs are checked for the whole batch with
+     * one query; payments that are invalid or repeat a payment ID are
+     * rejected, the rest are created.
+     * 
+     * @param payments The payments to create
+     * @return One result per payment, in the same order
+     * @throws RemoteException If RMI communication fails
+     */
+    List<BatchItemResult<Payment>> createPayments(List<Payment> payments) throws RemoteException;
+    
     /**
      * Updates an existing payment
      * 
@@ -94,6 +108,50 @@ public interface PaymentService extends Remote {
      */
     List<Payment> findAllPayments() throws RemoteException;
     
+    /**
+     * Gets one page of payments
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of payments per page (capped by the server)
+     * @return List of payments on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Payment> findPaymentsPage(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Gets the next batch of payments after a keyset cursor taken from the
+     * last payment of the previous batch
+     * 
+     * @param lastPaymentDate Payment date of the last payment already seen, or null for the first batch
+     * @param lastId Database ID of the last payment already seen
+     * @param limit Maximum number of payments to return (capped by the server)
+     * @return List of payments following the cursor
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Payment> findPaymentsAfter(LocalDate lastPaymentDate, int lastId, int limit) throws RemoteException;
+    
+    /**
+     * Gets one page of payment summaries for list screens. Much smaller than
+     * full Payment entities: no related entities or collections are included.
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of payments per page (capped by the server)
+     * @return List of payment summaries on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<PaymentSummary> findPaymentSummaries(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Opens a remote cursor that streams all payments in fixed-size batches,
+     * newest first. The cursor must be closed by the client when done; idle
+     * cursors are closed by the server.
+     * 
+     * @param paymentMethod Only include payments made with this method, or null for all payments
+     * @return The remote cursor
+     * @throws RemoteException If the cursor cannot be opened or RMI communication fails
+     */
+    RemoteCursor<Payment> openPaymentCursor(String paymentMethod) throws RemoteException;
+    
     /**
      * Gets a payment with its invoice information loaded
      * 
@@ -1,6 +1,7 @@
 package service;
 
 import model.Product;
+import model.ProductSummary;
 import model.Supplier;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -111,6 +112,39 @@ public interface ProductService extends Remote {
      */
     List<Product> findAllProducts() throws RemoteException;
     
+    /**
+     * Gets one page of products
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of products per page (capped by the server)
+     * @return List of products on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Product> findProductsPage(int pageNumber, int pageSize) throws RemoteException;
+    
+    /**
+     * Gets the next batch of products after a keyset cursor taken from the
+     * last product of the previous batch
+     * 
+     * @param lastName Name of the last product already seen, or null for the first batch
+     * @param lastId Database ID of the last product already seen
+     * @param limit Maximum number of products to return (capped by the server)
+     * @return List of products following the cursor
+     * @throws RemoteException If RMI communication fails
+     */
+    List<Product> findProductsAfter(String lastName, int lastId, int limit) throws RemoteException;
+    
+    /**
+     * Gets one page of product summaries for list screens. Much smaller than
+     * full Product entities: no related entities or collections are included.
+     * 
+     * @param pageNumber The zero-based page number
+     * @param pageSize The number of products per page (capped by the server)
+     * @return List of product summaries on the requested page
+     * @throws RemoteException If RMI communication fails
+     */
+    List<ProductSummary> findProductSummaries(int pageNumber, int pageSize) throws RemoteException;
+    
     /**
      * Gets a product with its supplier information loaded
      * 
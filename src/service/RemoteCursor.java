@@ -0,0 +1,49 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Remote iterator over a large server-side result.
+ * Returned by the open*Cursor methods of the services so clients can export
+ * whole tables in fixed-size batches without the server materializing the
+ * full result. Idle cursors are closed by the server after a timeout.
+ *
+ * @param <T> The type of the elements returned
+ */
+public interface RemoteCursor<T> extends Remote {
+
+    /**
+     * Gets the next batch of elements
+     *
+     * @return The next batch, empty once the cursor is exhausted
+     * @throws RemoteException If RMI communication fails or the cursor has expired
+     */
+    List<T> nextBatch() throws RemoteException;
+
+    /**
+     * Checks whether more elements may be available
+     *
+     * @return true if nextBatch may return more elements, false otherwise
+     * @throws RemoteException If RMI communication fails
+     */
+    boolean hasMore() throws RemoteException;
+
+    /**
+     * Gets the maximum number of elements returned per batch
+     *
+     * @return The batch size
+     * @throws RemoteException If RMI communication fails
+     */
+    int getBatchSize() throws RemoteException;
+
+    /**
+     * Closes the cursor and releases its server-side resources. Call it also
+     * after the last batch; the database resources are released when the last
+     * row is read, but the remote object stays available until closed.
+     *
+     * @throws RemoteException If RMI communication fails
+     */
+    void close() throws RemoteException;
+}
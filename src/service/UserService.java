@@ -1,5 +1,6 @@
 package service;
 
+import model.AuthSession;
 import model.User;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -102,6 +103,63 @@ public interface UserService extends Remote {
      */
     User authenticateUser(String username, String password) throws RemoteException;
     
+    /**
+     * Logs in with username and password and starts a session
+     * 
+     * @param username The username
+     * @param password The password (plaintext)
+     * @return The new session with its token, or null if authentication failed
+     * @throws RemoteException If RMI communication fails
+     */
+    AuthSession login(String username, String password) throws RemoteException;
+    
+    /**
+     * Completes OTP-based login and starts a session
+     * 
+     * @param email The email address of the user
+     * @param otpCode The OTP code provided by the user
+     * @return The new session with its token, or null if the OTP is invalid
+     * @throws RemoteException If RMI communication fails
+     */
+    AuthSession loginWithOTP(String email, String otpCode) throws RemoteException;
+    
+    /**
+     * Checks a session token and extends the session
+     * 
+     * @param token The session token
+     * @return The session, or null if the token is unknown or expired
+     * @throws RemoteException If RMI communication fails
+     */
+    AuthSession validateSession(String token) throws RemoteException;
+    
+    /**
+     * Gets the user of a session without a database lookup
+     * 
+     * @param token The session token
+     * @return The logged-in user, or null if the token is unknown or expired
+     * @throws RemoteException If RMI communication fails
+     */
+    User getSessionUser(String token) throws RemoteException;
+    
+    /**
+     * Checks whether the user of a session has a role
+     * 
+     * @param token The session token
+     * @param role The role to check (e.g. User.ROLE_ADMIN)
+     * @return true if the session is valid and its user has the role
+     * @throws RemoteException If RMI communication fails
+     */
+    boolean hasRole(String token, String role) throws RemoteException;
+    
+    /**
+     * Ends a session
+     * 
+     * @param token The session token
+     * @return true if the session existed
+     * @throws RemoteException If RMI communication fails
+     */
+    boolean logout(String token) throws RemoteException;
+    
     /**
      * Initiates OTP-based login by sending OTP to user's email
      * 
@@ -0,0 +1,238 @@
+package service.implementation;
+
+import model.AuthSession;
+import model.User;
+import util.LogUtil;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the authenticated client sessions in memory, keyed by an opaque
+ * random token. Validating a token is a map lookup, so token-checked calls
+ * need no database round trip to find the user and role.
+ *
+ * A session expires when it has not been used for the idle timeout, and in
+ * any case after the maximum lifetime. Sessions of a user are dropped when
+ * the user's password changes or the user is deleted or deactivated, and
+ * follow the user's role when it changes. Sessions live only in this server
+ * and do not survive a restart.
+ *
+ * Configured with the system properties session.idleTimeoutMinutes (default
+ * 30) and session.maxLifetimeHours (default 12).
+ */
+public class AuthSessionRegistry {
+
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(
+        Long.getLong("session.idleTimeoutMinutes", 30));
+    private static final long MAX_LIFETIME_MS = TimeUnit.HOURS.toMillis(
+        Long.getLong("session.maxLifetimeHours", 12));
+    private static final int TOKEN_BYTES = 32;
+    private static final long REAP_INTERVAL_SECONDS = 60;
+
+    private static AuthSessionRegistry instance;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+
+    // Statistics
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong validated = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private AuthSessionRegistry() {
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "auth-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleAtFixedRate(this::removeExpiredSessions,
+            REAP_INTERVAL_SECONDS, REAP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the singleton instance
+     *
+     * @return The session registry
+     */
+    public static synchronized AuthSessionRegistry getInstance() {
+        if (instance == null) {
+            instance = new AuthSessionRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a session for an authenticated user
+     *
+     * @param user The authenticated user
+     * @return The new session
+     */
+    AuthSession create(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Entry entry = new Entry(user);
+        sessions.put(token, entry);
+        created.incrementAndGet();
+        LogUtil.debug("Session created for user: " + user.getUsername());
+        return entry.toSession(token);
+    }
+
+    /**
+     * Looks up a session and extends its idle timeout
+     *
+     * @param token The session token
+     * @return The session, or null if the token is unknown or expired
+     */
+    AuthSession validate(String token) {
+        Entry entry = find(token);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.toSession(token);
+    }
+
+    /**
+     * Gets the user of a session, extending its idle timeout
+     *
+     * @param token The session token
+     * @return The user, or null if the token is unknown or expired
+     */
+    User getUser(String token) {
+        Entry entry = find(token);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.user;
+    }
+
+    private Entry find(String token) {
+        if (token == null) {
+            invalid.incrementAndGet();
+            return null;
+        }
+        Entry entry = sessions.get(token);
+        if (entry == null) {
+            invalid.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            sessions.remove(token, entry);
+            expired.incrementAndGet();
+            return null;
+        }
+        validated.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Ends a session
+     *
+     * @param token The session token
+     * @return true if the session existed
+     */
+    boolean remove(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+
+    /**
+     * Ends all sessions of a user, e.g. after a password change
+     *
+     * @param userId The user ID
+     * @return Number of sessions ended
+     */
+    int removeUser(int userId) {
+        int removed = 0;
+        Iterator<Entry> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().user.getId() == userId) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            LogUtil.info("Ended " + removed + " sessions of user ID: " + userId);
+        }
+        return removed;
+    }
+
+    /**
+     * Applies a changed user to its sessions: ends them if the user was
+     * deactivated, otherwise updates the user and role they carry
+     *
+     * @param user The updated user
+     */
+    void updateUser(User user) {
+        if (!user.isActive()) {
+            removeUser(user.getId());
+            return;
+        }
+        for (Entry entry : sessions.values()) {
+            if (entry.user.getId() == user.getId()) {
+                entry.user = user;
+            }
+        }
+    }
+
+    private void removeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Gets a one-line summary of the session statistics
+     *
+     * @return Session statistics
+     */
+    public String getStatistics() {
+        return "Active: " + sessions.size() +
+            ", Created: " + created.get() +
+            ", Validated: " + validated.get() +
+            ", Invalid: " + invalid.get() +
+            ", Expired: " + expired.get();
+    }
+
+    /**
+     * A session: the user it belongs to and when it was started and last used
+     */
+    private static class Entry {
+        private volatile User user;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+
+        private Entry(User user) {
+            this.user = user;
+        }
+
+        private long expiresAt() {
+            return Math.min(lastUsed + IDLE_TIMEOUT_MS, createdAt + MAX_LIFETIME_MS);
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt();
+        }
+
+        private AuthSession toSession(String token) {
+            return new AuthSession(token, user, new Date(expiresAt()));
+        }
+    }
+}
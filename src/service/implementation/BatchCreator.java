@@ -0,0 +1,100 @@
+package service.implementation;
+
+import model.BatchItemResult;
+import util.EntityGraphSanitizer;
+import util.LogUtil;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Shared steps of the batch create methods: validates every item, rejects
+ * business keys that are repeated in the batch or already exist (checked
+ * with one query for the whole batch), hands the remaining items to the DAO
+ * in one call and puts the results back in submission order.
+ */
+final class BatchCreator {
+
+    private BatchCreator() {
+    }
+
+    /**
+     * Creates a batch of entities
+     *
+     * @param entityName Name used in messages, e.g. "order"
+     * @param items The submitted items
+     * @param validator Returns why an item is invalid, or null if it is valid
+     * @param keyOf Gets the business key of a valid item
+     * @param findExisting Returns the keys that already exist, or null if the check failed
+     * @param writer Writes the valid items, returning one result per item in order
+     * @return One result per submitted item, in the same order
+     * @throws RemoteException If the existing keys could not be checked
+     */
+    static <T> List<BatchItemResult<T>> create(String entityName, List<T> items,
+                                               Function<T, String> validator,
+                                               Function<T, String> keyOf,
+                                               Function<Collection<String>, Set<String>> findExisting,
+                                               Function<List<T>, List<BatchItemResult<T>>> writer)
+            throws RemoteException {
+        List<BatchItemResult<T>> results = new ArrayList<>(items.size());
+        Set<String> keys = new LinkedHashSet<>();
+        Set<String> repeated = new HashSet<>();
+        for (T item : items) {
+            String problem = validator.apply(item);
+            results.add(problem == null ? null : BatchItemResult.failure("Rejected " + problem));
+            if (problem == null && !keys.add(keyOf.apply(item))) {
+                repeated.add(keyOf.apply(item));
+            }
+        }
+
+        Set<String> existing = keys.isEmpty() ? new HashSet<>() : findExisting.apply(keys);
+        if (existing == null) {
+            throw new RemoteException("Failed to check existing " + entityName + " keys");
+        }
+
+        List<T> toWrite = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            String key = keyOf.apply(items.get(i));
+            if (repeated.contains(key)) {
+                results.set(i, BatchItemResult.failure("Rejected " + entityName + " repeated in batch: " + key));
+            } else if (existing.contains(key)) {
+                results.set(i, BatchItemResult.failure("Rejected " + entityName + " with existing key: " + key));
+            } else {
+                toWrite.add(items.get(i));
+                positions.add(i);
+            }
+        }
+
+        if (!toWrite.isEmpty()) {
+            List<BatchItemResult<T>> written = writer.apply(toWrite);
+            for (int i = 0; i < written.size(); i++) {
+                BatchItemResult<T> result = written.get(i);
+                results.set(positions.get(i), result.isSuccess()
+                    ? BatchItemResult.success(EntityGraphSanitizer.sanitize(result.getItem())) : result);
+            }
+        }
+
+        LogUtil.info("Batch of " + items.size() + " " + entityName + "s: " + countSuccesses(results) + " created");
+        return results;
+    }
+
+    private static int countSuccesses(List<? extends BatchItemResult<?>> results) {
+        int count = 0;
+        for (BatchItemResult<?> result : results) {
+            if (result.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+package service.implementation;
+
+import dao.ScrollCursor;
+import util.LogUtil;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the remote cursors handed out to clients.
+ * Caps the number of cursors still reading (each one holds a pooled
+ * connection until its last row is read) and closes cursors that have been
+ * idle longer than the configured timeout.
+ *
+ * Configured with the system properties cursor.maxOpen (default 8),
+ * cursor.idleTimeoutSeconds (default 120) and cursor.batchSize (default 500).
+ */
+public class CursorRegistry {
+
+    private static final int MAX_OPEN_CURSORS = Integer.getInteger("cursor.maxOpen", 8);
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(
+        Long.getLong("cursor.idleTimeoutSeconds", 120));
+    private static final int BATCH_SIZE = Integer.getInteger("cursor.batchSize", 500);
+    private static final long REAP_INTERVAL_SECONDS = 30;
+
+    private static CursorRegistry instance;
+
+    private final Set<RemoteCursorImpl<?>> openCursors = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService reaper;
+    private final AtomicLong totalOpened = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+
+    private CursorRegistry() {
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cursor-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleAtFixedRate(this::closeIdleCursors,
+            REAP_INTERVAL_SECONDS, REAP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the singleton instance
+     *
+     * @return The cursor registry
+     */
+    public static synchronized CursorRegistry getInstance() {
+        if (instance == null) {
+            instance = new CursorRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the number of cursors that may hold a database connection at once
+     *
+     * @return The open cursor limit
+     */
+    static int getMaxOpenCursors() {
+        return MAX_OPEN_CURSORS;
+    }
+
+    /**
+     * Exports a DAO cursor as a remote cursor
+     *
+     * @param cursor The DAO cursor, may be null if opening failed
+     * @return The exported remote cursor
+     * @throws RemoteException If the cursor could not be opened or too many cursors are open
+     */
+    synchronized <T> RemoteCursorImpl<T> register(ScrollCursor<T> cursor) throws RemoteException {
+        if (cursor == null) {
+            throw new RemoteException("Failed to open cursor");
+        }
+        int holdingConnections = countHoldingConnections();
+        if (holdingConnections >= MAX_OPEN_CURSORS) {
+            cursor.close();
+            LogUtil.warn("Rejected cursor for " + cursor.getDescription() + ": " +
+                holdingConnections + " cursors already open");
+            throw new RemoteException("Too many open cursors, try again later");
+        }
+
+        RemoteCursorImpl<T> remoteCursor;
+        try {
+            remoteCursor = new RemoteCursorImpl<>(cursor, BATCH_SIZE);
+        } catch (RemoteException e) {
+            cursor.close();
+            throw e;
+        }
+        openCursors.add(remoteCursor);
+        totalOpened.incrementAndGet();
+        LogUtil.info("Opened remote cursor for " + cursor.getDescription() +
+            " (" + openCursors.size() + " open)");
+        return remoteCursor;
+    }
+
+    // Exhausted cursors stay registered until closed, but no longer hold a connection
+    private int countHoldingConnections() {
+        int count = 0;
+        for (RemoteCursorImpl<?> cursor : openCursors) {
+            if (cursor.holdsConnection()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Closes a remote cursor and releases its resources
+     *
+     * @param cursor The cursor to close
+     */
+    void close(RemoteCursorImpl<?> cursor) {
+        if (openCursors.remove(cursor)) {
+            cursor.release();
+            LogUtil.info("Closed remote cursor for " + cursor.getDescription() +
+                " after " + cursor.getRowsRead() + " rows");
+        }
+    }
+
+    /**
+     * Closes cursors that have not been used within the idle timeout
+     */
+    private void closeIdleCursors() {
+        try {
+            long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+            for (RemoteCursorImpl<?> cursor : new ArrayList<>(openCursors)) {
+                if (cursor.getLastAccess() < cutoff) {
+                    LogUtil.warn("Expiring idle remote cursor for " + cursor.getDescription());
+                    close(cursor);
+                    totalExpired.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            LogUtil.error("Error expiring idle cursors", e);
+        }
+    }
+
+    /**
+     * Closes all open cursors and stops the reaper. Called on server shutdown.
+     */
+    public void closeAll() {
+        reaper.shutdownNow();
+        for (RemoteCursorImpl<?> cursor : new ArrayList<>(openCursors)) {
+            close(cursor);
+        }
+    }
+
+    /**
+     * Gets a one-line summary of the cursor statistics
+     *
+     * @return Cursor statistics
+     */
+    public String getStatistics() {
+        List<String> details = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (RemoteCursorImpl<?> cursor : openCursors) {
+            details.add(cursor.getDescription() + " (" + cursor.getRowsRead() + " rows, " +
+                (now - cursor.getOpenedAt()) / 1000 + "s)");
+        }
+        return "Open: " + openCursors.size() + "/" + MAX_OPEN_CURSORS +
+            ", Opened: " + totalOpened + ", Expired: " + totalExpired +
+            (details.isEmpty() ? "" : ", Active: " + String.join("; ", details));
+    }
+}
@@ -3,11 +3,12 @@ package service.implementation;
 import dao.CustomerDao;
 import model.Customer;
 import service.CustomerService;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
+import util.PageUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -43,18 +44,8 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 return null;
             }
             
-            if (customer.getEmail() != null && !customer.getEmail().trim().isEmpty()) {
-                if (customerDao.emailExists(customer.getEmail())) {
-                    LogUtil.warn("Attempted to create customer with existing email: " + customer.getEmail());
-                    return null;
-                }
-            }
-            
-            if (customerDao.customerIdExists(customer.getCustomerId())) {
-                LogUtil.warn("Attempted to create customer with existing customer ID: " + customer.getCustomerId());
-                return null;
-            }
-            return customerDao.createCustomer(customer);
+            // Duplicate customer IDs and emails are rejected by their unique constraints
+            return EntityGraphSanitizer.sanitize(customerDao.createCustomer(customer));
         } catch (Exception e) {
             LogUtil.error("Error creating customer", e);
             throw new RemoteException("Failed to create customer", e);
@@ -68,8 +59,8 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 LogUtil.warn("Attempted to update invalid customer");
                 return null;
             }
-             customer.setOrders(new ArrayList<>(customer.getOrders()));
-            return customerDao.updateCustomer(customer);
+            
+            return EntityGraphSanitizer.sanitize(customerDao.updateCustomer(customer));
         } catch (Exception e) {
             LogUtil.error("Error updating customer", e);
             throw new RemoteException("Failed to update customer", e);
@@ -84,7 +75,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 return null;
             }
             
-            return customerDao.deleteCustomer(customer);
+            return EntityGraphSanitizer.sanitize(customerDao.deleteCustomer(customer));
         } catch (Exception e) {
             LogUtil.error("Error deleting customer", e);
             throw new RemoteException("Failed to delete customer", e);
@@ -98,9 +89,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 LogUtil.warn("Invalid customer ID provided: " + id);
                 return null;
             }
-            Customer customer = customerDao.findCustomerById(id);
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
-            return customer;
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomerById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding customer by ID: " + id, e);
             throw new RemoteException("Failed to find customer by ID", e);
@@ -114,10 +103,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 LogUtil.warn("Invalid customer ID provided");
                 return null;
             }
-            Customer customer = customerDao.findCustomerByCustomerId(customerId.trim());
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
-            
-            return customer;
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomerByCustomerId(customerId.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding customer by customer ID: " + customerId, e);
             throw new RemoteException("Failed to find customer by customer ID", e);
@@ -132,7 +118,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 return null;
             }
             
-            return customerDao.findCustomersByName(name.trim());
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomersByName(name.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding customers by name: " + name, e);
             throw new RemoteException("Failed to find customers by name", e);
@@ -146,9 +132,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 LogUtil.warn("Invalid email provided");
                 return null;
             }
-            Customer customer = findCustomerByEmail(email.trim());
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
-            return customer;
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomerByEmail(email.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding customer by email: " + email, e);
             throw new RemoteException("Failed to find customer by email", e);
@@ -158,13 +142,38 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
     @Override
     public List<Customer> findAllCustomers() throws RemoteException {
         try {
-            return customerDao.findAllCustomers();
+            return EntityGraphSanitizer.sanitize(customerDao.findAllCustomers());
         } catch (Exception e) {
             LogUtil.error("Error finding all customers", e);
             throw new RemoteException("Failed to find all customers", e);
         }
     }
     
+    @Override
+    public List<Customer> findCustomersPage(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomersPage(pageNumber, PageUtil.normalizePageSize(pageSize)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding customers page: " + pageNumber, e);
+            throw new RemoteException("Failed to find customers page", e);
+        }
+    }
+    
+    @Override
+    public List<Customer> findCustomersAfter(int lastId, int limit) throws RemoteException {
+        try {
+            return EntityGraphSanitizer.sanitize(customerDao.findCustomersAfter(lastId, PageUtil.normalizePageSize(limit)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding customers after ID: " + lastId, e);
+            throw new RemoteException("Failed to find customers after cursor", e);
+        }
+    }
+    
     @Override
     public Customer getCustomerWithOrders(int customerId) throws RemoteException {
         try {
@@ -172,9 +181,7 @@ public class CustomerServiceImpl extends UnicastRemoteObject implements Customer
                 LogUtil.warn("Invalid customer ID provided: " + customerId);
                 return null;
             }
-            Customer customer = customerDao.getCustomerWithOrders(customerId);
-            customer.setOrders(new ArrayList<>(customer.getOrders()));
-            return customer;
+            return EntityGraphSanitizer.sanitize(customerDao.getCustomerWithOrders(customerId));
         } catch (Exception e) {
             LogUtil.error("Error getting customer with orders: " + customerId, e);
             throw new RemoteException("Failed to get customer with orders", e);
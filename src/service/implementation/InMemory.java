@@ -0,0 +1,18 @@
+package service.implementation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote method of a service implementation that answers from memory
+ * and never opens a database connection (session checks, rate limit lookups,
+ * format validation). ServiceDispatcher runs such methods directly on the
+ * RMI thread, outside the service bulkhead and the database permits, so they
+ * stay fast while slow calls such as logins fill those limits.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface InMemory {
+}
@@ -1,14 +1,19 @@
 package service.implementation;
 
 import dao.InvoiceDao;
+import model.BatchItemResult;
 import model.Invoice;
+import model.InvoiceSummary;
 import model.Order;
 import service.InvoiceService;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
+import util.PageUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,33 +39,57 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
     public Invoice createInvoice(Invoice invoice) throws RemoteException {
         try {
             // Validate input
-            if (invoice == null) {
-                LogUtil.warn("Attempted to create null invoice");
+            String problem = validateNewInvoice(invoice);
+            if (problem != null) {
+                LogUtil.warn("Attempted to create " + problem);
                 return null;
             }
             
-            if (invoice.getInvoiceNumber() == null || invoice.getInvoiceNumber().trim().isEmpty()) {
-                LogUtil.warn("Attempted to create invoice without invoice number");
-                return null;
-            }
-            
-            if (invoice.getOrder() == null) {
-                LogUtil.warn("Attempted to create invoice without order");
-                return null;
-            }
-            
-            if (invoiceDao.invoiceNumberExists(invoice.getInvoiceNumber())) {
-                LogUtil.warn("Attempted to create invoice with existing invoice number: " + invoice.getInvoiceNumber());
-                return null;
-            }
-            
-            return invoiceDao.createInvoice(invoice);
+            // Duplicate invoice numbers are rejected by their unique constraint
+            return EntityGraphSanitizer.sanitize(invoiceDao.createInvoice(invoice));
         } catch (Exception e) {
             LogUtil.error("Error creating invoice", e);
             throw new RemoteException("Failed to create invoice", e);
         }
     }
     
+    @Override
+    public List<BatchItemResult<Invoice>> createInvoices(List<Invoice> invoices) throws RemoteException {
+        try {
+            if (invoices == null || invoices.isEmpty()) {
+                LogUtil.warn("Attempted to create empty invoice batch");
+                return new ArrayList<>();
+            }
+            
+            return BatchCreator.create("invoice", invoices, this::validateNewInvoice, Invoice::getInvoiceNumber,
+                invoiceDao::findExistingInvoiceNumbers, invoiceDao::createInvoices);
+        } catch (Exception e) {
+            LogUtil.error("Error creating invoice batch", e);
+            throw new RemoteException("Failed to create invoices", e);
+        }
+    }
+    
+    /**
+     * Checks the fields a new invoice needs
+     * 
+     * @param invoice The invoice to check
+     * @return What is wrong with the invoice, or null if it is valid
+     */
+    private String validateNewInvoice(Invoice invoice) {
+        if (invoice == null) {
+            return "null invoice";
+        }
+        
+        if (invoice.getInvoiceNumber() == null || invoice.getInvoiceNumber().trim().isEmpty()) {
+            return "invoice without invoice number";
+        }
+        
+        if (invoice.getOrder() == null) {
+            return "invoice without order";
+        }
+        return null;
+    }
+    
     @Override
     public Invoice updateInvoice(Invoice invoice) throws RemoteException {
         try {
@@ -69,7 +98,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.updateInvoice(invoice);
+            return EntityGraphSanitizer.sanitize(invoiceDao.updateInvoice(invoice));
         } catch (Exception e) {
             LogUtil.error("Error updating invoice", e);
             throw new RemoteException("Failed to update invoice", e);
@@ -104,7 +133,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.deleteInvoice(invoice);
+            return EntityGraphSanitizer.sanitize(invoiceDao.deleteInvoice(invoice));
         } catch (Exception e) {
             LogUtil.error("Error deleting invoice", e);
             throw new RemoteException("Failed to delete invoice", e);
@@ -119,7 +148,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.findInvoiceById(id);
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoiceById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding invoice by ID: " + id, e);
             throw new RemoteException("Failed to find invoice by ID", e);
@@ -134,7 +163,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.findInvoiceByNumber(invoiceNumber.trim());
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoiceByNumber(invoiceNumber.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding invoice by number: " + invoiceNumber, e);
             throw new RemoteException("Failed to find invoice by number", e);
@@ -149,7 +178,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.findInvoicesByOrder(order);
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoicesByOrder(order));
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by order: " + order.getId(), e);
             throw new RemoteException("Failed to find invoices by order", e);
@@ -164,7 +193,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.findInvoicesByStatus(status.trim());
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoicesByStatus(status.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by status: " + status, e);
             throw new RemoteException("Failed to find invoices by status", e);
@@ -174,7 +203,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
     @Override
     public List<Invoice> findOverdueInvoices() throws RemoteException {
         try {
-            return invoiceDao.findOverdueInvoices();
+            return EntityGraphSanitizer.sanitize(invoiceDao.findOverdueInvoices());
         } catch (Exception e) {
             LogUtil.error("Error finding overdue invoices", e);
             throw new RemoteException("Failed to find overdue invoices", e);
@@ -194,7 +223,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.findInvoicesByDateRange(startDate, endDate);
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoicesByDateRange(startDate, endDate));
         } catch (Exception e) {
             LogUtil.error("Error finding invoices by date range: " + startDate + " to " + endDate, e);
             throw new RemoteException("Failed to find invoices by date range", e);
@@ -204,13 +233,53 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
     @Override
     public List<Invoice> findAllInvoices() throws RemoteException {
         try {
-            return invoiceDao.findAllInvoices();
+            return EntityGraphSanitizer.sanitize(invoiceDao.findAllInvoices());
         } catch (Exception e) {
             LogUtil.error("Error finding all invoices", e);
             throw new RemoteException("Failed to find all invoices", e);
         }
     }
     
+    @Override
+    public List<Invoice> findInvoicesPage(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoicesPage(pageNumber, PageUtil.normalizePageSize(pageSize)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoices page: " + pageNumber, e);
+            throw new RemoteException("Failed to find invoices page", e);
+        }
+    }
+    
+    @Override
+    public List<Invoice> findInvoicesAfter(LocalDate lastIssueDate, int lastId, int limit) throws RemoteException {
+        try {
+            return EntityGraphSanitizer.sanitize(invoiceDao.findInvoicesAfter(lastIssueDate, lastId, PageUtil.normalizePageSize(limit)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoices after cursor: " + lastIssueDate + ", " + lastId, e);
+            throw new RemoteException("Failed to find invoices after cursor", e);
+        }
+    }
+    
+    @Override
+    public List<InvoiceSummary> findInvoiceSummaries(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return invoiceDao.findInvoiceSummaries(pageNumber, PageUtil.normalizePageSize(pageSize));
+        } catch (Exception e) {
+            LogUtil.error("Error finding invoice summaries page: " + pageNumber, e);
+            throw new RemoteException("Failed to find invoice summaries page", e);
+        }
+    }
+    
     @Override
     public Invoice getInvoiceWithOrder(int invoiceId) throws RemoteException {
         try {
@@ -219,7 +288,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.getInvoiceWithOrder(invoiceId);
+            return EntityGraphSanitizer.sanitize(invoiceDao.getInvoiceWithOrder(invoiceId));
         } catch (Exception e) {
             LogUtil.error("Error getting invoice with order: " + invoiceId, e);
             throw new RemoteException("Failed to get invoice with order", e);
@@ -234,7 +303,7 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
                 return null;
             }
             
-            return invoiceDao.getInvoiceWithPayments(invoiceId);
+            return EntityGraphSanitizer.sanitize(invoiceDao.getInvoiceWithPayments(invoiceId));
         } catch (Exception e) {
             LogUtil.error("Error getting invoice with payments: " + invoiceId, e);
             throw new RemoteException("Failed to get invoice with payments", e);
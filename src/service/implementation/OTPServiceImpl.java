@@ -1,12 +1,16 @@
 package service.implementation;
 
+import dao.ActiveOTPStore;
 import dao.OTPDao;
+import dao.OTPPurger;
 import dao.UserDao;
 import model.OTP;
 import model.User;
 import service.OTPService;
+import util.EmailQueue;
 import util.EmailService;
 import util.LogUtil;
+import util.OTPRateLimiter;
 import util.OTPUtil;
 
 import java.rmi.RemoteException;
@@ -24,20 +28,39 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
     private OTPDao otpDao;
     private UserDao userDao;
     private EmailService emailService;
+    private EmailQueue emailQueue;
+    private OTPRateLimiter rateLimiter;
+    private ActiveOTPStore activeOTPStore;
     
     /**
      * Constructor
      * 
+     * @param otpDao The OTP data access object
+     * @param userDao The user data access object
      * @throws RemoteException If RMI initialization fails
      */
-    public OTPServiceImpl() throws RemoteException {
+    public OTPServiceImpl(OTPDao otpDao, UserDao userDao) throws RemoteException {
         super();
-        this.otpDao = new OTPDao();
-        this.userDao = new UserDao();
+        this.otpDao = otpDao;
+        this.userDao = userDao;
         this.emailService = EmailService.getInstance();
+        this.emailQueue = EmailQueue.getInstance();
+        this.rateLimiter = OTPRateLimiter.getInstance();
+        this.activeOTPStore = ActiveOTPStore.getInstance();
         LogUtil.info("OTPService initialized");
     }
     
+    /**
+     * Loads the OTP state kept in memory (recent sends for the rate limiter
+     * and the active OTPs) and prepares the purge indexes. Called once before
+     * the service accepts calls.
+     */
+    public void warmUp() {
+        rateLimiter.initialize(() -> otpDao.findOTPSendTimesSince(rateLimiter.getWindowStart()));
+        activeOTPStore.initialize();
+        OTPPurger.getInstance().initialize();
+    }
+    
     @Override
     public OTP generateAndSendOTP(String email, String otpType, String userAgent, String ipAddress) throws RemoteException {
         try {
@@ -58,12 +81,6 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
                 otpType = OTP.TYPE_LOGIN;
             }
             
-            // Check rate limiting
-            if (isRateLimited(email, otpType)) {
-                LogUtil.warn("Rate limit exceeded for email: " + email);
-                return null;
-            }
-            
             // For login OTPs, verify that user exists
             if (OTP.TYPE_LOGIN.equals(otpType)) {
                 User user = userDao.findUserByEmail(email);
@@ -78,6 +95,12 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
                 }
             }
             
+            // Check rate limiting and take a slot in the same step
+            if (!rateLimiter.tryAcquire(email, otpType)) {
+                LogUtil.warn("Rate limit exceeded for email: " + email);
+                return null;
+            }
+            
             // Generate OTP code
             String otpCode = OTPUtil.generateDefaultOTP();
             
@@ -99,18 +122,22 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
             OTP savedOTP = otpDao.createOTP(otp);
             if (savedOTP == null) {
                 LogUtil.error("Failed to save OTP to database for email: " + email);
+                rateLimiter.release(email, otpType);
                 return null;
             }
-            
-            // Send email
-            boolean emailSent = emailService.sendOTPEmailHTML(email, otpCode, OTP.EXPIRY_MINUTES);
-            if (!emailSent) {
-                LogUtil.error("Failed to send OTP email to: " + email);
+            activeOTPStore.add(savedOTP);
+            
+            // Queue the email; the SMTP round trip happens on an email worker
+            String recipient = email;
+            boolean emailQueued = emailQueue.enqueue("OTP email", recipient,
+                () -> emailService.sendOTPEmailHTML(recipient, otpCode, OTP.EXPIRY_MINUTES));
+            if (!emailQueued) {
+                LogUtil.error("Failed to queue OTP email to: " + email);
                 // Note: We don't return null here because OTP is already saved
                 // The user might try to use it even if email failed
             }
             
-            LogUtil.info("OTP generated and sent successfully for email: " + email + 
+            LogUtil.info("OTP generated and email queued for email: " + email + 
                         " (OTP: " + OTPUtil.maskOTP(otpCode) + ")");
             
             return savedOTP;
@@ -147,31 +174,14 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
                 otpType = OTP.TYPE_LOGIN;
             }
             
-            // Find valid OTP
-            OTP otp = otpDao.findValidOTP(email, otpCode, otpType);
+            // Check and consume the code in memory; the attempt count and used
+            // flag are written to the database by the store's flusher
+            OTP otp = activeOTPStore.verify(email, otpCode, otpType);
             if (otp == null) {
                 LogUtil.warn("No valid OTP found for email: " + email + " with code: " + OTPUtil.maskOTP(otpCode));
-                
-                // Try to find any OTP for this email to increment attempts
-                OTP latestOTP = otpDao.findLatestOTPByEmail(email, otpType);
-                if (latestOTP != null && !latestOTP.isUsed() && !latestOTP.isExpired()) {
-                    otpDao.incrementVerificationAttempts(latestOTP.getId());
-                }
-                
                 return null;
             }
             
-            // Additional validation
-            if (!otp.isValid()) {
-                LogUtil.warn("Invalid OTP state for email: " + email + " - used: " + otp.isUsed() + 
-                           ", expired: " + otp.isExpired() + ", attempts: " + otp.getVerificationAttempts());
-                return null;
-            }
-            
-            // Mark OTP as used
-            otpDao.markOTPAsUsed(otp.getId());
-            otp.markAsUsed();
-            
             LogUtil.info("OTP verified successfully for email: " + email + 
                         " (OTP: " + OTPUtil.maskOTP(otpCode) + ")");
             
@@ -193,6 +203,7 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
         return verifyOTP(email, otpCode, OTP.TYPE_LOGIN);
     }
     
+    @InMemory
     @Override
     public boolean isRateLimited(String email, String otpType) throws RemoteException {
         try {
@@ -206,29 +217,12 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
                 otpType = OTP.TYPE_LOGIN;
             }
             
-            // Check how many OTPs were sent in the last hour
-            long otpCount = otpDao.getOTPCountLastHour(email, otpType);
-            
-            if (otpCount >= OTPUtil.MAX_OTP_PER_HOUR) {
-                LogUtil.warn("Rate limit exceeded for email: " + email + " (count: " + otpCount + ")");
+            // Checked against the in-memory send history, no database query
+            if (rateLimiter.isRateLimited(email, otpType)) {
+                LogUtil.warn("Rate limit exceeded for email: " + email);
                 return true;
             }
             
-            // Check if minimum resend interval has passed
-            OTP latestOTP = otpDao.findLatestOTPByEmail(email, otpType);
-            if (latestOTP != null) {
-                // Calculate minimum resend time using Date arithmetic
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(latestOTP.getCreatedAt());
-                cal.add(Calendar.MINUTE, OTPUtil.MIN_RESEND_INTERVAL_MINUTES);
-                Date minResendTime = cal.getTime();
-                
-                if (new Date().before(minResendTime)) {
-                    LogUtil.warn("Minimum resend interval not met for email: " + email);
-                    return true;
-                }
-            }
-            
             return false;
             
         } catch (Exception e) {
@@ -301,15 +295,14 @@ public class OTPServiceImpl extends UnicastRemoteObject implements OTPService {
     @Override
     public int cleanupExpiredOTPs() throws RemoteException {
         try {
-            int deletedCount = otpDao.deleteExpiredOTPs();
-            LogUtil.info("Cleaned up " + deletedCount + " expired OTPs");
-            return deletedCount;
+            return otpDao.deleteExpiredOTPs();
         } catch (Exception e) {
             LogUtil.error("Error cleaning up expired OTPs", e);
             throw new RemoteException("Failed to cleanup expired OTPs", e);
         }
     }
     
+    @InMemory
     @Override
     public boolean isValidEmail(String email) throws RemoteException {
         return OTPUtil.isValidEmail(email);
@@ -1,14 +1,21 @@
 package service.implementation;
 
 import dao.OrderDao;
+import model.BatchItemResult;
 import model.Customer;
 import model.Order;
+import model.OrderSummary;
+import model.OrderItem;
 import service.OrderService;
+import service.RemoteCursor;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
+import util.PageUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,33 +41,65 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
     public Order createOrder(Order order) throws RemoteException {
         try {
             // Validate input
-            if (order == null) {
-                LogUtil.warn("Attempted to create null order");
+            String problem = validateNewOrder(order);
+            if (problem != null) {
+                LogUtil.warn("Attempted to create " + problem);
                 return null;
             }
             
-            if (order.getOrderId() == null || order.getOrderId().trim().isEmpty()) {
-                LogUtil.warn("Attempted to create order without order ID");
-                return null;
-            }
-            
-            if (order.getCustomer() == null) {
-                LogUtil.warn("Attempted to create order without customer");
-                return null;
-            }
-            
-            if (orderDao.orderIdExists(order.getOrderId())) {
-                LogUtil.warn("Attempted to create order with existing order ID: " + order.getOrderId());
-                return null;
-            }
-            
-            return orderDao.createOrder(order);
+            // Duplicate order IDs are rejected by their unique constraint
+            return EntityGraphSanitizer.sanitize(orderDao.createOrder(order));
         } catch (Exception e) {
             LogUtil.error("Error creating order", e);
             throw new RemoteException("Failed to create order", e);
         }
     }
     
+    @Override
+    public List<BatchItemResult<Order>> createOrders(List<Order> orders) throws RemoteException {
+        try {
+            if (orders == null || orders.isEmpty()) {
+                LogUtil.warn("Attempted to create empty order batch");
+                return new ArrayList<>();
+            }
+            
+            return BatchCreator.create("order", orders, this::validateNewOrder, Order::getOrderId,
+                orderDao::findExistingOrderIds, orderDao::createOrders);
+        } catch (Exception e) {
+            LogUtil.error("Error creating order batch", e);
+            throw new RemoteException("Failed to create orders", e);
+        }
+    }
+    
+    /**
+     * Checks the fields a new order needs
+     * 
+     * @param order The order to check
+     * @return What is wrong with the order, or null if it is valid
+     */
+    private String validateNewOrder(Order order) {
+        if (order == null) {
+            return "null order";
+        }
+        
+        if (order.getOrderId() == null || order.getOrderId().trim().isEmpty()) {
+            return "order without order ID";
+        }
+        
+        if (order.getCustomer() == null) {
+            return "order without customer";
+        }
+        
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                if (item.getProduct() == null || item.getQuantity() <= 0) {
+                    return "order with invalid item: " + order.getOrderId();
+                }
+            }
+        }
+        return null;
+    }
+    
     @Override
     public Order updateOrder(Order order) throws RemoteException {
         try {
@@ -69,7 +108,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.updateOrder(order);
+            return EntityGraphSanitizer.sanitize(orderDao.updateOrder(order));
         } catch (Exception e) {
             LogUtil.error("Error updating order", e);
             throw new RemoteException("Failed to update order", e);
@@ -104,7 +143,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.deleteOrder(order);
+            return EntityGraphSanitizer.sanitize(orderDao.deleteOrder(order));
         } catch (Exception e) {
             LogUtil.error("Error deleting order", e);
             throw new RemoteException("Failed to delete order", e);
@@ -119,7 +158,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.findOrderById(id);
+            return EntityGraphSanitizer.sanitize(orderDao.findOrderById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding order by ID: " + id, e);
             throw new RemoteException("Failed to find order by ID", e);
@@ -134,7 +173,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.findOrderByOrderId(orderId.trim());
+            return EntityGraphSanitizer.sanitize(orderDao.findOrderByOrderId(orderId.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding order by order ID: " + orderId, e);
             throw new RemoteException("Failed to find order by order ID", e);
@@ -149,7 +188,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.findOrdersByCustomer(customer);
+            return EntityGraphSanitizer.sanitize(orderDao.findOrdersByCustomer(customer));
         } catch (Exception e) {
             LogUtil.error("Error finding orders by customer: " + customer.getId(), e);
             throw new RemoteException("Failed to find orders by customer", e);
@@ -164,7 +203,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.findOrdersByStatus(status.trim());
+            return EntityGraphSanitizer.sanitize(orderDao.findOrdersByStatus(status.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding orders by status: " + status, e);
             throw new RemoteException("Failed to find orders by status", e);
@@ -184,7 +223,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.findOrdersByDateRange(startDate, endDate);
+            return EntityGraphSanitizer.sanitize(orderDao.findOrdersByDateRange(startDate, endDate));
         } catch (Exception e) {
             LogUtil.error("Error finding orders by date range: " + startDate + " to " + endDate, e);
             throw new RemoteException("Failed to find orders by date range", e);
@@ -194,13 +233,65 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
     @Override
     public List<Order> findAllOrders() throws RemoteException {
         try {
-            return orderDao.findAllOrders();
+            return EntityGraphSanitizer.sanitize(orderDao.findAllOrders());
         } catch (Exception e) {
             LogUtil.error("Error finding all orders", e);
             throw new RemoteException("Failed to find all orders", e);
         }
     }
     
+    @Override
+    public List<Order> findOrdersPage(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return EntityGraphSanitizer.sanitize(orderDao.findOrdersPage(pageNumber, PageUtil.normalizePageSize(pageSize)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding orders page: " + pageNumber, e);
+            throw new RemoteException("Failed to find orders page", e);
+        }
+    }
+    
+    @Override
+    public List<Order> findOrdersAfter(LocalDate lastOrderDate, int lastId, int limit) throws RemoteException {
+        try {
+            return EntityGraphSanitizer.sanitize(orderDao.findOrdersAfter(lastOrderDate, lastId, PageUtil.normalizePageSize(limit)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding orders after cursor: " + lastOrderDate + ", " + lastId, e);
+            throw new RemoteException("Failed to find orders after cursor", e);
+        }
+    }
+    
+    @Override
+    public List<OrderSummary> findOrderSummaries(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return orderDao.findOrderSummaries(pageNumber, PageUtil.normalizePageSize(pageSize));
+        } catch (Exception e) {
+            LogUtil.error("Error finding order summaries page: " + pageNumber, e);
+            throw new RemoteException("Failed to find order summaries page", e);
+        }
+    }
+    
+    @Override
+    public RemoteCursor<Order> openOrderCursor(String status) throws RemoteException {
+        try {
+            return CursorRegistry.getInstance().register(orderDao.openOrderCursor(status));
+        } catch (RemoteException e) {
+            throw e;
+        } catch (Exception e) {
+            LogUtil.error("Error opening order cursor", e);
+            throw new RemoteException("Failed to open order cursor", e);
+        }
+    }
+    
     @Override
     public Order getOrderWithDetails(int orderId) throws RemoteException {
         try {
@@ -209,7 +300,7 @@ public class OrderServiceImpl extends UnicastRemoteObject implements OrderServic
                 return null;
             }
             
-            return orderDao.getOrderWithDetails(orderId);
+            return EntityGraphSanitizer.sanitize(orderDao.getOrderWithDetails(orderId));
         } catch (Exception e) {
             LogUtil.error("Error getting order with details: " + orderId, e);
             throw new RemoteException("Failed to get order with details", e);
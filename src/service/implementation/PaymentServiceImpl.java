@@ -1,14 +1,20 @@
 package service.implementation;
 
 import dao.PaymentDao;
+import model.BatchItemResult;
 import model.Invoice;
 import model.Payment;
+import model.PaymentSummary;
 import service.PaymentService;
+import service.RemoteCursor;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
+import util.PageUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,38 +40,61 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
     public Payment createPayment(Payment payment) throws RemoteException {
         try {
             // Validate input
-            if (payment == null) {
-                LogUtil.warn("Attempted to create null payment");
+            String problem = validateNewPayment(payment);
+            if (problem != null) {
+                LogUtil.warn("Attempted to create " + problem);
                 return null;
             }
             
-            if (payment.getPaymentId() == null || payment.getPaymentId().trim().isEmpty()) {
-                LogUtil.warn("Attempted to create payment without payment ID");
-                return null;
-            }
-            
-            if (payment.getInvoice() == null) {
-                LogUtil.warn("Attempted to create payment without invoice");
-                return null;
-            }
-            
-            if (payment.getAmount() == null || payment.getAmount().signum() <= 0) {
-                LogUtil.warn("Attempted to create payment with invalid amount");
-                return null;
-            }
-            
-            if (paymentDao.paymentIdExists(payment.getPaymentId())) {
-                LogUtil.warn("Attempted to create payment with existing payment ID: " + payment.getPaymentId());
-                return null;
-            }
-            
-            return paymentDao.createPayment(payment);
+            // Duplicate payment IDs are rejected by their unique constraint
+            return EntityGraphSanitizer.sanitize(paymentDao.createPayment(payment));
         } catch (Exception e) {
             LogUtil.error("Error creating payment", e);
             throw new RemoteException("Failed to create payment", e);
         }
     }
     
+    @Override
+    public List<BatchItemResult<Payment>> createPayments(List<Payment> payments) throws RemoteException {
+        try {
+            if (payments == null || payments.isEmpty()) {
+                LogUtil.warn("Attempted to create empty payment batch");
+                return new ArrayList<>();
+            }
+            
+            return BatchCreator.create("payment", payments, this::validateNewPayment, Payment::getPaymentId,
+                paymentDao::findExistingPaymentIds, paymentDao::createPayments);
+        } catch (Exception e) {
+            LogUtil.error("Error creating payment batch", e);
+            throw new RemoteException("Failed to create payments", e);
+        }
+    }
+    
+    /**
+     * Checks the fields a new payment needs
+     * 
+     * @param payment The payment to check
+     * @return What is wrong with the payment, or null if it is valid
+     */
+    private String validateNewPayment(Payment payment) {
+        if (payment == null) {
+            return "null payment";
+        }
+        
+        if (payment.getPaymentId() == null || payment.getPaymentId().trim().isEmpty()) {
+            return "payment without payment ID";
+        }
+        
+        if (payment.getInvoice() == null) {
+            return "payment without invoice";
+        }
+        
+        if (payment.getAmount() == null || payment.getAmount().signum() <= 0) {
+            return "payment with invalid amount";
+        }
+        return null;
+    }
+    
     @Override
     public Payment updatePayment(Payment payment) throws RemoteException {
         try {
@@ -79,7 +108,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.updatePayment(payment);
+            return EntityGraphSanitizer.sanitize(paymentDao.updatePayment(payment));
         } catch (Exception e) {
             LogUtil.error("Error updating payment", e);
             throw new RemoteException("Failed to update payment", e);
@@ -94,7 +123,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.deletePayment(payment);
+            return EntityGraphSanitizer.sanitize(paymentDao.deletePayment(payment));
         } catch (Exception e) {
             LogUtil.error("Error deleting payment", e);
             throw new RemoteException("Failed to delete payment", e);
@@ -109,7 +138,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.findPaymentById(id);
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding payment by ID: " + id, e);
             throw new RemoteException("Failed to find payment by ID", e);
@@ -124,7 +153,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.findPaymentByPaymentId(paymentId.trim());
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentByPaymentId(paymentId.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding payment by payment ID: " + paymentId, e);
             throw new RemoteException("Failed to find payment by payment ID", e);
@@ -139,7 +168,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.findPaymentsByInvoice(invoice);
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentsByInvoice(invoice));
         } catch (Exception e) {
             LogUtil.error("Error finding payments by invoice: " + invoice.getId(), e);
             throw new RemoteException("Failed to find payments by invoice", e);
@@ -159,7 +188,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.findPaymentsByDateRange(startDate, endDate);
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentsByDateRange(startDate, endDate));
         } catch (Exception e) {
             LogUtil.error("Error finding payments by date range: " + startDate + " to " + endDate, e);
             throw new RemoteException("Failed to find payments by date range", e);
@@ -174,7 +203,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.findPaymentsByMethod(paymentMethod.trim());
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentsByMethod(paymentMethod.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding payments by method: " + paymentMethod, e);
             throw new RemoteException("Failed to find payments by method", e);
@@ -184,13 +213,65 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
     @Override
     public List<Payment> findAllPayments() throws RemoteException {
         try {
-            return paymentDao.findAllPayments();
+            return EntityGraphSanitizer.sanitize(paymentDao.findAllPayments());
         } catch (Exception e) {
             LogUtil.error("Error finding all payments", e);
             throw new RemoteException("Failed to find all payments", e);
         }
     }
     
+    @Override
+    public List<Payment> findPaymentsPage(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentsPage(pageNumber, PageUtil.normalizePageSize(pageSize)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding payments page: " + pageNumber, e);
+            throw new RemoteException("Failed to find payments page", e);
+        }
+    }
+    
+    @Override
+    public List<Payment> findPaymentsAfter(LocalDate lastPaymentDate, int lastId, int limit) throws RemoteException {
+        try {
+            return EntityGraphSanitizer.sanitize(paymentDao.findPaymentsAfter(lastPaymentDate, lastId, PageUtil.normalizePageSize(limit)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding payments after cursor: " + lastPaymentDate + ", " + lastId, e);
+            throw new RemoteException("Failed to find payments after cursor", e);
+        }
+    }
+    
+    @Override
+    public List<PaymentSummary> findPaymentSummaries(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return paymentDao.findPaymentSummaries(pageNumber, PageUtil.normalizePageSize(pageSize));
+        } catch (Exception e) {
+            LogUtil.error("Error finding payment summaries page: " + pageNumber, e);
+            throw new RemoteException("Failed to find payment summaries page", e);
+        }
+    }
+    
+    @Override
+    public RemoteCursor<Payment> openPaymentCursor(String paymentMethod) throws RemoteException {
+        try {
+            return CursorRegistry.getInstance().register(paymentDao.openPaymentCursor(paymentMethod));
+        } catch (RemoteException e) {
+            throw e;
+        } catch (Exception e) {
+            LogUtil.error("Error opening payment cursor", e);
+            throw new RemoteException("Failed to open payment cursor", e);
+        }
+    }
+    
     @Override
     public Payment getPaymentWithInvoice(int paymentId) throws RemoteException {
         try {
@@ -199,7 +280,7 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
                 return null;
             }
             
-            return paymentDao.getPaymentWithInvoice(paymentId);
+            return EntityGraphSanitizer.sanitize(paymentDao.getPaymentWithInvoice(paymentId));
         } catch (Exception e) {
             LogUtil.error("Error getting payment with invoice: " + paymentId, e);
             throw new RemoteException("Failed to get payment with invoice", e);
@@ -2,9 +2,12 @@ package service.implementation;
 
 import dao.ProductDao;
 import model.Product;
+import model.ProductSummary;
 import model.Supplier;
 import service.ProductService;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
+import util.PageUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
@@ -43,12 +46,8 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            if (productDao.productCodeExists(product.getProductCode())) {
-                LogUtil.warn("Attempted to create product with existing product code: " + product.getProductCode());
-                return null;
-            }
-            
-            return productDao.createProduct(product);
+            // Duplicate product codes are rejected by their unique constraint
+            return EntityGraphSanitizer.sanitize(productDao.createProduct(product));
         } catch (Exception e) {
             LogUtil.error("Error creating product", e);
             throw new RemoteException("Failed to create product", e);
@@ -63,7 +62,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.updateProduct(product);
+            return EntityGraphSanitizer.sanitize(productDao.updateProduct(product));
         } catch (Exception e) {
             LogUtil.error("Error updating product", e);
             throw new RemoteException("Failed to update product", e);
@@ -93,7 +92,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.deleteProduct(product);
+            return EntityGraphSanitizer.sanitize(productDao.deleteProduct(product));
         } catch (Exception e) {
             LogUtil.error("Error deleting product", e);
             throw new RemoteException("Failed to delete product", e);
@@ -108,7 +107,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findProductById(id);
+            return EntityGraphSanitizer.sanitize(productDao.findProductById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding product by ID: " + id, e);
             throw new RemoteException("Failed to find product by ID", e);
@@ -123,7 +122,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findProductByCode(productCode.trim());
+            return EntityGraphSanitizer.sanitize(productDao.findProductByCode(productCode.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding product by code: " + productCode, e);
             throw new RemoteException("Failed to find product by code", e);
@@ -138,7 +137,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findProductsByName(name.trim());
+            return EntityGraphSanitizer.sanitize(productDao.findProductsByName(name.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding products by name: " + name, e);
             throw new RemoteException("Failed to find products by name", e);
@@ -153,7 +152,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findProductsByCategory(category.trim());
+            return EntityGraphSanitizer.sanitize(productDao.findProductsByCategory(category.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding products by category: " + category, e);
             throw new RemoteException("Failed to find products by category", e);
@@ -168,7 +167,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findProductsBySupplier(supplier);
+            return EntityGraphSanitizer.sanitize(productDao.findProductsBySupplier(supplier));
         } catch (Exception e) {
             LogUtil.error("Error finding products by supplier: " + supplier.getId(), e);
             throw new RemoteException("Failed to find products by supplier", e);
@@ -183,7 +182,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.findLowStockProducts(threshold);
+            return EntityGraphSanitizer.sanitize(productDao.findLowStockProducts(threshold));
         } catch (Exception e) {
             LogUtil.error("Error finding low stock products with threshold: " + threshold, e);
             throw new RemoteException("Failed to find low stock products", e);
@@ -193,13 +192,53 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
     @Override
     public List<Product> findAllProducts() throws RemoteException {
         try {
-            return productDao.findAllProducts();
+            return EntityGraphSanitizer.sanitize(productDao.findAllProducts());
         } catch (Exception e) {
             LogUtil.error("Error finding all products", e);
             throw new RemoteException("Failed to find all products", e);
         }
     }
     
+    @Override
+    public List<Product> findProductsPage(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return EntityGraphSanitizer.sanitize(productDao.findProductsPage(pageNumber, PageUtil.normalizePageSize(pageSize)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding products page: " + pageNumber, e);
+            throw new RemoteException("Failed to find products page", e);
+        }
+    }
+    
+    @Override
+    public List<Product> findProductsAfter(String lastName, int lastId, int limit) throws RemoteException {
+        try {
+            return EntityGraphSanitizer.sanitize(productDao.findProductsAfter(lastName, lastId, PageUtil.normalizePageSize(limit)));
+        } catch (Exception e) {
+            LogUtil.error("Error finding products after cursor: " + lastName + ", " + lastId, e);
+            throw new RemoteException("Failed to find products after cursor", e);
+        }
+    }
+    
+    @Override
+    public List<ProductSummary> findProductSummaries(int pageNumber, int pageSize) throws RemoteException {
+        try {
+            if (pageNumber < 0) {
+                LogUtil.warn("Invalid page number provided: " + pageNumber);
+                return null;
+            }
+            
+            return productDao.findProductSummaries(pageNumber, PageUtil.normalizePageSize(pageSize));
+        } catch (Exception e) {
+            LogUtil.error("Error finding product summaries page: " + pageNumber, e);
+            throw new RemoteException("Failed to find product summaries page", e);
+        }
+    }
+    
     @Override
     public Product getProductWithSupplier(int productId) throws RemoteException {
         try {
@@ -208,7 +247,7 @@ public class ProductServiceImpl extends UnicastRemoteObject implements ProductSe
                 return null;
             }
             
-            return productDao.getProductWithSupplier(productId);
+            return EntityGraphSanitizer.sanitize(productDao.getProductWithSupplier(productId));
         } catch (Exception e) {
             LogUtil.error("Error getting product with supplier: " + productId, e);
             throw new RemoteException("Failed to get product with supplier", e);
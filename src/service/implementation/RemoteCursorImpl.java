@@ -0,0 +1,125 @@
+package service.implementation;
+
+import dao.ScrollCursor;
+import service.RemoteCursor;
+import util.EntityGraphSanitizer;
+import util.LogUtil;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+/**
+ * Implementation of RemoteCursor interface.
+ * Exports a DAO scroll cursor as a remote object and hands it out in batches.
+ */
+public class RemoteCursorImpl<T> extends UnicastRemoteObject implements RemoteCursor<T> {
+
+    private final ScrollCursor<T> cursor;
+    private final int batchSize;
+    private final long openedAt;
+    private volatile long lastAccess;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param cursor The DAO cursor to expose
+     * @param batchSize Maximum number of elements per batch
+     * @throws RemoteException If RMI initialization fails
+     */
+    RemoteCursorImpl(ScrollCursor<T> cursor, int batchSize) throws RemoteException {
+        super();
+        this.cursor = cursor;
+        this.batchSize = batchSize;
+        this.openedAt = System.currentTimeMillis();
+        this.lastAccess = openedAt;
+    }
+
+    @Override
+    public List<T> nextBatch() throws RemoteException {
+        if (closed) {
+            throw new RemoteException("Cursor is closed or has expired: " + cursor.getDescription());
+        }
+        lastAccess = System.currentTimeMillis();
+        try {
+            List<T> batch = EntityGraphSanitizer.sanitize(cursor.nextBatch(batchSize));
+            if (!cursor.hasMore()) {
+                // Release the database resources as soon as the last row was read; the
+                // remote object stays exported, returning empty batches, until the
+                // client closes it or it expires
+                cursor.close();
+            }
+            return batch;
+        } catch (Exception e) {
+            LogUtil.error("Error reading batch from cursor: " + cursor.getDescription(), e);
+            cursor.close();
+            throw new RemoteException("Failed to read cursor batch", e);
+        } finally {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public boolean hasMore() throws RemoteException {
+        lastAccess = System.currentTimeMillis();
+        return !closed && cursor.hasMore();
+    }
+
+    @Override
+    public int getBatchSize() throws RemoteException {
+        return batchSize;
+    }
+
+    @Override
+    public void close() throws RemoteException {
+        CursorRegistry.getInstance().close(this);
+    }
+
+    /**
+     * Releases the DAO cursor and unexports this remote object.
+     * Called by the registry only.
+     */
+    void release() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cursor.close();
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Already unexported
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Checks whether the cursor still holds its session and connection
+     *
+     * @return false once the cursor is exhausted, failed or closed
+     */
+    boolean holdsConnection() {
+        return cursor.hasMore();
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    long getOpenedAt() {
+        return openedAt;
+    }
+
+    long getRowsRead() {
+        return cursor.getRowsRead();
+    }
+
+    String getDescription() {
+        return cursor.getDescription();
+    }
+}
@@ -0,0 +1,326 @@
+package service.implementation;
+
+import util.HibernateUtil;
+import util.LogUtil;
+import util.MetricsRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports the remote services behind a dispatch layer instead of letting RMI
+ * call the implementations directly. A call needs two permits: one from its
+ * service's bulkhead, so that one service cannot starve the others, and one
+ * from a database limit shared by all services, so that the calls running
+ * at the same time never need more connections than the pool has. A call
+ * that cannot get both within a short wait is rejected with a "busy" error
+ * instead of queueing. Methods marked @InMemory never open a connection and
+ * run directly on the RMI thread, outside both limits, so session checks and
+ * rate limit lookups are not refused while logins fill the bulkhead.
+ *
+ * The database limit is the c3p0 max_size less the connections open remote
+ * cursors may hold and a few kept for the background tasks (OTP flushing
+ * and purging, health checks). Calls run on a worker pool of that many
+ * threads, and the RMI connection thread waits for them only up to the call
+ * timeout. A call that takes longer returns a timeout error to the client;
+ * it keeps running, and keeps both permits, until it finishes, because it
+ * still holds its connection.
+ *
+ * Configured with the system properties dispatch.dbPermits (default pool
+ * size - cursor.maxOpen - 2), dispatch.maxConcurrent (default half of the
+ * database limit), dispatch.&lt;service&gt;.maxConcurrent for a single
+ * service, dispatch.acquireTimeoutMs (default 100) and
+ * dispatch.callTimeoutSeconds (default 60).
+ */
+public class ServiceDispatcher {
+
+    private static final int RESERVED_CONNECTIONS = 2;
+    private static final int DB_PERMITS = Math.max(1, Integer.getInteger("dispatch.dbPermits",
+        HibernateUtil.getConnectionPoolSize() - CursorRegistry.getMaxOpenCursors() - RESERVED_CONNECTIONS));
+    private static final int DEFAULT_MAX_CONCURRENT = Integer.getInteger("dispatch.maxConcurrent",
+        Math.max(1, DB_PERMITS / 2));
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("dispatch.acquireTimeoutMs", 100);
+    private static final long CALL_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(
+        Long.getLong("dispatch.callTimeoutSeconds", 60));
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private static ServiceDispatcher instance;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final List<Remote> exported = new ArrayList<>();
+    private final Semaphore dbPermits = new Semaphore(DB_PERMITS);
+    private final AtomicLong dbRejected = new AtomicLong();
+    private final ThreadPoolExecutor workers;
+
+    private ServiceDispatcher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Every submitted call holds a database permit, so there are never more
+        // running calls than threads; the queue only covers the moment between a
+        // call releasing its permit and its thread going back to the pool
+        workers = new ThreadPoolExecutor(DB_PERMITS, DB_PERMITS,
+            WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "service-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the singleton instance
+     *
+     * @return The service dispatcher
+     */
+    public static synchronized ServiceDispatcher getInstance() {
+        if (instance == null) {
+            instance = new ServiceDispatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Exports a service through the dispatch layer. The implementation itself
+     * is unexported, so clients can only reach it through its bulkhead.
+     *
+     * @param name The service name, used for its limit and in messages
+     * @param serviceInterface The remote interface clients call
+     * @param service The service implementation
+     * @return The stub to bind in the registry
+     * @throws RemoteException If the service could not be exported
+     */
+    public synchronized <T extends Remote> T export(String name, Class<T> serviceInterface, T service)
+            throws RemoteException {
+        int maxConcurrent = Integer.getInteger("dispatch." + name + ".maxConcurrent", DEFAULT_MAX_CONCURRENT);
+        Bulkhead bulkhead = new Bulkhead(name, service, Math.max(1, maxConcurrent));
+        T proxy = serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+            new Class<?>[] { serviceInterface }, bulkhead));
+
+        if (service instanceof UnicastRemoteObject) {
+            UnicastRemoteObject.unexportObject(service, true);
+        }
+        T stub = serviceInterface.cast(UnicastRemoteObject.exportObject(proxy, 0));
+        exported.add(proxy);
+        bulkheads.put(name, bulkhead);
+        LogUtil.debug("Service " + name + " dispatched with at most " + bulkhead.maxConcurrent + " concurrent calls");
+        return stub;
+    }
+
+    /**
+     * Unexports the dispatched services and stops the worker pool. Calls in
+     * progress are allowed to finish.
+     */
+    public synchronized void shutdown() {
+        for (Remote proxy : exported) {
+            try {
+                UnicastRemoteObject.unexportObject(proxy, true);
+            } catch (NoSuchObjectException e) {
+                // Already unexported
+            }
+        }
+        exported.clear();
+        workers.shutdown();
+    }
+
+    /**
+     * Gets one line of statistics per dispatched service
+     *
+     * @return Service statistics
+     */
+    public List<String> getServiceStatistics() {
+        List<String> lines = new ArrayList<>();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            lines.add(bulkhead.getStatistics());
+        }
+        return lines;
+    }
+
+    /**
+     * Gets a one-line summary of the dispatch statistics
+     *
+     * @return Dispatch statistics
+     */
+    public String getStatistics() {
+        long calls = 0;
+        long rejected = 0;
+        long timedOut = 0;
+        int inFlight = 0;
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            calls += bulkhead.calls.get();
+            rejected += bulkhead.rejected.get();
+            timedOut += bulkhead.timedOut.get();
+            inFlight += bulkhead.inFlight();
+        }
+        return "Services: " + bulkheads.size() +
+            ", In flight: " + inFlight +
+            ", DB permits: " + (DB_PERMITS - dbPermits.availablePermits()) + "/" + DB_PERMITS +
+            ", Workers: " + workers.getPoolSize() +
+            ", Calls: " + calls +
+            ", Rejected: " + (rejected + dbRejected.get()) +
+            ", Timed out: " + timedOut;
+    }
+
+    /**
+     * Runs the calls of one service within its own and the database limits
+     */
+    private class Bulkhead implements InvocationHandler {
+        private final String name;
+        private final Object service;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+
+        // Statistics
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong directCalls = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong totalTimeMs = new AtomicLong();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final Map<Method, MetricsRegistry.MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+        private final Map<Method, Boolean> inMemoryMethods = new ConcurrentHashMap<>();
+
+        private Bulkhead(String name, Object service, int maxConcurrent) {
+            this.name = name;
+            this.service = service;
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeService(method, args);
+            }
+
+            MetricsRegistry.MethodMetrics metrics = methodMetrics.computeIfAbsent(method,
+                m -> MetricsRegistry.getInstance().method(name + "." + m.getName()));
+            long start = metrics.start();
+            boolean failed = true;
+            try {
+                Object result;
+                if (inMemoryMethods.computeIfAbsent(method, this::isInMemory)) {
+                    directCalls.incrementAndGet();
+                    result = invokeService(method, args);
+                } else {
+                    result = dispatch(method, args);
+                }
+                failed = false;
+                return result;
+            } finally {
+                metrics.stop(start, failed);
+            }
+        }
+
+        private Object dispatch(Method method, Object[] args) throws Throwable {
+            String call = name + "." + method.getName();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MS);
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                LogUtil.warn("Rejected " + call + ": " + maxConcurrent + " calls already in progress");
+                throw new RemoteException("Server busy: " + name + " is handling " + maxConcurrent +
+                    " calls, try again later");
+            }
+            boolean acquired = false;
+            try {
+                acquired = dbPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } finally {
+                if (!acquired) {
+                    permits.release();
+                }
+            }
+            if (!acquired) {
+                dbRejected.incrementAndGet();
+                LogUtil.warn("Rejected " + call + ": all " + DB_PERMITS + " database permits in use");
+                throw new RemoteException("Server busy: all " + DB_PERMITS +
+                    " database connections are in use, try again later");
+            }
+            calls.incrementAndGet();
+            peakInFlight.accumulateAndGet(inFlight(), Math::max);
+
+            Future<Object> result;
+            try {
+                result = workers.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        return invokeService(method, args);
+                    } finally {
+                        totalTimeMs.addAndGet(System.currentTimeMillis() - start);
+                        dbPermits.release();
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                dbPermits.release();
+                permits.release();
+                throw new RemoteException("Failed to dispatch " + call, e);
+            }
+
+            try {
+                return result.get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                timedOut.incrementAndGet();
+                LogUtil.warn(call + " is still running after " + CALL_TIMEOUT_MS + " ms");
+                throw new RemoteException(call + " timed out, try again later");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted while waiting for " + call, e);
+            }
+        }
+
+        /**
+         * Checks whether the implementation marks a remote method @InMemory
+         */
+        private boolean isInMemory(Method method) {
+            try {
+                return service.getClass().getMethod(method.getName(), method.getParameterTypes())
+                    .isAnnotationPresent(InMemory.class);
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private Object invokeService(Method method, Object[] args) throws Exception {
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getTargetException();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (Exception) cause;
+            }
+        }
+
+        private int inFlight() {
+            return maxConcurrent - permits.availablePermits();
+        }
+
+        private String getStatistics() {
+            long callCount = calls.get();
+            return String.format("%s - Limit: %d, In flight: %d, Peak: %d, Calls: %d, Direct: %d, " +
+                    "Rejected: %d, Timed out: %d, Avg time: %d ms",
+                name, maxConcurrent, inFlight(), peakInFlight.get(), callCount, directCalls.get(),
+                rejected.get(), timedOut.get(), callCount == 0 ? 0 : totalTimeMs.get() / callCount);
+        }
+    }
+}
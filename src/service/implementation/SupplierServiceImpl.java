@@ -3,11 +3,11 @@ package service.implementation;
 import dao.SupplierDao;
 import model.Supplier;
 import service.SupplierService;
+import util.EntityGraphSanitizer;
 import util.LogUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -49,24 +49,8 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 }
             }
             
-            if (supplierDao.supplierCodeExists(supplier.getSupplierCode())) {
-                LogUtil.warn("Attempted to create supplier with existing supplier code: " + supplier.getSupplierCode());
-                return null;
-            }
-            
-            // Fix RMI serialization before calling DAO
-            if (supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            Supplier result = supplierDao.createSupplier(supplier);
-            
-            // Ensure result is also RMI-safe
-            if (result != null && result.getProducts() != null) {
-                result.setProducts(new ArrayList<>(result.getProducts()));
-            }
-            
-            return result;
+            // Duplicate supplier codes are rejected by their unique constraint
+            return EntityGraphSanitizer.sanitize(supplierDao.createSupplier(supplier));
         } catch (Exception e) {
             LogUtil.error("Error creating supplier", e);
             throw new RemoteException("Failed to create supplier", e);
@@ -81,19 +65,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            // Fix RMI serialization before calling DAO
-            if (supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            Supplier result = supplierDao.updateSupplier(supplier);
-            
-            // Ensure result is also RMI-safe
-            if (result != null && result.getProducts() != null) {
-                result.setProducts(new ArrayList<>(result.getProducts()));
-            }
-            
-            return result;
+            return EntityGraphSanitizer.sanitize(supplierDao.updateSupplier(supplier));
         } catch (Exception e) {
             LogUtil.error("Error updating supplier", e);
             throw new RemoteException("Failed to update supplier", e);
@@ -108,14 +80,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            Supplier result = supplierDao.deleteSupplier(supplier);
-            
-            // Ensure result is RMI-safe
-            if (result != null && result.getProducts() != null) {
-                result.setProducts(new ArrayList<>(result.getProducts()));
-            }
-            
-            return result;
+            return EntityGraphSanitizer.sanitize(supplierDao.deleteSupplier(supplier));
         } catch (Exception e) {
             LogUtil.error("Error deleting supplier", e);
             throw new RemoteException("Failed to delete supplier", e);
@@ -130,14 +95,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            Supplier supplier = supplierDao.findSupplierById(id);
-            
-            // Ensure result is RMI-safe
-            if (supplier != null && supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            return supplier;
+            return EntityGraphSanitizer.sanitize(supplierDao.findSupplierById(id));
         } catch (Exception e) {
             LogUtil.error("Error finding supplier by ID: " + id, e);
             throw new RemoteException("Failed to find supplier by ID", e);
@@ -152,14 +110,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            Supplier supplier = supplierDao.findSupplierByCode(supplierCode.trim());
-            
-            // Ensure result is RMI-safe
-            if (supplier != null && supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            return supplier;
+            return EntityGraphSanitizer.sanitize(supplierDao.findSupplierByCode(supplierCode.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding supplier by code: " + supplierCode, e);
             throw new RemoteException("Failed to find supplier by code", e);
@@ -174,18 +125,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            List<Supplier> suppliers = supplierDao.findSuppliersByName(name.trim());
-            
-            // Ensure all suppliers in list are RMI-safe
-            if (suppliers != null) {
-                for (Supplier supplier : suppliers) {
-                    if (supplier.getProducts() != null) {
-                        supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                    }
-                }
-            }
-            
-            return suppliers;
+            return EntityGraphSanitizer.sanitize(supplierDao.findSuppliersByName(name.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding suppliers by name: " + name, e);
             throw new RemoteException("Failed to find suppliers by name", e);
@@ -200,14 +140,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            Supplier supplier = supplierDao.findSupplierByEmail(email.trim());
-            
-            // Ensure result is RMI-safe
-            if (supplier != null && supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            return supplier;
+            return EntityGraphSanitizer.sanitize(supplierDao.findSupplierByEmail(email.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding supplier by email: " + email, e);
             throw new RemoteException("Failed to find supplier by email", e);
@@ -217,18 +150,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
     @Override
     public List<Supplier> findAllSuppliers() throws RemoteException {
         try {
-            List<Supplier> suppliers = supplierDao.findAllSuppliers();
-            
-            // Ensure all suppliers in list are RMI-safe
-            if (suppliers != null) {
-                for (Supplier supplier : suppliers) {
-                    if (supplier.getProducts() != null) {
-                        supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                    }
-                }
-            }
-            
-            return suppliers;
+            return EntityGraphSanitizer.sanitize(supplierDao.findAllSuppliers());
         } catch (Exception e) {
             LogUtil.error("Error finding all suppliers", e);
             throw new RemoteException("Failed to find all suppliers", e);
@@ -243,14 +165,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            Supplier supplier = supplierDao.getSupplierWithProducts(supplierId);
-            
-            // Ensure result is RMI-safe (DAO should already handle this, but double-check)
-            if (supplier != null && supplier.getProducts() != null) {
-                supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-            }
-            
-            return supplier;
+            return EntityGraphSanitizer.sanitize(supplierDao.getSupplierWithProducts(supplierId));
         } catch (Exception e) {
             LogUtil.error("Error getting supplier with products: " + supplierId, e);
             throw new RemoteException("Failed to get supplier with products", e);
@@ -293,18 +208,7 @@ public class SupplierServiceImpl extends UnicastRemoteObject implements Supplier
                 return null;
             }
             
-            List<Supplier> suppliers = supplierDao.findSuppliersByContactPerson(contactPerson.trim());
-            
-            // Ensure all suppliers in list are RMI-safe
-            if (suppliers != null) {
-                for (Supplier supplier : suppliers) {
-                    if (supplier.getProducts() != null) {
-                        supplier.setProducts(new ArrayList<>(supplier.getProducts()));
-                    }
-                }
-            }
-            
-            return suppliers;
+            return EntityGraphSanitizer.sanitize(supplierDao.findSuppliersByContactPerson(contactPerson.trim()));
         } catch (Exception e) {
             LogUtil.error("Error finding suppliers by contact person: " + contactPerson, e);
             throw new RemoteException("Failed to find suppliers by contact person", e);
@@ -1,17 +1,17 @@
 package service.implementation;
 
 import dao.UserDao;
+import model.AuthSession;
 import model.OTP;
 import model.User;
 import service.OTPService;
 import service.UserService;
 import util.LogUtil;
+import util.OTPRateLimiter;
 import util.OTPUtil;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -23,22 +23,19 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
     
     private UserDao userDao;
     private OTPService otpService;
+    private final AuthSessionRegistry sessions = AuthSessionRegistry.getInstance();
     
     /**
      * Constructor
      * 
+     * @param userDao The user data access object
+     * @param otpService The OTP service used for OTP login and password reset
      * @throws RemoteException If RMI initialization fails
      */
-    public UserServiceImpl() throws RemoteException {
+    public UserServiceImpl(UserDao userDao, OTPService otpService) throws RemoteException {
         super();
-        this.userDao = new UserDao();
-        // Initialize OTP service
-        try {
-            this.otpService = new OTPServiceImpl();
-        } catch (RemoteException e) {
-            LogUtil.error("Failed to initialize OTP service", e);
-            throw e;
-        }
+        this.userDao = userDao;
+        this.otpService = otpService;
         LogUtil.info("Enhanced UserService initialized with OTP support");
     }
     
@@ -72,23 +69,12 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            // Check for existing username
-            if (userDao.usernameExists(user.getUsername())) {
-                LogUtil.warn("Attempted to create user with existing username: " + user.getUsername());
-                return null;
-            }
-            
-            // Check for existing email
-            if (userDao.emailExists(user.getEmail())) {
-                LogUtil.warn("Attempted to create user with existing email: " + user.getEmail());
-                return null;
-            }
-            
             // Set default role if not specified
             if (user.getRole() == null || user.getRole().trim().isEmpty()) {
                 user.setRole(User.ROLE_STAFF);
             }
             
+            // Duplicate usernames are refused before hashing, duplicate emails by their unique constraint
             return userDao.createUser(user);
         } catch (Exception e) {
             LogUtil.error("Error creating user", e);
@@ -104,7 +90,11 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            return userDao.updateUser(user);
+            User updated = userDao.updateUser(user);
+            if (updated != null) {
+                sessions.updateUser(updated);
+            }
+            return updated;
         } catch (Exception e) {
             LogUtil.error("Error updating user", e);
             throw new RemoteException("Failed to update user", e);
@@ -129,7 +119,11 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return 0;
             }
             
-            return userDao.updatePassword(userId, newPassword);
+            int rowsAffected = userDao.updatePassword(userId, newPassword);
+            if (rowsAffected > 0) {
+                sessions.removeUser(userId);
+            }
+            return rowsAffected;
         } catch (Exception e) {
             LogUtil.error("Error updating password for user ID: " + userId, e);
             throw new RemoteException("Failed to update password", e);
@@ -153,7 +147,11 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 }
             }
             
-            return userDao.deleteUser(user);
+            User deleted = userDao.deleteUser(user);
+            if (deleted != null) {
+                sessions.removeUser(user.getId());
+            }
+            return deleted;
         } catch (Exception e) {
             LogUtil.error("Error deleting user", e);
             throw new RemoteException("Failed to delete user", e);
@@ -250,6 +248,50 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
         }
     }
     
+    @Override
+    public AuthSession login(String username, String password) throws RemoteException {
+        User user = authenticateUser(username, password);
+        return user == null ? null : sessions.create(user);
+    }
+    
+    @Override
+    public AuthSession loginWithOTP(String email, String otpCode) throws RemoteException {
+        User user = completeOTPLogin(email, otpCode);
+        return user == null ? null : sessions.create(user);
+    }
+    
+    @InMemory
+    @Override
+    public AuthSession validateSession(String token) throws RemoteException {
+        return sessions.validate(token);
+    }
+    
+    @InMemory
+    @Override
+    public User getSessionUser(String token) throws RemoteException {
+        return sessions.getUser(token);
+    }
+    
+    @InMemory
+    @Override
+    public boolean hasRole(String token, String role) throws RemoteException {
+        if (role == null || role.trim().isEmpty()) {
+            return false;
+        }
+        User user = sessions.getUser(token);
+        return user != null && role.trim().equalsIgnoreCase(user.getRole());
+    }
+    
+    @InMemory
+    @Override
+    public boolean logout(String token) throws RemoteException {
+        boolean removed = sessions.remove(token);
+        if (removed) {
+            LogUtil.debug("Session ended by logout");
+        }
+        return removed;
+    }
+    
     @Override
     public boolean initiateOTPLogin(String email) throws RemoteException {
         try {
@@ -442,6 +484,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
             
             int result = userDao.updatePassword(user.getId(), newPassword);
             if (result > 0) {
+                sessions.removeUser(user.getId());
                 LogUtil.info("Password reset completed successfully for user: " + email);
                 return true;
             }
@@ -492,11 +535,13 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
         }
     }
     
+    @InMemory
     @Override
     public boolean isValidEmail(String email) throws RemoteException {
         return OTPUtil.isValidEmail(email);
     }
     
+    @InMemory
     @Override
     public boolean isOTPRateLimited(String email) throws RemoteException {
         try {
@@ -512,6 +557,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
         }
     }
     
+    @InMemory
     @Override
     public int getOTPCooldownMinutes(String email) throws RemoteException {
         try {
@@ -521,29 +567,8 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
             
             email = email.trim().toLowerCase();
             
-            // Get latest OTP
-            OTP latestOTP = otpService.getLatestOTP(email, OTP.TYPE_LOGIN);
-            if (latestOTP == null) {
-                return 0;
-            }
-            
-            // Calculate time remaining until next OTP can be sent using Date arithmetic
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(latestOTP.getCreatedAt());
-            cal.add(Calendar.MINUTE, OTPUtil.MIN_RESEND_INTERVAL_MINUTES);
-            Date nextAllowedTime = cal.getTime();
-            
-            Date now = new Date();
-            
-            if (now.after(nextAllowedTime)) {
-                return 0;
-            }
-            
-            // Calculate difference in minutes
-            long diffInMillis = nextAllowedTime.getTime() - now.getTime();
-            long diffInMinutes = diffInMillis / (60 * 1000);
-            
-            return (int) diffInMinutes + 1;
+            // Time left from the in-memory send history, no database query
+            return OTPRateLimiter.getInstance().getCooldownMinutes(email, OTP.TYPE_LOGIN);
             
         } catch (Exception e) {
             LogUtil.error("Error getting OTP cooldown for email: " + email, e);
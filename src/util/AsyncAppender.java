@@ -0,0 +1,141 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands log events to a background writer thread through a bounded buffer,
+ * so logging threads never wait on the console or the disk. When the buffer
+ * is full, DEBUG and INFO events are dropped and counted; WARN and ERROR
+ * events wait for room so they are never lost.
+ */
+public class AsyncAppender implements LogAppender {
+
+    private static final int WRITE_BATCH = 256;
+    private static final long FLUSH_WAIT_MS = 2000;
+    private static final long CLOSE_WAIT_MS = 5000;
+
+    private final List<LogAppender> appenders;
+    private final BlockingQueue<LogEvent> buffer;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    // Statistics
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates the appender and starts its writer thread
+     *
+     * @param appenders The appenders the writer thread writes to
+     * @param bufferSize Number of events the buffer holds
+     */
+    public AsyncAppender(List<LogAppender> appenders, int bufferSize) {
+        this.appenders = new ArrayList<>(appenders);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        writerThread = new Thread(this::writeEvents, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (event.getLevel().compareTo(LogUtil.Level.WARN) < 0) {
+            if (!buffer.offer(event)) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } else {
+            try {
+                buffer.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        queued.incrementAndGet();
+    }
+
+    private void writeEvents() {
+        List<LogEvent> batch = new ArrayList<>(WRITE_BATCH);
+        while (!closed || !buffer.isEmpty()) {
+            try {
+                LogEvent first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, WRITE_BATCH - 1);
+                for (LogEvent event : batch) {
+                    for (LogAppender appender : appenders) {
+                        appender.append(event);
+                    }
+                }
+                if (buffer.isEmpty()) {
+                    for (LogAppender appender : appenders) {
+                        appender.flush();
+                    }
+                }
+                written.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                // Keep draining until closed
+            } catch (RuntimeException e) {
+                System.err.println("Log writer failed: " + e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits briefly until the events queued so far have been written
+     */
+    @Override
+    public void flush() {
+        long target = queued.get();
+        long deadline = System.currentTimeMillis() + FLUSH_WAIT_MS;
+        while (written.get() < target && writerThread.isAlive() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join(CLOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogAppender appender : appenders) {
+            appender.flush();
+            appender.close();
+        }
+    }
+
+    /**
+     * Gets a one-line summary of the buffer statistics
+     *
+     * @return Buffer statistics
+     */
+    public String getStatistics() {
+        return "Buffered: " + buffer.size() +
+            ", Written: " + written.get() +
+            ", Dropped: " + dropped.get();
+    }
+}
@@ -0,0 +1,106 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the in-process cache regions for reference data.
+ * Each region is sized and timed with system properties
+ * cache.&lt;region&gt;.maxEntries and cache.&lt;region&gt;.ttlSeconds;
+ * -Dcache.enabled=false turns every region off.
+ *
+ * Regions hold copies of the loaded values and hand out copies, so a
+ * caller that changes an entity (a login stamping lastLogin, the sanitizer
+ * replacing collections) never changes what other callers get.
+ */
+public class CacheManager {
+
+    // Region names
+    public static final String PRODUCT = "product";
+    public static final String PRODUCT_QUERY = "productQuery";
+    public static final String SUPPLIER = "supplier";
+    public static final String CUSTOMER = "customer";
+    public static final String USER = "user";
+
+    private static CacheManager instance;
+
+    private final Map<String, CacheRegion<?, ?>> regions = new LinkedHashMap<>();
+
+    private CacheManager() {
+        addRegion(PRODUCT, 1000, 300);
+        addRegion(PRODUCT_QUERY, 100, 300);
+        addRegion(SUPPLIER, 500, 600);
+        addRegion(CUSTOMER, 1000, 120);
+        addRegion(USER, 200, 120);
+    }
+
+    /**
+     * Gets the singleton instance of CacheManager
+     *
+     * @return The CacheManager instance
+     */
+    public static synchronized CacheManager getInstance() {
+        if (instance == null) {
+            instance = new CacheManager();
+        }
+        return instance;
+    }
+
+    private void addRegion(String name, int defaultMaxEntries, long defaultTtlSeconds) {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("cache.enabled", "true"));
+        int maxEntries = enabled ? Integer.getInteger("cache." + name + ".maxEntries", defaultMaxEntries) : 0;
+        long ttlSeconds = Long.getLong("cache." + name + ".ttlSeconds", defaultTtlSeconds);
+        regions.put(name, new CacheRegion<>(name, maxEntries, ttlSeconds, EntityGraphSanitizer::copy));
+    }
+
+    /**
+     * Gets a cache region by name
+     *
+     * @param name One of the region name constants
+     * @return The region
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> CacheRegion<K, V> getRegion(String name) {
+        CacheRegion<?, ?> region = regions.get(name);
+        if (region == null) {
+            throw new IllegalArgumentException("Unknown cache region: " + name);
+        }
+        return (CacheRegion<K, V>) region;
+    }
+
+    /**
+     * Gets every region
+     *
+     * @return The regions
+     */
+    public Collection<CacheRegion<?, ?>> getRegions() {
+        return Collections.unmodifiableCollection(regions.values());
+    }
+
+    /**
+     * Clears every region
+     */
+    public void clearAll() {
+        for (CacheRegion<?, ?> region : regions.values()) {
+            region.clear();
+        }
+        LogUtil.info("All cache regions cleared");
+    }
+
+    /**
+     * Gets the statistics of every region, one line per region
+     *
+     * @return Region statistics
+     */
+    public List<String> getStatistics() {
+        List<String> result = new ArrayList<>();
+        for (CacheRegion<?, ?> region : regions.values()) {
+            result.add(region.getStatistics());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,253 @@
+package util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded in-process cache region with LRU eviction and a time-to-live.
+ * Used for read-mostly reference data (products, suppliers, customers, users)
+ * so repeated lookups do not go to PostgreSQL. A region with a maximum size
+ * of 0 is disabled: every lookup is a miss and nothing is stored.
+ *
+ * A region may be given a copier: values are then copied when stored and
+ * again on every hit, so callers can change what they get without changing
+ * the cached value.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class CacheRegion<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    // Incremented by every invalidation, so a load that overlapped one is not stored
+    private long generation;
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache region
+     *
+     * @param name The region name
+     * @param maxEntries Maximum number of entries, 0 to disable the region
+     * @param ttlSeconds Time-to-live of an entry in seconds
+     */
+    public CacheRegion(String name, int maxEntries, long ttlSeconds) {
+        this(name, maxEntries, ttlSeconds, UnaryOperator.identity());
+    }
+
+    /**
+     * Creates a cache region that stores and hands out copies of its values
+     *
+     * @param name The region name
+     * @param maxEntries Maximum number of entries, 0 to disable the region
+     * @param ttlSeconds Time-to-live of an entry in seconds
+     * @param copier Copies a value
+     */
+    public CacheRegion(String name, int maxEntries, long ttlSeconds, UnaryOperator<V> copier) {
+        this.name = name;
+        this.copier = copier;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttlSeconds * 1000L;
+        // Access-ordered map: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > CacheRegion.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached value
+     *
+     * @param key The key
+     * @return The cached value, or null if absent or expired
+     */
+    public V get(K key) {
+        V value = lookup(key);
+        return value == null ? null : copier.apply(value);
+    }
+
+    private synchronized V lookup(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Gets a cached value, loading and caching it on a miss.
+     * The loader runs outside the region lock; null results are not cached,
+     * and neither is a result loaded while the region was invalidated, since
+     * it may have been read before the change that caused the invalidation.
+     *
+     * @param key The key
+     * @param loader Loads the value from the database
+     * @return The cached or loaded value, may be null
+     */
+    public V get(K key, Supplier<V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        long loadGeneration = getGeneration();
+        value = loader.get();
+        if (value != null) {
+            store(key, value, loadGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value
+     *
+     * @param key The key
+     * @param value The value, ignored if null
+     */
+    public void put(K key, V value) {
+        store(key, value, -1);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private void store(K key, V value, long loadGeneration) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        V copy = copier.apply(value);
+        synchronized (this) {
+            if (loadGeneration >= 0 && loadGeneration != generation) {
+                return;
+            }
+            entries.put(key, new CacheEntry<>(copy, System.currentTimeMillis() + ttlMillis));
+            puts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a single key
+     *
+     * @param key The key to remove
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every entry whose value matches, e.g. all keys that map to the
+     * same entity
+     *
+     * @param predicate Selects the values to remove
+     */
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        generation++;
+        Iterator<CacheEntry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (predicate.test(iterator.next().value)) {
+                iterator.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public synchronized void clear() {
+        generation++;
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Gets the region name
+     *
+     * @return The region name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of entries currently cached
+     *
+     * @return Entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the fraction of lookups served from the cache
+     *
+     * @return Hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Gets a one-line summary of the region statistics
+     *
+     * @return Region statistics
+     */
+    public String getStatistics() {
+        return String.format("%s: Size: %d/%d, TTL: %ds, Hits: %d, Misses: %d, Hit ratio: %.1f%%, " +
+                             "Puts: %d, Evictions: %d, Expirations: %d, Invalidations: %d",
+            name, size(), maxEntries, ttlMillis / 1000, hits.get(), misses.get(), getHitRatio() * 100,
+            puts.get(), evictions.get(), expirations.get(), invalidations.get());
+    }
+
+    /**
+     * A cached value with its expiry time
+     */
+    private static class CacheEntry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package util;
+
+/**
+ * Writes log events to the console: errors to System.err, everything else
+ * to System.out
+ */
+public class ConsoleAppender implements LogAppender {
+
+    @Override
+    public void append(LogEvent event) {
+        if (event.getLevel() == LogUtil.Level.ERROR) {
+            System.err.println(event.format(false));
+        } else {
+            System.out.println(event.format(false));
+        }
+    }
+
+    @Override
+    public void flush() {
+        System.out.flush();
+        System.err.flush();
+    }
+}
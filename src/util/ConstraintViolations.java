@@ -0,0 +1,79 @@
+package util;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.sql.SQLException;
+
+/**
+ * Recognizes unique constraint violations, so create methods can insert
+ * directly and let the database reject duplicates instead of running an
+ * "exists" query first. Works for Hibernate exceptions and plain JDBC
+ * (including batch) exceptions.
+ *
+ * The DAO create methods rely on this: a duplicate is logged as "already
+ * exists" and the method returns null. The exception is UserDao.createUser,
+ * which checks the username first because hashing the password costs far
+ * more than the query.
+ */
+public final class ConstraintViolations {
+
+    // PostgreSQL unique_violation
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private ConstraintViolations() {
+    }
+
+    /**
+     * Checks whether an exception, or one of its causes, is a unique
+     * constraint violation
+     *
+     * @param e The exception
+     * @return true if a unique constraint was violated
+     */
+    public static boolean isUniqueViolation(Throwable e) {
+        return findViolation(e) != null;
+    }
+
+    /**
+     * Describes a unique constraint violation for logging, e.g.
+     * "Key (email)=(a@b.com) already exists."
+     *
+     * @param e The exception
+     * @return The description, or the exception message if it is not a unique violation
+     */
+    public static String describe(Throwable e) {
+        SQLException violation = findViolation(e);
+        if (violation == null) {
+            return String.valueOf(e.getMessage());
+        }
+        String message = String.valueOf(violation.getMessage());
+        // PostgreSQL puts the duplicated key in a "Detail:" line
+        int detail = message.indexOf("Key (");
+        if (detail >= 0) {
+            return message.substring(detail).trim();
+        }
+        int lineEnd = message.indexOf('\n');
+        return lineEnd >= 0 ? message.substring(0, lineEnd) : message;
+    }
+
+    private static SQLException findViolation(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            SQLException sqlException = null;
+            if (current instanceof ConstraintViolationException) {
+                sqlException = ((ConstraintViolationException) current).getSQLException();
+            } else if (current instanceof SQLException) {
+                sqlException = (SQLException) current;
+            }
+            // Batch failures carry the statement error as the next exception
+            for (SQLException s = sqlException; s != null; s = s.getNextException()) {
+                if (UNIQUE_VIOLATION.equals(s.getSQLState())) {
+                    return s;
+                }
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,282 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Outbound email queue. Emails are sent by a small pool of worker threads so
+ * RMI threads never wait on an SMTP handshake. A failed send is retried with
+ * exponential backoff; after the last attempt the email goes to a bounded
+ * dead-letter list that can be inspected from the server console.
+ *
+ * Configured with the system properties email.queue.capacity (default 1000),
+ * email.queue.workers (default 4), email.queue.maxAttempts (default 3),
+ * email.queue.retryDelayMs (default 2000) and email.queue.deadLetters
+ * (default 100).
+ */
+public class EmailQueue {
+
+    private static final int CAPACITY = Integer.getInteger("email.queue.capacity", 1000);
+    private static final int WORKERS = Integer.getInteger("email.queue.workers", 4);
+    private static final int MAX_ATTEMPTS = Integer.getInteger("email.queue.maxAttempts", 3);
+    private static final long RETRY_DELAY_MS = Long.getLong("email.queue.retryDelayMs", 2000L);
+    private static final int MAX_DEAD_LETTERS = Integer.getInteger("email.queue.deadLetters", 100);
+
+    private static EmailQueue instance;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final Deque<DeadLetter> deadLetters = new ArrayDeque<>();
+
+    // Statistics
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+    private final AtomicLong sendAttempts = new AtomicLong();
+    private final AtomicLong totalSendMs = new AtomicLong();
+
+    private EmailQueue() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CAPACITY), r -> {
+                Thread thread = new Thread(r, "email-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "email-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LogUtil.info("Email queue started with " + WORKERS + " workers, capacity " + CAPACITY);
+    }
+
+    /**
+     * Gets the singleton instance of EmailQueue
+     *
+     * @return The EmailQueue instance
+     */
+    public static synchronized EmailQueue getInstance() {
+        if (instance == null) {
+            instance = new EmailQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues an email for sending and returns immediately
+     *
+     * @param description What is being sent, for logging (e.g. "OTP email")
+     * @param recipient The recipient address, for logging
+     * @param sender Sends the email, returning true on success
+     * @return true if the email was queued, false if the queue is full or stopped
+     */
+    public boolean enqueue(String description, String recipient, BooleanSupplier sender) {
+        EmailTask task = new EmailTask(description, recipient, sender);
+        if (!submit(task)) {
+            rejected.incrementAndGet();
+            addDeadLetter(task, "queue full or stopped");
+            LogUtil.error("Email queue rejected " + description + " to: " + recipient);
+            return false;
+        }
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    private boolean submit(EmailTask task) {
+        try {
+            workers.execute(() -> run(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs one send attempt on a worker thread
+     */
+    private void run(EmailTask task) {
+        task.attempts++;
+        inFlight.incrementAndGet();
+        long start = System.currentTimeMillis();
+        boolean success;
+        String failure = "send failed";
+        try {
+            success = task.sender.getAsBoolean();
+        } catch (RuntimeException e) {
+            success = false;
+            failure = e.toString();
+            LogUtil.error("Error sending " + task.description + " to: " + task.recipient, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        long now = System.currentTimeMillis();
+        sendAttempts.incrementAndGet();
+        totalSendMs.addAndGet(now - start);
+
+        if (success) {
+            sent.incrementAndGet();
+            long latency = now - task.enqueuedAt;
+            totalLatencyMs.addAndGet(latency);
+            long max;
+            while (latency > (max = maxLatencyMs.get()) && !maxLatencyMs.compareAndSet(max, latency)) {
+                // Retry until the maximum is updated
+            }
+            return;
+        }
+
+        if (task.attempts < MAX_ATTEMPTS) {
+            long delay = RETRY_DELAY_MS << (task.attempts - 1);
+            retried.incrementAndGet();
+            LogUtil.warn("Retrying " + task.description + " to: " + task.recipient +
+                        " in " + delay + " ms (attempt " + task.attempts + " of " + MAX_ATTEMPTS + ")");
+            try {
+                retryScheduler.schedule(() -> {
+                    if (!submit(task)) {
+                        addDeadLetter(task, "queue full or stopped on retry");
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                addDeadLetter(task, "queue stopped before retry");
+            }
+        } else {
+            addDeadLetter(task, failure);
+            LogUtil.error("Giving up on " + task.description + " to: " + task.recipient +
+                         " after " + task.attempts + " attempts");
+        }
+    }
+
+    private void addDeadLetter(EmailTask task, String reason) {
+        deadLettered.incrementAndGet();
+        synchronized (deadLetters) {
+            if (deadLetters.size() >= MAX_DEAD_LETTERS) {
+                deadLetters.removeFirst();
+            }
+            deadLetters.addLast(new DeadLetter(task, reason));
+        }
+    }
+
+    /**
+     * Gets the number of emails waiting for a worker
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Gets descriptions of the most recent emails that could not be sent
+     *
+     * @return Dead letters, oldest first
+     */
+    public List<String> getDeadLetters() {
+        List<String> result = new ArrayList<>();
+        synchronized (deadLetters) {
+            for (DeadLetter letter : deadLetters) {
+                result.add(letter.toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets a one-line summary of the queue statistics
+     *
+     * @return Queue statistics
+     */
+    public String getStatistics() {
+        long sentCount = sent.get();
+        long attempts = sendAttempts.get();
+        return "Depth: " + getQueueDepth() + "/" + CAPACITY +
+            ", In flight: " + inFlight.get() +
+            ", Enqueued: " + enqueued.get() +
+            ", Sent: " + sentCount +
+            ", Retried: " + retried.get() +
+            ", Dead-lettered: " + deadLettered.get() +
+            ", Rejected: " + rejected.get() +
+            ", Avg latency: " + (sentCount == 0 ? 0 : totalLatencyMs.get() / sentCount) + " ms" +
+            ", Max latency: " + maxLatencyMs.get() + " ms" +
+            ", Avg send: " + (attempts == 0 ? 0 : totalSendMs.get() / attempts) + " ms";
+    }
+
+    /**
+     * Stops accepting emails and waits for the queued ones to be sent.
+     * Pending retries are dropped.
+     *
+     * @param timeoutSeconds Maximum time to wait for the queue to drain
+     */
+    public void shutdown(long timeoutSeconds) {
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                LogUtil.warn("Email queue did not drain in " + timeoutSeconds + " s, " +
+                            getQueueDepth() + " emails dropped");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An email waiting to be sent
+     */
+    private static class EmailTask {
+        private final String description;
+        private final String recipient;
+        private final BooleanSupplier sender;
+        private final long enqueuedAt = System.currentTimeMillis();
+        // Attempts run one after another, possibly on different workers
+        private volatile int attempts;
+
+        private EmailTask(String description, String recipient, BooleanSupplier sender) {
+            this.description = description;
+            this.recipient = recipient;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * An email that could not be sent
+     */
+    private static class DeadLetter {
+        private final String description;
+        private final String recipient;
+        private final int attempts;
+        private final String reason;
+        private final Date failedAt = new Date();
+
+        private DeadLetter(EmailTask task, String reason) {
+            this.description = task.description;
+            this.recipient = task.recipient;
+            this.attempts = task.attempts;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return failedAt + " " + description + " to " + recipient +
+                " (" + attempts + " attempts): " + reason;
+        }
+    }
+}
@@ -4,6 +4,9 @@ import util.LogUtil;
 
 import javax.mail.*;
 import javax.mail.internet.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -29,9 +32,16 @@ public class EmailService {
         "Best regards,\n" +
         "Business Management System Team";
     
+    // Pooled SMTP connections; -Demail.transport.pooled=false sends each email on its own connection
+    private static final boolean POOLED_TRANSPORT =
+        Boolean.parseBoolean(System.getProperty("email.transport.pooled", "true"));
+    private static final int TRANSPORT_POOL_SIZE = Integer.getInteger("email.transport.poolSize", 4);
+    private static final long TRANSPORT_BORROW_TIMEOUT_MS = 30000;
+    
     private static EmailService instance;
     private Properties properties;
     private Session session;
+    private SmtpTransportPool transportPool;
     
     /**
      * Private constructor for singleton pattern
@@ -72,7 +82,129 @@ public class EmailService {
         };
         
         session = Session.getInstance(properties, authenticator);
-        LogUtil.info("Email service initialized with SMTP host: " + SMTP_HOST);
+        if (POOLED_TRANSPORT) {
+            transportPool = new SmtpTransportPool(session, SMTP_HOST, Integer.parseInt(SMTP_PORT),
+                EMAIL_USERNAME, EMAIL_PASSWORD, TRANSPORT_POOL_SIZE, TRANSPORT_BORROW_TIMEOUT_MS);
+        }
+        LogUtil.info("Email service initialized with SMTP host: " + SMTP_HOST +
+                    (POOLED_TRANSPORT ? " (pooled, " + TRANSPORT_POOL_SIZE + " connections)" : ""));
+    }
+    
+    /**
+     * Sends a message on a pooled connection, or on a new connection when pooling is off
+     */
+    private void deliver(Message message) throws MessagingException {
+        if (transportPool != null) {
+            transportPool.send(message);
+        } else {
+            Transport.send(message);
+        }
+    }
+    
+    /**
+     * Creates an HTML message to a single recipient
+     */
+    private Message createHtmlMessage(String toEmail, String subject, String htmlContent) throws Exception {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(EMAIL_USERNAME, FROM_NAME));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
+        message.setSubject(subject);
+        message.setContent(htmlContent, "text/html; charset=utf-8");
+        return message;
+    }
+    
+    /**
+     * Sends many messages over as few SMTP connections as possible.
+     * Messages are sent one after another on a single pooled connection, so
+     * the handshake and authentication are paid once per batch instead of once
+     * per message. A rejected message is skipped and the rest are still sent.
+     * 
+     * @param messages The messages to send
+     * @return Number of messages sent
+     */
+    public int sendBatch(List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+        try {
+            int sent;
+            if (transportPool != null) {
+                sent = transportPool.sendBatch(messages);
+            } else {
+                sent = 0;
+                for (Message message : messages) {
+                    try {
+                        Transport.send(message);
+                        sent++;
+                    } catch (MessagingException e) {
+                        LogUtil.error("Failed to send message in batch: " + message.getSubject(), e);
+                    }
+                }
+            }
+            LogUtil.info("Email batch sent: " + sent + " of " + messages.size() + " messages");
+            return sent;
+        } catch (Exception e) {
+            LogUtil.error("Failed to send email batch of " + messages.size() + " messages", e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Sends the same HTML notification to many recipients, one message each
+     * 
+     * @param recipients The recipient email addresses
+     * @param subject The subject
+     * @param htmlContent The HTML body
+     * @return Number of emails sent
+     */
+    public int sendNotificationBatch(List<String> recipients, String subject, String htmlContent) {
+        List<Message> messages = new ArrayList<>();
+        for (String toEmail : recipients) {
+            try {
+                messages.add(createHtmlMessage(toEmail, subject, htmlContent));
+            } catch (Exception e) {
+                LogUtil.error("Failed to create notification email to: " + toEmail, e);
+            }
+        }
+        return sendBatch(messages);
+    }
+    
+    /**
+     * Sends password reset codes to many users in one batch
+     * 
+     * @param codesByEmail OTP code for each recipient email address
+     * @param expiryMinutes Number of minutes until the codes expire
+     * @return Number of emails sent
+     */
+    public int sendPasswordResetBatch(Map<String, String> codesByEmail, int expiryMinutes) {
+        List<Message> messages = new ArrayList<>();
+        for (Map.Entry<String, String> entry : codesByEmail.entrySet()) {
+            try {
+                messages.add(createHtmlMessage(entry.getKey(), "Password Reset Verification Code",
+                    createPasswordResetEmailHTML(entry.getValue(), expiryMinutes)));
+            } catch (Exception e) {
+                LogUtil.error("Failed to create password reset email to: " + entry.getKey(), e);
+            }
+        }
+        return sendBatch(messages);
+    }
+    
+    /**
+     * Gets a one-line summary of the SMTP connection pool
+     * 
+     * @return Pool statistics, or a note that pooling is off
+     */
+    public String getTransportStatistics() {
+        return transportPool != null ? transportPool.getStatistics() : "Pooling disabled";
+    }
+    
+    /**
+     * Closes the pooled SMTP connections
+     */
+    public void shutdown() {
+        if (transportPool != null) {
+            transportPool.close();
+        }
     }
     
     /**
@@ -96,7 +228,7 @@ public class EmailService {
             message.setText(emailContent);
             
             // Send email
-            Transport.send(message);
+            deliver(message);
             
             LogUtil.info("OTP email sent successfully to: " + toEmail);
             return true;
@@ -131,7 +263,7 @@ public class EmailService {
             message.setContent(htmlContent, "text/html; charset=utf-8");
             
             // Send email
-            Transport.send(message);
+            deliver(message);
             
             LogUtil.info("HTML OTP email sent successfully to: " + toEmail);
             return true;
@@ -219,7 +351,7 @@ public class EmailService {
             message.setContent(htmlContent, "text/html; charset=utf-8");
             
             // Send email
-            Transport.send(message);
+            deliver(message);
             
             LogUtil.info("Password reset email sent successfully to: " + toEmail);
             return true;
@@ -301,7 +433,7 @@ public class EmailService {
             message.setText("This is a test email to verify email configuration. " +
                            "If you receive this, the email service is working correctly.");
             
-            Transport.send(message);
+            deliver(message);
             LogUtil.info("Email configuration test successful");
             return true;
             
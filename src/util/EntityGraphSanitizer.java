@@ -0,0 +1,308 @@
+package util;
+
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes entity graphs safe to return over RMI.
+ *
+ * Walks a graph once and, without ever triggering a lazy load:
+ * - replaces initialized HibernateProxy instances with the real entity
+ * - replaces uninitialized proxies with id-only stubs of the entity class
+ * - replaces uninitialized persistent collections with empty lists
+ * - copies initialized persistent collections into plain java.util collections
+ *
+ * Fields are read and written by reflection, never through getters, so
+ * nothing on the entity is initialized as a side effect. The association
+ * fields of every entity class are looked up once and cached.
+ *
+ * DAOs still decide what gets loaded (fetch joins, bulk fetches,
+ * Hibernate.initialize); this class only detaches what was loaded.
+ */
+public final class EntityGraphSanitizer {
+
+    private static final Map<Class<?>, EntityMetadata> metadataCache = new ConcurrentHashMap<>();
+
+    private EntityGraphSanitizer() {
+    }
+
+    /**
+     * Sanitizes an entity, a collection of entities or any other value.
+     * Non-entity values are returned unchanged.
+     *
+     * @param root The value to sanitize, may be null
+     * @return The sanitized value
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T sanitize(T root) {
+        if (root == null) {
+            return null;
+        }
+        return (T) new Walk().sanitizeValue(root);
+    }
+
+    /**
+     * Makes a deep copy of a sanitized value that shares no object with the
+     * original. Used by the cache regions, so that a caller changing an entity
+     * it got from the cache does not change what other callers get.
+     *
+     * @param root The value to copy, may be null; must be serializable
+     * @return The copy
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T root) {
+        if (root == null) {
+            return null;
+        }
+        Object sanitized = sanitize(root);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(sanitized);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (T) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot copy " + root.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Per-call state: objects already visited and stubs already created,
+     * so shared references and cycles are handled once
+     */
+    private static class Walk {
+        private final Map<Object, Object> visited = new IdentityHashMap<>();
+        private final Map<String, Object> stubs = new HashMap<>();
+
+        private Object sanitizeValue(Object value) {
+            if (value == null) {
+                return null;
+            }
+            Object done = visited.get(value);
+            if (done != null) {
+                return done;
+            }
+            if (value instanceof HibernateProxy) {
+                return sanitizeProxy((HibernateProxy) value);
+            }
+            if (value instanceof Collection) {
+                return sanitizeCollection((Collection<?>) value);
+            }
+            if (value instanceof Map) {
+                return sanitizeMap((Map<?, ?>) value);
+            }
+            EntityMetadata metadata = metadataFor(value.getClass());
+            if (metadata == null) {
+                return value;
+            }
+            visited.put(value, value);
+            for (Field field : metadata.associations) {
+                try {
+                    Object current = field.get(value);
+                    Object sanitized = sanitizeValue(current);
+                    if (sanitized != current) {
+                        field.set(value, sanitized);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot access " + field, e);
+                }
+            }
+            return value;
+        }
+
+        private Object sanitizeProxy(HibernateProxy proxy) {
+            LazyInitializer initializer = proxy.getHibernateLazyInitializer();
+            Object result;
+            if (initializer.isUninitialized()) {
+                result = stub(initializer.getPersistentClass(), initializer.getIdentifier());
+                visited.put(proxy, result);
+            } else {
+                Object target = initializer.getImplementation();
+                result = sanitizeValue(target);
+                visited.put(proxy, result);
+            }
+            return result;
+        }
+
+        private Object sanitizeCollection(Collection<?> collection) {
+            if (!Hibernate.isInitialized(collection)) {
+                List<Object> empty = new ArrayList<>();
+                visited.put(collection, empty);
+                return empty;
+            }
+            if (isHibernateType(collection)) {
+                Collection<Object> copy = collection instanceof Set
+                    ? new LinkedHashSet<>() : new ArrayList<>(collection.size());
+                visited.put(collection, copy);
+                for (Object element : collection) {
+                    copy.add(sanitizeValue(element));
+                }
+                return copy;
+            }
+            visited.put(collection, collection);
+            if (collection instanceof List) {
+                sanitizeList(asObjectList(collection));
+            } else {
+                for (Object element : collection) {
+                    sanitizeValue(element);
+                }
+            }
+            return collection;
+        }
+
+        /**
+         * Sanitizes a plain list in place, replacing proxy elements
+         */
+        private void sanitizeList(List<Object> list) {
+            for (int i = 0; i < list.size(); i++) {
+                Object element = list.get(i);
+                Object sanitized = sanitizeValue(element);
+                if (sanitized != element) {
+                    list.set(i, sanitized);
+                }
+            }
+        }
+
+        private Object sanitizeMap(Map<?, ?> map) {
+            if (!Hibernate.isInitialized(map)) {
+                Map<Object, Object> empty = new LinkedHashMap<>();
+                visited.put(map, empty);
+                return empty;
+            }
+            if (isHibernateType(map)) {
+                Map<Object, Object> copy = new LinkedHashMap<>();
+                visited.put(map, copy);
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    copy.put(sanitizeValue(entry.getKey()), sanitizeValue(entry.getValue()));
+                }
+                return copy;
+            }
+            visited.put(map, map);
+            for (Object value : map.values()) {
+                sanitizeValue(value);
+            }
+            return map;
+        }
+
+        /**
+         * Creates (once per walk) an entity with only its ID set
+         */
+        private Object stub(Class<?> entityClass, Serializable id) {
+            String key = entityClass.getName() + "#" + id;
+            Object stub = stubs.get(key);
+            if (stub == null) {
+                EntityMetadata metadata = metadataFor(entityClass);
+                if (metadata == null) {
+                    throw new IllegalStateException("Not an entity class: " + entityClass.getName());
+                }
+                stub = metadata.newStub(id);
+                stubs.put(key, stub);
+            }
+            return stub;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Object> asObjectList(Collection<?> collection) {
+            return (List<Object>) collection;
+        }
+    }
+
+    /**
+     * Persistent collections (PersistentBag, PersistentSet, ...) are the
+     * only org.hibernate collection types an entity can hold
+     */
+    private static boolean isHibernateType(Object value) {
+        return value.getClass().getName().startsWith("org.hibernate.");
+    }
+
+    /**
+     * Gets the cached metadata of an entity class
+     *
+     * @return The metadata, or null if the class is not an entity
+     */
+    private static EntityMetadata metadataFor(Class<?> type) {
+        if (!type.isAnnotationPresent(Entity.class)) {
+            return null;
+        }
+        return metadataCache.computeIfAbsent(type, EntityMetadata::new);
+    }
+
+    /**
+     * Reflection metadata of one entity class: its ID field, its association
+     * and collection fields and its no-arg constructor
+     */
+    private static class EntityMetadata {
+        private final Field idField;
+        private final List<Field> associations = new ArrayList<>();
+        private final Constructor<?> constructor;
+
+        private EntityMetadata(Class<?> type) {
+            Field id = null;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.isAnnotationPresent(Id.class)) {
+                        field.setAccessible(true);
+                        id = field;
+                    } else if (isAssociation(field.getType())) {
+                        field.setAccessible(true);
+                        associations.add(field);
+                    }
+                }
+            }
+            this.idField = id;
+            try {
+                Constructor<?> noArg = type.getDeclaredConstructor();
+                noArg.setAccessible(true);
+                this.constructor = noArg;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Entity has no no-arg constructor: " + type.getName(), e);
+            }
+        }
+
+        private static boolean isAssociation(Class<?> fieldType) {
+            return Collection.class.isAssignableFrom(fieldType)
+                || Map.class.isAssignableFrom(fieldType)
+                || fieldType.isAnnotationPresent(Entity.class);
+        }
+
+        private Object newStub(Serializable id) {
+            try {
+                Object stub = constructor.newInstance();
+                if (idField != null) {
+                    idField.set(stub, id);
+                }
+                return stub;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create stub of " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+    }
+}
@@ -16,13 +16,18 @@ import org.hibernate.SessionFactory;
  */
 public class HibernateUtil {
 
+    private static final int DEFAULT_POOL_SIZE = 20;
+
     private static final SessionFactory sessionFactory;
+    private static final int connectionPoolSize;
     
     static {
         try {
             // Create the SessionFactory from standard (hibernate.cfg.xml) 
             // config file.
-            sessionFactory = new AnnotationConfiguration().configure().buildSessionFactory();
+            AnnotationConfiguration configuration = new AnnotationConfiguration().configure();
+            connectionPoolSize = parsePoolSize(configuration.getProperty("hibernate.c3p0.max_size"));
+            sessionFactory = configuration.buildSessionFactory();
         } catch (Throwable ex) {
             // Log the exception. 
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -33,4 +38,24 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return sessionFactory;
     }
+
+    /**
+     * Gets the maximum number of pooled database connections
+     *
+     * @return The c3p0 max_size from hibernate.cfg.xml
+     */
+    public static int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    private static int parsePoolSize(String value) {
+        if (value == null) {
+            return DEFAULT_POOL_SIZE;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_POOL_SIZE;
+        }
+    }
 }
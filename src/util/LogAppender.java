@@ -0,0 +1,27 @@
+package util;
+
+/**
+ * Destination for log events. LogUtil hands every enabled event to its
+ * appender; set another one with LogUtil.setAppender.
+ */
+public interface LogAppender {
+
+    /**
+     * Writes an event
+     *
+     * @param event The event
+     */
+    void append(LogEvent event);
+
+    /**
+     * Writes out anything buffered
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes and releases the appender's resources
+     */
+    default void close() {
+    }
+}
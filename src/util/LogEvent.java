@@ -0,0 +1,72 @@
+package util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One log message, captured on the logging thread and formatted later by
+ * the appender that writes it
+ */
+public final class LogEvent {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LogUtil.Level level;
+    private final long timestamp;
+    private final String threadName;
+    private final String message;
+    private final Throwable error;
+
+    LogEvent(LogUtil.Level level, String message, Throwable error) {
+        this.level = level;
+        this.timestamp = System.currentTimeMillis();
+        this.threadName = Thread.currentThread().getName();
+        this.message = message;
+        this.error = error;
+    }
+
+    public LogUtil.Level getLevel() {
+        return level;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Formats the event as "[LEVEL] yyyy-MM-dd HH:mm:ss - message"
+     *
+     * @param withThread Whether to add the name of the logging thread
+     * @return The formatted line, followed by the stack trace if there is an error
+     */
+    public String format(boolean withThread) {
+        StringBuilder line = new StringBuilder(message == null ? 64 : message.length() + 64);
+        line.append('[').append(level).append("] ")
+            .append(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).format(formatter));
+        if (withThread) {
+            line.append(" [").append(threadName).append(']');
+        }
+        line.append(" - ").append(message);
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().trim());
+        }
+        return line.toString();
+    }
+}
@@ -1,68 +1,208 @@
 package util;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
- * Simple logging utility for the business management server
+ * Simple logging utility for the business management server.
+ *
+ * Messages below the current level are discarded before they are built; use
+ * the Supplier overloads for messages that are expensive to build. Enabled
+ * messages go to the appender, by default an AsyncAppender writing to the
+ * console and a rolling log file from a background thread.
+ *
+ * Configured with the system properties log.level (default INFO),
+ * log.file (default logs/server.log, empty for console only),
+ * log.maxFileSizeMb (default 10), log.maxFiles (default 5) and
+ * log.bufferSize (default 8192 events).
  */
 public class LogUtil {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    
+
+    /**
+     * Log levels, from most to least verbose
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static volatile Level level = parseLevel(System.getProperty("log.level"), Level.INFO);
+    private static volatile LogAppender appender = createDefaultAppender();
+
+    private static LogAppender createDefaultAppender() {
+        List<LogAppender> appenders = new ArrayList<>();
+        appenders.add(new ConsoleAppender());
+        String file = System.getProperty("log.file", "logs/server.log");
+        if (!file.trim().isEmpty()) {
+            long maxFileBytes = Long.getLong("log.maxFileSizeMb", 10) * 1024 * 1024;
+            appenders.add(new RollingFileAppender(file.trim(), maxFileBytes, Integer.getInteger("log.maxFiles", 5)));
+        }
+        return new AsyncAppender(appenders, Integer.getInteger("log.bufferSize", 8192));
+    }
+
+    /**
+     * Parses a level name
+     *
+     * @param name The level name, case-insensitive
+     * @param defaultLevel Level returned if the name is null or unknown
+     * @return The level
+     */
+    public static Level parseLevel(String name, Level defaultLevel) {
+        if (name != null) {
+            for (Level candidate : Level.values()) {
+                if (candidate.name().equalsIgnoreCase(name.trim())) {
+                    return candidate;
+                }
+            }
+        }
+        return defaultLevel;
+    }
+
+    /**
+     * Sets the minimum level that is logged
+     *
+     * @param newLevel The level
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Checks whether messages of a level are logged
+     *
+     * @param messageLevel The level
+     * @return true if the level is enabled
+     */
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    /**
+     * Replaces the appender. The previous appender is flushed and closed.
+     *
+     * @param newAppender The appender to write to
+     */
+    public static synchronized void setAppender(LogAppender newAppender) {
+        LogAppender previous = appender;
+        appender = newAppender;
+        previous.close();
+    }
+
+    /**
+     * Waits briefly until the messages logged so far have been written
+     */
+    public static void flush() {
+        appender.flush();
+    }
+
+    /**
+     * Writes out the buffered messages and closes the log file. Messages
+     * logged afterwards go straight to the console.
+     */
+    public static void shutdown() {
+        setAppender(new ConsoleAppender());
+    }
+
+    /**
+     * Gets a one-line summary of the logging statistics
+     *
+     * @return Logging statistics
+     */
+    public static String getStatistics() {
+        LogAppender current = appender;
+        String statistics = "Level: " + level;
+        if (current instanceof AsyncAppender) {
+            statistics += ", " + ((AsyncAppender) current).getStatistics();
+        }
+        return statistics;
+    }
+
+    private static void log(Level messageLevel, String message, Throwable error) {
+        if (isEnabled(messageLevel)) {
+            appender.append(new LogEvent(messageLevel, message, error));
+        }
+    }
+
+    private static void log(Level messageLevel, Supplier<String> message) {
+        if (isEnabled(messageLevel)) {
+            appender.append(new LogEvent(messageLevel, message.get(), null));
+        }
+    }
+
     /**
      * Log info message
-     * 
+     *
      * @param message The message to log
      */
     public static void info(String message) {
-        System.out.println("[INFO] " + LocalDateTime.now().format(formatter) + " - " + message);
+        log(Level.INFO, message, null);
+    }
+
+    /**
+     * Log info message, building it only if INFO is enabled
+     *
+     * @param message Supplies the message to log
+     */
+    public static void info(Supplier<String> message) {
+        log(Level.INFO, message);
     }
-    
+
     /**
      * Log error message
-     * 
+     *
      * @param message The error message to log
      */
     public static void error(String message) {
-        System.err.println("[ERROR] " + LocalDateTime.now().format(formatter) + " - " + message);
+        log(Level.ERROR, message, null);
     }
-    
+
     /**
      * Log error message with exception
-     * 
+     *
      * @param message The error message to log
      * @param exception The exception to log
      */
     public static void error(String message, Exception exception) {
-        System.err.println("[ERROR] " + LocalDateTime.now().format(formatter) + " - " + message);
-        if (exception != null) {
-            exception.printStackTrace();
-        }
+        log(Level.ERROR, message, exception);
     }
-    
+
     /**
      * Log warning message
-     * 
+     *
      * @param message The warning message to log
      */
     public static void warn(String message) {
-        System.out.println("[WARN] " + LocalDateTime.now().format(formatter) + " - " + message);
+        log(Level.WARN, message, null);
     }
-    
-    
+
+
     /**
      * Log debug message
-     * 
+     *
      * @param message The debug message to log
      */
     public static void debug(String message) {
-        System.out.println("[DEBUG] " + LocalDateTime.now().format(formatter) + " - " + message);
+        log(Level.DEBUG, message, null);
+    }
+
+    /**
+     * Log debug message, building it only if DEBUG is enabled
+     *
+     * @param message Supplies the message to log
+     */
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
     }
 
     public static void warn(String message, Exception e) {
-        System.out.println("[WARN] " + LocalDateTime.now().format(formatter) + " - " + message);
-        if (e != null) {
-            e.printStackTrace();
-        }
+        log(Level.WARN, message, e);
     }
-}
\ No newline at end of file
+}
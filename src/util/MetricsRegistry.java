@@ -0,0 +1,221 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts, error counts, in-flight gauges and latency percentiles of
+ * the remote methods, one MethodMetrics per "service.method". The counters
+ * are striped (LongAdder), so recording a call costs a few uncontended
+ * increments.
+ *
+ * getMethodStatistics() reports totals since startup; snapshot() reports
+ * what happened since the previous snapshot, for the periodic metrics log.
+ */
+public class MetricsRegistry {
+
+    private static MetricsRegistry instance;
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private long lastSnapshotAt = System.currentTimeMillis();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Gets the singleton instance
+     *
+     * @return The metrics registry
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the metrics of a method, creating them on first use
+     *
+     * @param name The method name, e.g. "orderService.findAllOrders"
+     * @return The method metrics
+     */
+    public MethodMetrics method(String name) {
+        return methods.computeIfAbsent(name, MethodMetrics::new);
+    }
+
+    /**
+     * Gets the metrics of all methods called so far, most called first
+     *
+     * @return The method metrics
+     */
+    public List<MethodMetrics> getMethods() {
+        List<MethodMetrics> sorted = new ArrayList<>(methods.values());
+        sorted.sort(Comparator.comparingLong(MethodMetrics::getCalls).reversed());
+        return sorted;
+    }
+
+    /**
+     * Gets one line per method with its totals since startup
+     *
+     * @return Method statistics, most called first
+     */
+    public List<String> getMethodStatistics() {
+        List<String> lines = new ArrayList<>();
+        for (MethodMetrics metrics : getMethods()) {
+            if (metrics.getCalls() > 0 || metrics.getInFlight() > 0) {
+                lines.add(metrics.describe(metrics.getCalls(), metrics.getErrors(),
+                    metrics.histogram.getCounts(), 0, metrics.histogram.getMaxMicros()));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Gets one line per method called since the previous snapshot, with the
+     * calls, errors, throughput and percentiles of that interval
+     *
+     * @return Interval statistics, most called first; empty if nothing was called
+     */
+    public synchronized List<String> snapshot() {
+        long now = System.currentTimeMillis();
+        long intervalMs = Math.max(1, now - lastSnapshotAt);
+        lastSnapshotAt = now;
+        List<String> lines = new ArrayList<>();
+        for (MethodMetrics metrics : getMethods()) {
+            String line = metrics.snapshot(intervalMs);
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Gets a one-line summary of the metrics
+     *
+     * @return Metrics statistics
+     */
+    public String getStatistics() {
+        long calls = 0;
+        long errors = 0;
+        long inFlight = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            calls += metrics.getCalls();
+            errors += metrics.getErrors();
+            inFlight += metrics.getInFlight();
+        }
+        return "Methods: " + methods.size() +
+            ", Calls: " + calls +
+            ", Errors: " + errors +
+            ", In flight: " + inFlight;
+    }
+
+    /**
+     * Metrics of one remote method
+     */
+    public static class MethodMetrics {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Totals at the previous snapshot, only used by the snapshot thread
+        private long snapshotCalls;
+        private long snapshotErrors;
+        private long[] snapshotCounts;
+
+        private MethodMetrics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Marks the start of a call
+         *
+         * @return The start time, to pass to stop
+         */
+        public long start() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        /**
+         * Marks the end of a call
+         *
+         * @param startNanos The value returned by start
+         * @param failed Whether the call threw an exception
+         */
+        public void stop(long startNanos, boolean failed) {
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            inFlight.decrement();
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        private String snapshot(long intervalMs) {
+            long totalCalls = getCalls();
+            long totalErrors = getErrors();
+            long[] counts = histogram.getCounts();
+            long intervalCalls = totalCalls - snapshotCalls;
+            long intervalErrors = totalErrors - snapshotErrors;
+            long[] intervalCounts = counts.clone();
+            if (snapshotCounts != null) {
+                for (int i = 0; i < counts.length; i++) {
+                    intervalCounts[i] -= snapshotCounts[i];
+                }
+            }
+            snapshotCalls = totalCalls;
+            snapshotErrors = totalErrors;
+            snapshotCounts = counts;
+            if (intervalCalls == 0) {
+                return null;
+            }
+            return describe(intervalCalls, intervalErrors, intervalCounts, intervalMs,
+                LatencyHistogram.percentile(intervalCounts, 100));
+        }
+
+        private String describe(long callCount, long errorCount, long[] counts, long intervalMs, long maxMicros) {
+            String rate = intervalMs > 0
+                ? String.format("  %7.2f/s", callCount * 1000.0 / intervalMs)
+                : String.format("  in flight %d", getInFlight());
+            return String.format("%-45s %8d calls  %5d errors%s  p50 %s  p95 %s  p99 %s  max %s",
+                name, callCount, errorCount, rate,
+                formatMicros(Math.min(LatencyHistogram.percentile(counts, 50), maxMicros)),
+                formatMicros(Math.min(LatencyHistogram.percentile(counts, 95), maxMicros)),
+                formatMicros(Math.min(LatencyHistogram.percentile(counts, 99), maxMicros)),
+                formatMicros(maxMicros));
+        }
+
+        private static String formatMicros(long micros) {
+            return micros < 1000 ? micros + "us" : String.format("%.1fms", micros / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package util;
+
+import org.hibernate.c3p0.internal.C3P0ConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The c3p0 connection pool, with every connection it hands out wrapped by
+ * SqlStatementMonitor so that the statements run on it are timed. Set as
+ * hibernate.connection.provider_class in hibernate.cfg.xml; the
+ * hibernate.c3p0.* settings apply as before.
+ */
+public class MonitoredConnectionProvider extends C3P0ConnectionProvider {
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return SqlStatementMonitor.getInstance().wrap(super.getConnection());
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        super.closeConnection(SqlStatementMonitor.getInstance().unwrap(connection));
+    }
+}
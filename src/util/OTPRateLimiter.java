@@ -0,0 +1,258 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory sliding-window rate limiter for OTP emails, keyed by email and
+ * OTP type. Enforces OTPUtil.MAX_OTP_PER_HOUR and
+ * OTPUtil.MIN_RESEND_INTERVAL_MINUTES without querying the otps table.
+ *
+ * Each key keeps the send times of the last hour. Keys are spread over a
+ * fixed set of lock stripes, so checks for different emails rarely contend.
+ * The windows are rebuilt from the database once at startup; they are not
+ * shared between server instances.
+ */
+public class OTPRateLimiter {
+
+    private static final long WINDOW_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long MIN_INTERVAL_MS = TimeUnit.MINUTES.toMillis(OTPUtil.MIN_RESEND_INTERVAL_MINUTES);
+    private static final int STRIPES = 64;
+    private static final long SWEEP_INTERVAL_MINUTES = 10;
+
+    private static OTPRateLimiter instance;
+
+    private final Object[] locks = new Object[STRIPES];
+    private final Map<String, Deque<Long>> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+    private boolean initialized;
+
+    // Statistics
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+
+    private OTPRateLimiter() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "otp-rate-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep,
+            SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Gets the singleton instance of OTPRateLimiter
+     *
+     * @return The OTPRateLimiter instance
+     */
+    public static synchronized OTPRateLimiter getInstance() {
+        if (instance == null) {
+            instance = new OTPRateLimiter();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the send times of the last hour, once per server run
+     *
+     * @param loader Returns rows of [email, otpType, createdAt] for OTPs created
+     *               since getWindowStart()
+     */
+    public synchronized void initialize(Supplier<List<Object[]>> loader) {
+        if (initialized) {
+            return;
+        }
+        List<Object[]> rows = loader.get();
+        if (rows == null) {
+            // Not marked as initialized, so the next service start retries
+            LogUtil.warn("OTP rate limiter started without history");
+            return;
+        }
+        for (Object[] row : rows) {
+            record((String) row[0], (String) row[1], ((Date) row[2]).getTime());
+        }
+        initialized = true;
+        LogUtil.info("OTP rate limiter loaded " + rows.size() + " OTPs from the last hour");
+    }
+
+    /**
+     * Gets the start of the current window, for loading the history
+     *
+     * @return One hour ago
+     */
+    public Date getWindowStart() {
+        return new Date(System.currentTimeMillis() - WINDOW_MS);
+    }
+
+    /**
+     * Checks the limits and, if they allow it, records a send now.
+     * Check and record are atomic, so two concurrent requests cannot both
+     * take the last slot.
+     *
+     * @param email The normalized email address
+     * @param otpType The OTP type
+     * @return true if the OTP may be sent, false if rate limited
+     */
+    public boolean tryAcquire(String email, String otpType) {
+        String key = key(email, otpType);
+        long now = System.currentTimeMillis();
+        synchronized (lockFor(key)) {
+            Deque<Long> window = windows.computeIfAbsent(key, k -> new ArrayDeque<>());
+            prune(window, now);
+            if (isLimited(window, now)) {
+                limited.incrementAndGet();
+                return false;
+            }
+            window.addLast(now);
+        }
+        allowed.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gives back a send recorded by tryAcquire, e.g. when the OTP could not be saved
+     *
+     * @param email The normalized email address
+     * @param otpType The OTP type
+     */
+    public void release(String email, String otpType) {
+        String key = key(email, otpType);
+        synchronized (lockFor(key)) {
+            Deque<Long> window = windows.get(key);
+            if (window != null) {
+                window.pollLast();
+            }
+        }
+    }
+
+    /**
+     * Checks the limits without recording anything
+     *
+     * @param email The normalized email address
+     * @param otpType The OTP type
+     * @return true if another OTP would be refused now
+     */
+    public boolean isRateLimited(String email, String otpType) {
+        String key = key(email, otpType);
+        long now = System.currentTimeMillis();
+        synchronized (lockFor(key)) {
+            Deque<Long> window = windows.get(key);
+            if (window == null) {
+                return false;
+            }
+            prune(window, now);
+            return isLimited(window, now);
+        }
+    }
+
+    /**
+     * Gets the number of minutes until the minimum resend interval has passed
+     *
+     * @param email The normalized email address
+     * @param otpType The OTP type
+     * @return Minutes to wait, 0 if a resend is allowed by the interval
+     */
+    public int getCooldownMinutes(String email, String otpType) {
+        String key = key(email, otpType);
+        long now = System.currentTimeMillis();
+        synchronized (lockFor(key)) {
+            Deque<Long> window = windows.get(key);
+            if (window == null || window.isEmpty()) {
+                return 0;
+            }
+            long remaining = window.peekLast() + MIN_INTERVAL_MS - now;
+            // Rounded up, so any remaining wait shows as at least one minute
+            return remaining <= 0 ? 0 : (int) ((remaining + 59999) / 60000);
+        }
+    }
+
+    /**
+     * Records a send at a given time, keeping the window in time order
+     */
+    private void record(String email, String otpType, long sentAt) {
+        String key = key(email, otpType);
+        synchronized (lockFor(key)) {
+            Deque<Long> window = windows.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (window.isEmpty() || window.peekLast() <= sentAt) {
+                window.addLast(sentAt);
+            } else {
+                // Out of order; rare, only while loading the history
+                Deque<Long> sorted = new ArrayDeque<>();
+                boolean added = false;
+                for (Long time : window) {
+                    if (!added && sentAt < time) {
+                        sorted.addLast(sentAt);
+                        added = true;
+                    }
+                    sorted.addLast(time);
+                }
+                window.clear();
+                window.addAll(sorted);
+            }
+        }
+    }
+
+    private static boolean isLimited(Deque<Long> window, long now) {
+        if (window.size() >= OTPUtil.MAX_OTP_PER_HOUR) {
+            return true;
+        }
+        Long last = window.peekLast();
+        return last != null && now - last < MIN_INTERVAL_MS;
+    }
+
+    private static void prune(Deque<Long> window, long now) {
+        while (!window.isEmpty() && window.peekFirst() <= now - WINDOW_MS) {
+            window.pollFirst();
+        }
+    }
+
+    /**
+     * Drops the windows of keys with no send in the last hour
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Deque<Long>>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Deque<Long>> entry = iterator.next();
+            synchronized (lockFor(entry.getKey())) {
+                prune(entry.getValue(), now);
+                if (entry.getValue().isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static String key(String email, String otpType) {
+        return otpType + ":" + email;
+    }
+
+    /**
+     * Gets a one-line summary of the limiter statistics
+     *
+     * @return Limiter statistics
+     */
+    public String getStatistics() {
+        return "Tracked keys: " + windows.size() +
+            ", Allowed: " + allowed.get() +
+            ", Limited: " + limited.get();
+    }
+}
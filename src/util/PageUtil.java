@@ -0,0 +1,38 @@
+package util;
+
+/**
+ * Utility class for paged and keyset-cursor list queries.
+ * Keeps the page size of every remote list call bounded so a single RMI reply
+ * never has to carry a whole table.
+ */
+public class PageUtil {
+
+    // Paging constants
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Normalizes a requested page size into the allowed range
+     *
+     * @param pageSize The requested page size
+     * @return The default size if not positive, capped at MAX_PAGE_SIZE
+     */
+    public static int normalizePageSize(int pageSize) {
+        if (pageSize <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Calculates the first row offset for a zero-based page number
+     *
+     * @param pageNumber The zero-based page number
+     * @param pageSize The (normalized) page size
+     * @return The offset of the first row of the page
+     */
+    public static int firstResult(int pageNumber, int pageSize) {
+        long offset = (long) pageNumber * pageSize;
+        return offset > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) offset;
+    }
+}
@@ -0,0 +1,237 @@
+package util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Password hashing with PBKDF2-HMAC-SHA256.
+ *
+ * Hashes are stored as "pbkdf2-sha256$iterations$hash", so every hash keeps
+ * the parameters it was made with and the iteration count can be raised
+ * without invalidating existing passwords. Hashes in the old format (a single
+ * SHA-256 over password and salt, see SecurityUtil) are still verified, and
+ * needsRehash tells the caller to replace them after a successful login.
+ *
+ * Hashing is deliberately slow, so it runs on a small dedicated pool rather
+ * than on the RMI thread that asked for it. The pool and its queue are
+ * bounded: when logins pile up, extra requests are refused instead of taking
+ * every CPU away from other RMI calls.
+ *
+ * Configured with the system properties password.pbkdf2.iterations (default
+ * 310000), password.hash.threads (default: half the processors, at least 1),
+ * password.hash.queue (default 64) and password.hash.timeoutMs (default 10000).
+ */
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int KEY_LENGTH_BITS = 256;
+
+    private static final int ITERATIONS = Integer.getInteger("password.pbkdf2.iterations", 310000);
+    private static final int THREADS = Integer.getInteger("password.hash.threads",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_CAPACITY = Integer.getInteger("password.hash.queue", 64);
+    private static final long TIMEOUT_MS = Long.getLong("password.hash.timeoutMs", 10000L);
+
+    private static PasswordHasher instance;
+
+    private final ThreadPoolExecutor executor;
+
+    // Statistics
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong legacyVerifications = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalHashMs = new AtomicLong();
+
+    private PasswordHasher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread thread = new Thread(r, "password-hasher-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        LogUtil.info("Password hasher started with " + THREADS + " threads, " + ITERATIONS + " iterations");
+    }
+
+    /**
+     * Gets the singleton instance of PasswordHasher
+     *
+     * @return The PasswordHasher instance
+     */
+    public static synchronized PasswordHasher getInstance() {
+        if (instance == null) {
+            instance = new PasswordHasher();
+        }
+        return instance;
+    }
+
+    /**
+     * Hashes a password with the current parameters
+     *
+     * @param password The plain text password
+     * @param salt The Base64 encoded salt (see SecurityUtil.generateSaltString)
+     * @return The encoded hash
+     * @throws IllegalStateException If the hasher is overloaded or hashing failed
+     */
+    public String hash(String password, String salt) {
+        return run(() -> encode(ITERATIONS, pbkdf2(password, salt, ITERATIONS)));
+    }
+
+    /**
+     * Verifies a password against a stored hash in either format
+     *
+     * @param password The plain text password
+     * @param storedHash The stored hash
+     * @param salt The stored salt
+     * @return true if the password matches
+     * @throws IllegalStateException If the hasher is overloaded or hashing failed
+     */
+    public boolean verify(String password, String storedHash, String salt) {
+        if (storedHash == null || salt == null) {
+            return false;
+        }
+        verifications.incrementAndGet();
+        if (!storedHash.startsWith(PREFIX + "$")) {
+            // Legacy SHA-256 hash; cheap, so verified on the calling thread
+            legacyVerifications.incrementAndGet();
+            String computed = SecurityUtil.hashPasswordString(password, salt);
+            return computed != null && MessageDigest.isEqual(
+                computed.getBytes(StandardCharsets.UTF_8), storedHash.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 3) {
+            LogUtil.warn("Malformed password hash");
+            return false;
+        }
+        int iterations = Integer.parseInt(parts[1]);
+        byte[] expected = Base64.getDecoder().decode(parts[2]);
+        return run(() -> MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations)));
+    }
+
+    /**
+     * Checks whether a stored hash should be replaced, because it is in the
+     * legacy format or was made with a different iteration count
+     *
+     * @param storedHash The stored hash
+     * @return true if the password should be hashed again
+     */
+    public boolean needsRehash(String storedHash) {
+        return storedHash == null || !storedHash.startsWith(PREFIX + "$" + ITERATIONS + "$");
+    }
+
+    /**
+     * Finds the iteration count whose hash takes about the given time on this
+     * machine, for choosing password.pbkdf2.iterations
+     *
+     * @param targetMs The wanted time per hash in milliseconds
+     * @return The suggested iteration count
+     */
+    public int calibrate(long targetMs) {
+        String salt = SecurityUtil.generateSaltString();
+        int iterations = 10000;
+        // Warm up the JIT before measuring
+        for (int i = 0; i < 3; i++) {
+            derive("calibration", salt, iterations);
+        }
+        long elapsed;
+        do {
+            iterations *= 2;
+            long start = System.nanoTime();
+            derive("calibration", salt, iterations);
+            elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } while (elapsed < targetMs / 4 && iterations < Integer.MAX_VALUE / 4);
+        long suggested = elapsed == 0 ? iterations : iterations * targetMs / elapsed;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1000, suggested / 1000 * 1000));
+    }
+
+    /**
+     * Runs a hashing task on the pool and waits for its result
+     */
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new IllegalStateException("Password hasher is overloaded, try again later");
+        }
+        try {
+            return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.incrementAndGet();
+            throw new IllegalStateException("Password hashing timed out after " + TIMEOUT_MS + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private byte[] pbkdf2(String password, String salt, int iterations) {
+        long start = System.currentTimeMillis();
+        try {
+            return derive(password, salt, iterations);
+        } finally {
+            hashes.incrementAndGet();
+            totalHashMs.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    private static byte[] derive(String password, String salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), Base64.getDecoder().decode(salt),
+            iterations, KEY_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (Exception e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(int iterations, byte[] hash) {
+        return PREFIX + "$" + iterations + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    /**
+     * Stops the hashing pool
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets a one-line summary of the hasher statistics
+     *
+     * @return Hasher statistics
+     */
+    public String getStatistics() {
+        long count = hashes.get();
+        return "Iterations: " + ITERATIONS +
+            ", Threads: " + THREADS +
+            ", Active: " + executor.getActiveCount() +
+            ", Queued: " + executor.getQueue().size() + "/" + QUEUE_CAPACITY +
+            ", Verifications: " + verifications.get() +
+            ", Legacy: " + legacyVerifications.get() +
+            ", Rejected: " + rejected.get() +
+            ", Avg hash: " + (count == 0 ? 0 : totalHashMs.get() / count) + " ms";
+    }
+}
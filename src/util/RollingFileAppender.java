@@ -0,0 +1,111 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes log events to a file that is rolled over when it reaches the
+ * maximum size: server.log becomes server.log.1, server.log.1 becomes
+ * server.log.2 and so on, keeping at most the configured number of old
+ * files. Output is buffered until flush().
+ */
+public class RollingFileAppender implements LogAppender {
+
+    private final File file;
+    private final long maxFileBytes;
+    private final int maxBackups;
+    private Writer writer;
+    private long fileBytes;
+    private boolean failed;
+
+    /**
+     * Creates the appender; the file is opened on the first event
+     *
+     * @param path The log file
+     * @param maxFileBytes Size at which the file is rolled over
+     * @param maxBackups Number of rolled over files to keep
+     */
+    public RollingFileAppender(String path, long maxFileBytes, int maxBackups) {
+        this.file = new File(path);
+        this.maxFileBytes = maxFileBytes;
+        this.maxBackups = Math.max(0, maxBackups);
+    }
+
+    @Override
+    public synchronized void append(LogEvent event) {
+        if (failed) {
+            return;
+        }
+        String line = event.format(true) + System.lineSeparator();
+        try {
+            if (writer == null) {
+                open();
+            } else if (fileBytes + line.length() > maxFileBytes) {
+                roll();
+            }
+            writer.write(line);
+            fileBytes += line.length();
+        } catch (IOException e) {
+            // Keep logging to the other appenders rather than failing every call
+            failed = true;
+            System.err.println("Log file " + file + " disabled: " + e.getMessage());
+        }
+    }
+
+    private void open() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        fileBytes = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            File older = new File(file.getPath() + "." + i);
+            if (older.exists()) {
+                File target = new File(file.getPath() + "." + (i + 1));
+                target.delete();
+                older.renameTo(target);
+            }
+        }
+        File first = new File(file.getPath() + ".1");
+        first.delete();
+        if (maxBackups == 0 || !file.renameTo(first)) {
+            file.delete();
+        }
+        open();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Failed to flush log file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close log file " + file + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
@@ -5,7 +5,9 @@ import java.security.SecureRandom;
 import java.util.Base64;
 
 /**
- * Security utility for password hashing and verification
+ * Security utility for password hashing and verification.
+ * The single SHA-256 hash here is the legacy format; new hashes are made by
+ * PasswordHasher, which still verifies this format and upgrades it on login.
  */
 public class SecurityUtil {
     
@@ -30,7 +32,7 @@ public class SecurityUtil {
     }
     
     /**
-     * Hashes a password with salt
+     * Hashes a password with salt (legacy format)
      * 
      * @param password The plain text password
      * @param salt The salt string
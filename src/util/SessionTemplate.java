@@ -0,0 +1,253 @@
+package util;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session-per-request template shared by all DAOs.
+ * Every Hibernate session is opened and closed here, so a session (and the
+ * pooled connection behind it) is always returned to the pool, and every
+ * failed transaction is rolled back, whatever the callback does.
+ *
+ * Also keeps leak-detection counters: sessions opened/closed, currently open,
+ * peak open, commits, rollbacks and sessions held longer than the threshold
+ * set with the system property session.longHeldMs (default 5000).
+ */
+public class SessionTemplate {
+
+    private static final long LONG_HELD_MS = Long.getLong("session.longHeldMs", 5000L);
+
+    // Leak-detection counters
+    private static final AtomicLong sessionsOpened = new AtomicLong();
+    private static final AtomicLong sessionsClosed = new AtomicLong();
+    private static final AtomicLong peakOpen = new AtomicLong();
+    private static final AtomicLong commits = new AtomicLong();
+    private static final AtomicLong rollbacks = new AtomicLong();
+    private static final AtomicLong longHeld = new AtomicLong();
+    private static final Map<Session, OpenSession> openSessions = new ConcurrentHashMap<>();
+
+    /**
+     * Work to run with an open session
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface SessionCallback<T> {
+        T doInSession(Session session) throws Exception;
+    }
+
+    /**
+     * JDBC work to run on the connection of an open session
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface ConnectionCallback<T> {
+        T doInConnection(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs a callback in a new session and always closes the session afterwards
+     *
+     * @param callback The work to run
+     * @return The callback result
+     * @throws Exception Any exception thrown by the callback
+     */
+    public static <T> T executeInSession(SessionCallback<T> callback) throws Exception {
+        Session session = openSession();
+        try {
+            return callback.doInSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * Runs a callback in a new session and transaction. The transaction is
+     * committed if the callback returns normally and rolled back otherwise;
+     * the session is always closed.
+     *
+     * @param callback The work to run
+     * @return The callback result
+     * @throws Exception Any exception thrown by the callback or the commit
+     */
+    public static <T> T executeInTransaction(SessionCallback<T> callback) throws Exception {
+        Session session = openSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            T result = callback.doInSession(session);
+            transaction.commit();
+            commits.incrementAndGet();
+            return result;
+        } catch (Exception e) {
+            rollback(transaction);
+            throw e;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * Runs JDBC work on a pooled connection inside a new transaction.
+     * Same commit/rollback/close guarantees as executeInTransaction.
+     *
+     * @param callback The JDBC work to run
+     * @return The callback result
+     * @throws Exception Any exception thrown by the callback or the commit
+     */
+    public static <T> T executeJdbcInTransaction(ConnectionCallback<T> callback) throws Exception {
+        return executeInTransaction(session -> doWork(session, callback));
+    }
+
+    /**
+     * Runs JDBC work on a pooled connection without a transaction
+     *
+     * @param callback The JDBC work to run
+     * @return The callback result
+     * @throws Exception Any exception thrown by the callback
+     */
+    public static <T> T executeJdbc(ConnectionCallback<T> callback) throws Exception {
+        return executeInSession(session -> doWork(session, callback));
+    }
+
+    /**
+     * Runs JDBC work on the connection of an existing session
+     *
+     * @param session The open session
+     * @param callback The JDBC work to run
+     * @return The callback result
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T doWork(Session session, ConnectionCallback<T> callback) {
+        Object[] result = new Object[1];
+        session.doWork(connection -> result[0] = callback.doInConnection(connection));
+        return (T) result[0];
+    }
+
+    /**
+     * Opens a tracked session for work that outlives a single call, such as a
+     * streaming cursor. Must be released with closeSession.
+     *
+     * @return The new session
+     */
+    public static Session openSession() {
+        Session session = HibernateUtil.getSessionFactory().openSession();
+        sessionsOpened.incrementAndGet();
+        openSessions.put(session, new OpenSession(Thread.currentThread().getName()));
+        long open = openSessions.size();
+        long peak;
+        while (open > (peak = peakOpen.get()) && !peakOpen.compareAndSet(peak, open)) {
+            // Retry until the peak is updated
+        }
+        return session;
+    }
+
+    /**
+     * Closes a tracked session, ignoring sessions that are already closed
+     *
+     * @param session The session to close, may be null
+     */
+    public static void closeSession(Session session) {
+        if (session == null) {
+            return;
+        }
+        OpenSession info = openSessions.remove(session);
+        try {
+            if (session.isOpen()) {
+                session.close();
+            }
+        } catch (Exception e) {
+            LogUtil.warn("Error closing Hibernate session", e);
+        }
+        if (info != null) {
+            sessionsClosed.incrementAndGet();
+            long heldMs = System.currentTimeMillis() - info.openedAt;
+            if (heldMs > LONG_HELD_MS) {
+                longHeld.incrementAndGet();
+                LogUtil.warn("Hibernate session held for " + heldMs + " ms by thread " + info.threadName);
+            }
+        }
+    }
+
+    /**
+     * Rolls back a transaction if it is still active, logging rather than
+     * throwing so the original failure is not masked
+     *
+     * @param transaction The transaction, may be null
+     */
+    private static void rollback(Transaction transaction) {
+        if (transaction == null) {
+            return;
+        }
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+                rollbacks.incrementAndGet();
+            }
+        } catch (Exception e) {
+            LogUtil.warn("Error rolling back transaction", e);
+        }
+    }
+
+    /**
+     * Gets the number of sessions currently open
+     *
+     * @return Open session count
+     */
+    public static int getOpenSessionCount() {
+        return openSessions.size();
+    }
+
+    /**
+     * Gets descriptions of sessions open longer than the long-held threshold
+     *
+     * @return List of "thread (age ms)" descriptions
+     */
+    public static List<String> getLongHeldSessions() {
+        List<String> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (OpenSession info : openSessions.values()) {
+            long age = now - info.openedAt;
+            if (age > LONG_HELD_MS) {
+                result.add(info.threadName + " (" + age + " ms)");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets a one-line summary of the session counters
+     *
+     * @return Session statistics
+     */
+    public static String getStatistics() {
+        return "Opened: " + sessionsOpened.get() +
+            ", Closed: " + sessionsClosed.get() +
+            ", Open: " + openSessions.size() +
+            ", Peak: " + peakOpen.get() +
+            ", Commits: " + commits.get() +
+            ", Rollbacks: " + rollbacks.get() +
+            ", Long-held: " + longHeld.get();
+    }
+
+    /**
+     * Book-keeping for an open session
+     */
+    private static class OpenSession {
+        private final long openedAt = System.currentTimeMillis();
+        private final String threadName;
+
+        private OpenSession(String threadName) {
+            this.threadName = threadName;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package util;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small pool of connected, authenticated SMTP transports.
+ * The static Transport.send opens a connection, runs EHLO/STARTTLS/AUTH and
+ * closes it again for every message; the pool keeps up to maxSize
+ * connections open and reuses them. A connection that was dropped by the
+ * server is reconnected the next time it is borrowed, and a send that fails
+ * because the connection went away is retried once on a fresh connection.
+ * If that reconnect fails too, a batch stops there and the connection is
+ * discarded instead of being used for the remaining messages.
+ */
+public class SmtpTransportPool {
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+
+    private final BlockingQueue<Transport> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean closed;
+
+    // Statistics
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesFailed = new AtomicLong();
+
+    /**
+     * Creates an empty pool; connections are opened on first use
+     *
+     * @param session The mail session
+     * @param host The SMTP host
+     * @param port The SMTP port
+     * @param username The SMTP user
+     * @param password The SMTP password
+     * @param maxSize Maximum number of open connections
+     * @param borrowTimeoutMs How long to wait for a free connection
+     */
+    public SmtpTransportPool(Session session, String host, int port, String username, String password,
+                             int maxSize, long borrowTimeoutMs) {
+        this.session = session;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    /**
+     * Sends a single message on a pooled connection
+     *
+     * @param message The message to send
+     * @throws MessagingException If the message could not be sent
+     */
+    public void send(Message message) throws MessagingException {
+        if (sendAll(Collections.singletonList(message), true) != 1) {
+            throw new MessagingException("Message was not sent");
+        }
+    }
+
+    /**
+     * Sends messages one after another on a single pooled connection.
+     * A message that is rejected (e.g. an invalid recipient) is logged and
+     * skipped; the rest of the batch is still sent. If the connection is lost
+     * and cannot be reopened, the batch stops and the rest is not sent.
+     *
+     * @param messages The messages to send
+     * @return Number of messages sent
+     * @throws MessagingException If no connection could be obtained
+     */
+    public int sendBatch(List<? extends Message> messages) throws MessagingException {
+        return sendAll(messages, false);
+    }
+
+    private int sendAll(List<? extends Message> messages, boolean rethrow) throws MessagingException {
+        Transport transport = borrow();
+        boolean broken = false;
+        int sentCount = 0;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                try {
+                    sendOne(transport, message);
+                    sentCount++;
+                } catch (ConnectionLostException e) {
+                    broken = true;
+                    messagesFailed.addAndGet(messages.size() - i);
+                    if (rethrow) {
+                        throw e;
+                    }
+                    LogUtil.error("SMTP connection lost, batch stopped with " + (messages.size() - i) +
+                        " of " + messages.size() + " messages not sent", e);
+                    return sentCount;
+                } catch (MessagingException e) {
+                    messagesFailed.incrementAndGet();
+                    if (rethrow) {
+                        throw e;
+                    }
+                    LogUtil.error("Failed to send message in batch: " + message.getSubject(), e);
+                }
+            }
+            return sentCount;
+        } catch (MessagingException e) {
+            // A rejected message leaves the connection usable
+            broken = !(e instanceof SendFailedException);
+            throw e;
+        } catch (RuntimeException e) {
+            broken = true;
+            throw e;
+        } finally {
+            release(transport, broken);
+        }
+    }
+
+    /**
+     * Sends one message, reconnecting and retrying once if the connection was lost
+     */
+    private void sendOne(Transport transport, Message message) throws MessagingException {
+        message.saveChanges();
+        try {
+            transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            // The server rejected this message; the connection is still usable
+            throw e;
+        } catch (MessagingException e) {
+            if (transport.isConnected()) {
+                throw e;
+            }
+            LogUtil.warn("SMTP connection lost, reconnecting: " + e.getMessage());
+            reconnects.incrementAndGet();
+            try {
+                connect(transport);
+            } catch (MessagingException | RuntimeException reconnectFailure) {
+                throw new ConnectionLostException("SMTP reconnect failed", reconnectFailure);
+            }
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException retryFailure) {
+                if (retryFailure instanceof SendFailedException || transport.isConnected()) {
+                    throw retryFailure;
+                }
+                throw new ConnectionLostException("SMTP connection lost again after reconnecting", retryFailure);
+            }
+        }
+        messagesSent.incrementAndGet();
+    }
+
+    /**
+     * Takes an idle connection, opening a new one while below the maximum
+     */
+    private Transport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP transport pool is closed");
+        }
+        Transport transport = idle.poll();
+        if (transport == null) {
+            int count = created.get();
+            if (count < maxSize && created.compareAndSet(count, count + 1)) {
+                try {
+                    transport = session.getTransport("smtp");
+                    connect(transport);
+                    return transport;
+                } catch (MessagingException | RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+            try {
+                transport = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Interrupted waiting for an SMTP connection");
+            }
+            if (transport == null) {
+                throw new MessagingException("No SMTP connection available after " + borrowTimeoutMs + " ms");
+            }
+        }
+        if (!transport.isConnected()) {
+            // Dropped by the server while idle
+            reconnects.incrementAndGet();
+            try {
+                connect(transport);
+            } catch (MessagingException | RuntimeException e) {
+                created.decrementAndGet();
+                throw e;
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it if it is broken or the pool is closed
+     */
+    private void release(Transport transport, boolean broken) {
+        if (broken || closed) {
+            closeQuietly(transport);
+            created.decrementAndGet();
+        } else {
+            idle.offer(transport);
+        }
+    }
+
+    private void connect(Transport transport) throws MessagingException {
+        closeQuietly(transport);
+        transport.connect(host, port, username, password);
+        connects.incrementAndGet();
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            if (transport.isConnected()) {
+                transport.close();
+            }
+        } catch (MessagingException e) {
+            LogUtil.debug("Error closing SMTP connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes all idle connections; connections in use are closed when returned
+     */
+    public void close() {
+        closed = true;
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            closeQuietly(transport);
+            created.decrementAndGet();
+        }
+    }
+
+    /**
+     * The connection was lost and could not be reopened, so it must not be
+     * used for any further message
+     */
+    private static class ConnectionLostException extends MessagingException {
+        private ConnectionLostException(String message, Exception cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Gets a one-line summary of the pool statistics
+     *
+     * @return Pool statistics
+     */
+    public String getStatistics() {
+        return "Connections: " + created.get() + "/" + maxSize +
+            ", Idle: " + idle.size() +
+            ", Connects: " + connects.get() +
+            ", Reconnects: " + reconnects.get() +
+            ", Sent: " + messagesSent.get() +
+            ", Failed: " + messagesFailed.get();
+    }
+}
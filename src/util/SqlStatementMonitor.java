@@ -0,0 +1,381 @@
+package util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Times every SQL statement the server executes, Hibernate's as well as the
+ * DAOs' own JDBC, by wrapping the pooled connections (see
+ * MonitoredConnectionProvider). Statements are grouped by shape: the SQL with
+ * literals and IN lists collapsed. For each shape it keeps the count, total
+ * and maximum time and a latency histogram; it also keeps the slowest
+ * executions seen.
+ *
+ * Statements slower than the threshold are logged, at most once per shape
+ * per sampling interval; the others are counted as suppressed.
+ *
+ * Configured with the system properties sql.slowMs (default 200),
+ * sql.slowLogIntervalSeconds (default 10), sql.topN (default 10) and
+ * sql.maxShapes (default 500).
+ */
+public class SqlStatementMonitor {
+
+    private static final long SLOW_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong("sql.slowMs", 200));
+    private static final long SLOW_LOG_INTERVAL_MS = TimeUnit.SECONDS.toMillis(
+        Long.getLong("sql.slowLogIntervalSeconds", 10));
+    private static final int TOP_N = Math.max(1, Integer.getInteger("sql.topN", 10));
+    private static final int MAX_SHAPES = Integer.getInteger("sql.maxShapes", 500);
+    private static final String OTHER_SHAPE = "(other statements)";
+
+    // Upper bounds of the histogram buckets in milliseconds; the last bucket is unbounded
+    private static final long[] BUCKET_BOUNDS_MS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static SqlStatementMonitor instance;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final PriorityQueue<SlowStatement> slowest =
+        new PriorityQueue<>(Comparator.comparingLong((SlowStatement s) -> s.nanos));
+    private volatile long slowestCutoffNanos;
+
+    // Statistics
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slowStatements = new LongAdder();
+    private final LongAdder suppressedLogs = new LongAdder();
+
+    private SqlStatementMonitor() {
+    }
+
+    /**
+     * Gets the singleton instance
+     *
+     * @return The statement monitor
+     */
+    public static synchronized SqlStatementMonitor getInstance() {
+        if (instance == null) {
+            instance = new SqlStatementMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * Wraps a connection so the statements created from it are timed
+     *
+     * @param connection The pooled connection
+     * @return The monitored connection
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(SqlStatementMonitor.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Gets the pooled connection behind a monitored connection
+     *
+     * @param connection A connection returned by wrap, or any other connection
+     * @return The pooled connection
+     */
+    public Connection unwrap(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(connection);
+            if (handler instanceof ConnectionHandler) {
+                return ((ConnectionHandler) handler).connection;
+            }
+        }
+        return connection;
+    }
+
+    private void record(String sql, long nanos, boolean failed) {
+        statements.increment();
+        if (failed) {
+            failures.increment();
+        }
+        ShapeStats stats = statsFor(sql);
+        stats.record(nanos, failed);
+
+        if (nanos >= SLOW_THRESHOLD_NANOS) {
+            slowStatements.increment();
+            logSlow(stats, sql, nanos);
+        }
+        if (nanos > slowestCutoffNanos) {
+            addSlowest(sql, nanos);
+        }
+    }
+
+    private ShapeStats statsFor(String sql) {
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (shapeCache.size() < MAX_SHAPES * 4) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            String key = shapes.size() < MAX_SHAPES ? shape : OTHER_SHAPE;
+            stats = shapes.computeIfAbsent(key, ShapeStats::new);
+        }
+        return stats;
+    }
+
+    private static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    private void logSlow(ShapeStats stats, String sql, long nanos) {
+        long now = System.currentTimeMillis();
+        long last = stats.lastSlowLog.get();
+        if (now - last < SLOW_LOG_INTERVAL_MS || !stats.lastSlowLog.compareAndSet(last, now)) {
+            suppressedLogs.increment();
+            return;
+        }
+        LogUtil.warn("Slow SQL (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms): " + sql);
+    }
+
+    private synchronized void addSlowest(String sql, long nanos) {
+        if (slowest.size() >= TOP_N) {
+            if (nanos <= slowest.peek().nanos) {
+                return;
+            }
+            slowest.poll();
+        }
+        slowest.add(new SlowStatement(sql, nanos, Thread.currentThread().getName()));
+        if (slowest.size() >= TOP_N) {
+            slowestCutoffNanos = slowest.peek().nanos;
+        }
+    }
+
+    /**
+     * Gets the statement shapes with the most total time
+     *
+     * @param limit Maximum number of shapes
+     * @return One line per shape: count, average, maximum, histogram and the SQL
+     */
+    public List<String> getShapeStatistics(int limit) {
+        List<ShapeStats> sorted = new ArrayList<>(shapes.values());
+        sorted.sort(Comparator.comparingLong((ShapeStats s) -> s.totalNanos.sum()).reversed());
+        List<String> lines = new ArrayList<>();
+        for (ShapeStats stats : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            lines.add(stats.describe());
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the slowest statements executed, slowest first
+     *
+     * @return One line per statement
+     */
+    public synchronized List<String> getSlowestStatements() {
+        List<SlowStatement> sorted = new ArrayList<>(slowest);
+        sorted.sort(Comparator.comparingLong((SlowStatement s) -> s.nanos).reversed());
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        List<String> lines = new ArrayList<>();
+        for (SlowStatement statement : sorted) {
+            lines.add(TimeUnit.NANOSECONDS.toMillis(statement.nanos) + " ms at " +
+                format.format(new Date(statement.at)) + " [" + statement.thread + "] " + statement.sql);
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the labels of the histogram buckets, in the order getShapeStatistics prints them
+     *
+     * @return Bucket labels
+     */
+    public static String getHistogramLegend() {
+        List<String> labels = new ArrayList<>();
+        for (long bound : BUCKET_BOUNDS_MS) {
+            labels.add("<" + bound + "ms");
+        }
+        labels.add(">=" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms");
+        return String.join("/", labels);
+    }
+
+    /**
+     * Clears the statement statistics
+     */
+    public synchronized void reset() {
+        shapes.clear();
+        shapeCache.clear();
+        slowest.clear();
+        slowestCutoffNanos = 0;
+        statements.reset();
+        failures.reset();
+        slowStatements.reset();
+        suppressedLogs.reset();
+    }
+
+    /**
+     * Gets a one-line summary of the statement statistics
+     *
+     * @return Statement statistics
+     */
+    public String getStatistics() {
+        return "Statements: " + statements.sum() +
+            ", Failed: " + failures.sum() +
+            ", Slow (>= " + TimeUnit.NANOSECONDS.toMillis(SLOW_THRESHOLD_NANOS) + " ms): " + slowStatements.sum() +
+            ", Slow logs suppressed: " + suppressedLogs.sum() +
+            ", Shapes: " + shapes.size();
+    }
+
+    /**
+     * Counters of one statement shape
+     */
+    private static class ShapeStats {
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+        private final AtomicLong lastSlowLog = new AtomicLong();
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos, boolean failedStatement) {
+            count.increment();
+            if (failedStatement) {
+                failed.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && millis >= BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        private String describe() {
+            long calls = count.sum();
+            List<String> histogram = new ArrayList<>();
+            for (LongAdder bucket : buckets) {
+                histogram.add(String.valueOf(bucket.sum()));
+            }
+            return String.format("%7d x  avg %6.1f ms  max %6d ms  failed %d  [%s]  %s",
+                calls, calls == 0 ? 0.0 : totalNanos.sum() / 1e6 / calls,
+                TimeUnit.NANOSECONDS.toMillis(maxNanos.get()), failed.sum(),
+                String.join("/", histogram), shape);
+        }
+    }
+
+    /**
+     * One of the slowest executions
+     */
+    private static class SlowStatement {
+        private final String sql;
+        private final long nanos;
+        private final long at = System.currentTimeMillis();
+        private final String thread;
+
+        private SlowStatement(String sql, long nanos, String thread) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Wraps the statements a connection creates
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            Object result = invokeTarget(connection, method, args);
+            String name = method.getName();
+            if (result instanceof Statement
+                    && (name.equals("createStatement") || name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return Proxy.newProxyInstance(SqlStatementMonitor.class.getClassLoader(),
+                    new Class<?>[] { method.getReturnType() }, new StatementHandler((Statement) result, sql));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Times the execute methods of a statement
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+
+        private StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(statement, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            if (sql == null) {
+                sql = "(statement batch)";
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invokeTarget(statement, method, args);
+                failed = false;
+                return result;
+            } finally {
+                record(sql, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of the entities through their writeObject/readObject methods,
+ * as RMI sends them to the clients.
+ */
+public class EntitySerializationTest {
+
+    @Test
+    public void customerGraphRoundTrip() throws Exception {
+        Supplier supplier = new Supplier("SUP-1", "Acme", "Jane Doe", "jane@acme.test");
+        Product keyboard = new Product(7, "P-7", "Keyboard", "USB keyboard",
+            new BigDecimal("25.50"), 40, "Peripherals", supplier);
+        Product mouse = new Product(8, "P-8", "Mouse", null, new BigDecimal("9.99"), 0, null, supplier);
+
+        Customer customer = new Customer(3, "C-3", "John", "Smith", "john@example.test",
+            "0788000000", "Kigali", LocalDate.of(2024, 2, 29));
+        Order order = new Order(11, "ORD-11", null, LocalDate.of(2024, 3, 1),
+            BigDecimal.ZERO, Order.STATUS_PROCESSING, "Card");
+        customer.addOrder(order);
+        order.addOrderItem(new OrderItem(21, null, keyboard, 2, keyboard.getPrice()));
+        order.addOrderItem(new OrderItem(22, null, mouse, 1, mouse.getPrice()));
+        order.addOrderItem(new OrderItem(23, null, keyboard, 1, keyboard.getPrice()));
+
+        Invoice invoice = new Invoice(31, "INV-31", null, LocalDate.of(2024, 3, 1),
+            LocalDate.of(2024, 3, 31), new BigDecimal("86.49"), Invoice.STATUS_DRAFT);
+        order.addInvoice(invoice);
+        invoice.addPayment(new Payment(41, "PAY-41", null, new BigDecimal("50.00"),
+            LocalDate.of(2024, 3, 5), "Cash"));
+
+        Customer copy = roundTrip(customer);
+
+        assertEquals(3, copy.getId());
+        assertEquals("C-3", copy.getCustomerId());
+        assertEquals("John", copy.getFirstName());
+        assertEquals("Smith", copy.getLastName());
+        assertEquals("john@example.test", copy.getEmail());
+        assertEquals("0788000000", copy.getPhone());
+        assertEquals("Kigali", copy.getAddress());
+        assertEquals(LocalDate.of(2024, 2, 29), copy.getRegistrationDate());
+        assertEquals(1, copy.getOrders().size());
+
+        Order orderCopy = copy.getOrders().get(0);
+        assertSame(copy, orderCopy.getCustomer());
+        assertEquals(11, orderCopy.getId());
+        assertEquals("ORD-11", orderCopy.getOrderId());
+        assertEquals(LocalDate.of(2024, 3, 1), orderCopy.getOrderDate());
+        assertEquals(new BigDecimal("86.49"), orderCopy.getTotalAmount());
+        assertEquals(Order.STATUS_PROCESSING, orderCopy.getStatus());
+        assertEquals("Card", orderCopy.getPaymentMethod());
+        assertEquals(3, orderCopy.getOrderItems().size());
+
+        OrderItem first = orderCopy.getOrderItems().get(0);
+        OrderItem second = orderCopy.getOrderItems().get(1);
+        OrderItem third = orderCopy.getOrderItems().get(2);
+        assertSame(orderCopy, first.getOrder());
+        assertSame(orderCopy, second.getOrder());
+        assertEquals(21, first.getId());
+        assertEquals(2, first.getQuantity());
+        assertEquals(new BigDecimal("25.50"), first.getUnitPrice());
+        // Shared references stay shared
+        assertSame(first.getProduct(), third.getProduct());
+        assertSame(first.getProduct().getSupplier(), second.getProduct().getSupplier());
+
+        Product keyboardCopy = first.getProduct();
+        assertEquals(7, keyboardCopy.getId());
+        assertEquals("P-7", keyboardCopy.getProductCode());
+        assertEquals("Keyboard", keyboardCopy.getName());
+        assertEquals("USB keyboard", keyboardCopy.getDescription());
+        assertEquals(40, keyboardCopy.getStockQuantity());
+        assertEquals("Peripherals", keyboardCopy.getCategory());
+        assertNull(second.getProduct().getDescription());
+        assertNull(second.getProduct().getCategory());
+
+        Invoice invoiceCopy = orderCopy.getInvoices().get(0);
+        assertSame(orderCopy, invoiceCopy.getOrder());
+        assertEquals("INV-31", invoiceCopy.getInvoiceNumber());
+        assertEquals(LocalDate.of(2024, 3, 1), invoiceCopy.getIssueDate());
+        assertEquals(LocalDate.of(2024, 3, 31), invoiceCopy.getDueDate());
+        assertEquals(new BigDecimal("86.49"), invoiceCopy.getAmount());
+        assertEquals(invoice.getStatus(), invoiceCopy.getStatus());
+
+        Payment paymentCopy = invoiceCopy.getPayments().get(0);
+        assertSame(invoiceCopy, paymentCopy.getInvoice());
+        assertEquals(41, paymentCopy.getId());
+        assertEquals("PAY-41", paymentCopy.getPaymentId());
+        assertEquals(new BigDecimal("50.00"), paymentCopy.getAmount());
+        assertEquals(LocalDate.of(2024, 3, 5), paymentCopy.getPaymentDate());
+        assertEquals("Cash", paymentCopy.getPaymentMethod());
+    }
+
+    @Test
+    public void nullAmountsAndDatesRoundTrip() throws Exception {
+        Order order = new Order(1, null, null, null, null, null, null);
+        Order orderCopy = roundTrip(order);
+        assertNull(orderCopy.getOrderId());
+        assertNull(orderCopy.getCustomer());
+        assertNull(orderCopy.getOrderDate());
+        assertNull(orderCopy.getTotalAmount());
+        assertNull(orderCopy.getStatus());
+        assertTrue(orderCopy.getOrderItems().isEmpty());
+
+        OrderItem itemCopy = roundTrip(new OrderItem(2, null, null, 0, null));
+        assertNull(itemCopy.getOrder());
+        assertNull(itemCopy.getProduct());
+        assertNull(itemCopy.getUnitPrice());
+
+        Invoice invoiceCopy = roundTrip(new Invoice(3, null, null, null, null, null, null));
+        assertNull(invoiceCopy.getIssueDate());
+        assertNull(invoiceCopy.getDueDate());
+        assertNull(invoiceCopy.getAmount());
+
+        Payment paymentCopy = roundTrip(new Payment(4, null, null, null, null, null));
+        assertNull(paymentCopy.getAmount());
+        assertNull(paymentCopy.getPaymentDate());
+
+        Product productCopy = roundTrip(new Product(5, null, null, null, null, 0, null, null));
+        assertNull(productCopy.getPrice());
+        assertNull(productCopy.getSupplier());
+
+        Customer customerCopy = roundTrip(new Customer(6, null, null, null, null, null, null, null));
+        assertNull(customerCopy.getRegistrationDate());
+        assertTrue(customerCopy.getOrders().isEmpty());
+    }
+
+    @Test
+    public void amountsKeepTheirScale() throws Exception {
+        String[] amounts = {
+            "0", "0.00", "10.50", "-3.10", "1E+3", "0.000001",
+            // Does not fit an unscaled long
+            "123456789012345678901234567890.12"
+        };
+        for (String amount : amounts) {
+            BigDecimal value = new BigDecimal(amount);
+            Product copy = roundTrip(new Product("P", "Product", value, 1));
+            // BigDecimal.equals compares the scale as well as the value
+            assertEquals(amount, value, copy.getPrice());
+            assertEquals(amount, value.scale(), copy.getPrice().scale());
+        }
+    }
+
+    @Test
+    public void datesAtTheEdgesRoundTrip() throws Exception {
+        LocalDate[] dates = { LocalDate.MIN, LocalDate.of(1970, 1, 1), LocalDate.MAX };
+        for (LocalDate date : dates) {
+            Payment copy = roundTrip(new Payment(1, "PAY", null, BigDecimal.ONE, date, "Cash"));
+            assertEquals(date, copy.getPaymentDate());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+}
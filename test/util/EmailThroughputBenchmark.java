@@ -0,0 +1,176 @@
+package util;
+
+import javax.mail.Authenticator;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures email throughput in messages per second against an in-process
+ * SmtpSink, once with a new connection per message (Transport.send) and once
+ * through SmtpTransportPool batches, the two paths EmailService can take.
+ *
+ * A test harness, not part of the server:
+ * java util.EmailThroughputBenchmark [messages] [senders] [replyDelayMs]
+ */
+public final class EmailThroughputBenchmark {
+
+    private static final int DEFAULT_MESSAGES = 500;
+    private static final int DEFAULT_SENDERS = 4;
+    private static final long DEFAULT_REPLY_DELAY_MS = 2;
+    private static final int BATCH_SIZE = 50;
+
+    private EmailThroughputBenchmark() {
+    }
+
+    /**
+     * Sends messages to a fresh sink and measures the throughput
+     *
+     * @param messageCount Number of messages to send
+     * @param senders Number of sending threads, also the pool size
+     * @param pooled Whether to send through SmtpTransportPool batches
+     * @param replyDelayMs Delay the sink adds to every reply
+     * @return The measurement
+     * @throws Exception If the sink could not be started or a sender failed
+     */
+    public static Result run(int messageCount, int senders, boolean pooled, long replyDelayMs) throws Exception {
+        SmtpSink sink = new SmtpSink(replyDelayMs);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, senders));
+        SmtpTransportPool pool = null;
+        try {
+            Session session = createSession(sink.getPort());
+            List<List<Message>> batches = createBatches(session, messageCount);
+            if (pooled) {
+                pool = new SmtpTransportPool(session, "127.0.0.1", sink.getPort(), "benchmark", "benchmark",
+                    senders, 30000);
+            }
+
+            AtomicInteger sent = new AtomicInteger();
+            SmtpTransportPool transportPool = pool;
+            long start = System.nanoTime();
+            List<Future<?>> results = new ArrayList<>();
+            for (List<Message> batch : batches) {
+                results.add(executor.submit(() -> {
+                    if (transportPool != null) {
+                        sent.addAndGet(transportPool.sendBatch(batch));
+                    } else {
+                        for (Message message : batch) {
+                            Transport.send(message);
+                            sent.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            return new Result(pooled, messageCount, sent.get(), sink.getMessagesReceived(),
+                sink.getConnectionsAccepted(), elapsedNanos);
+        } finally {
+            executor.shutdownNow();
+            if (pool != null) {
+                pool.close();
+            }
+            sink.close();
+        }
+    }
+
+    static Session createSession(int port) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", "127.0.0.1");
+        properties.put("mail.smtp.port", String.valueOf(port));
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.starttls.enable", "false");
+        return Session.getInstance(properties, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication("benchmark", "benchmark");
+            }
+        });
+    }
+
+    private static List<List<Message>> createBatches(Session session, int messageCount) throws MessagingException {
+        List<List<Message>> batches = new ArrayList<>();
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            Message message = new MimeMessage(session);
+            message.setFrom(new InternetAddress("benchmark@localhost"));
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse("user" + i + "@localhost"));
+            message.setSubject("Benchmark message " + i);
+            message.setText("Your verification code is: 123456");
+            batch.add(message);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Runs the unpooled and the pooled measurement and prints both
+     *
+     * @param args Optional: messages, senders, reply delay in ms
+     * @throws Exception If a measurement failed
+     */
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        int senders = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SENDERS;
+        long replyDelayMs = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_REPLY_DELAY_MS;
+        System.out.println(run(messages, senders, false, replyDelayMs));
+        System.out.println(run(messages, senders, true, replyDelayMs));
+        LogUtil.shutdown();
+    }
+
+    /**
+     * Outcome of one measurement
+     */
+    public static class Result {
+        private final boolean pooled;
+        private final int messages;
+        private final int sent;
+        private final long received;
+        private final long connections;
+        private final long elapsedNanos;
+
+        private Result(boolean pooled, int messages, int sent, long received, long connections, long elapsedNanos) {
+            this.pooled = pooled;
+            this.messages = messages;
+            this.sent = sent;
+            this.received = received;
+            this.connections = connections;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public double getMessagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : sent * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %d/%d sent, %d received, %d connections, %d ms, %.1f messages/s",
+                pooled ? "Pooled" : "Unpooled", sent, messages, received, connections,
+                elapsedNanos / 1000000, getMessagesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package util;
+
+import org.junit.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the stored hash format, that legacy SHA-256 hashes still verify and
+ * the rehash decision UserDao.authenticateUser makes after a login.
+ */
+public class PasswordHasherTest {
+
+    private final PasswordHasher hasher = PasswordHasher.getInstance();
+
+    @Test
+    public void hashRoundTrips() {
+        String salt = SecurityUtil.generateSaltString();
+        String hash = hasher.hash("correct horse", salt);
+
+        String[] parts = hash.split("\\$");
+        assertEquals(3, parts.length);
+        assertEquals("pbkdf2-sha256", parts[0]);
+        assertTrue(Integer.parseInt(parts[1]) > 0);
+        assertEquals(32, Base64.getDecoder().decode(parts[2]).length);
+
+        assertTrue(hasher.verify("correct horse", hash, salt));
+        assertFalse(hasher.verify("wrong horse", hash, salt));
+        assertFalse(hasher.verify("correct horse", hash, SecurityUtil.generateSaltString()));
+        assertFalse(hasher.needsRehash(hash));
+    }
+
+    @Test
+    public void saltsMakeHashesDiffer() {
+        String first = hasher.hash("same password", SecurityUtil.generateSaltString());
+        String second = hasher.hash("same password", SecurityUtil.generateSaltString());
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void hashUsesTheIterationCountItWasMadeWith() throws Exception {
+        String salt = SecurityUtil.generateSaltString();
+        String hash = "pbkdf2-sha256$1000$" + Base64.getEncoder().encodeToString(pbkdf2("secret", salt, 1000));
+
+        assertTrue(hasher.verify("secret", hash, salt));
+        assertFalse(hasher.verify("Secret", hash, salt));
+        // Made with another iteration count, so replaced after the next login
+        assertTrue(hasher.needsRehash(hash));
+    }
+
+    @Test
+    public void legacyHashesStillVerify() {
+        String salt = SecurityUtil.generateSaltString();
+        String legacyHash = SecurityUtil.hashPasswordString("old password", salt);
+
+        assertTrue(hasher.verify("old password", legacyHash, salt));
+        assertFalse(hasher.verify("new password", legacyHash, salt));
+        assertTrue(hasher.needsRehash(legacyHash));
+    }
+
+    @Test
+    public void rehashOnLoginUpgradesLegacyHashes() {
+        String oldSalt = SecurityUtil.generateSaltString();
+        String legacyHash = SecurityUtil.hashPasswordString("old password", oldSalt);
+
+        // What authenticateUser does after a successful login with a legacy hash
+        assertTrue(hasher.verify("old password", legacyHash, oldSalt));
+        assertTrue(hasher.needsRehash(legacyHash));
+        String newSalt = SecurityUtil.generateSaltString();
+        String upgraded = hasher.hash("old password", newSalt);
+
+        assertTrue(upgraded.startsWith("pbkdf2-sha256$"));
+        assertFalse(hasher.needsRehash(upgraded));
+        assertTrue(hasher.verify("old password", upgraded, newSalt));
+        assertFalse(hasher.verify("other password", upgraded, newSalt));
+    }
+
+    @Test
+    public void missingOrMalformedHashesDoNotVerify() {
+        String salt = SecurityUtil.generateSaltString();
+        assertFalse(hasher.verify("password", null, salt));
+        assertFalse(hasher.verify("password", "pbkdf2-sha256$1000$", null));
+        assertFalse(hasher.verify("password", "pbkdf2-sha256$1000", salt));
+        assertTrue(hasher.needsRehash(null));
+    }
+
+    private static byte[] pbkdf2(String password, String salt, int iterations) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), Base64.getDecoder().decode(salt), iterations, 256);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+}
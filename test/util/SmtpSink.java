@@ -0,0 +1,218 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal SMTP server on the loopback interface that accepts and discards
+ * every message, for measuring the email path without a real mail provider.
+ *
+ * It speaks just enough of the protocol for JavaMail: EHLO/HELO, AUTH PLAIN
+ * and LOGIN (any credentials), MAIL, RCPT, DATA, RSET, NOOP and QUIT. There
+ * is no STARTTLS, so clients must not require it. Every reply can be delayed
+ * to stand in for the round trip to a remote server, and the sink can shut
+ * down after a number of messages to simulate a server that goes away.
+ */
+public class SmtpSink {
+
+    private final long replyDelayMs;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private volatile boolean running = true;
+    private volatile long messageLimit = Long.MAX_VALUE;
+
+    // Statistics
+    private final AtomicLong connectionsAccepted = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    /**
+     * Starts a sink on a free loopback port
+     *
+     * @param replyDelayMs Delay before every reply, 0 for none
+     * @throws IOException If no port could be opened
+     */
+    public SmtpSink(long replyDelayMs) throws IOException {
+        this.replyDelayMs = Math.max(0, replyDelayMs);
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptConnections, "smtp-sink");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the port the sink listens on
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Makes the sink close its port and every connection once it has
+     * received the given number of messages
+     *
+     * @param messages Messages to accept before going away
+     */
+    public void closeAfter(long messages) {
+        messageLimit = messages;
+    }
+
+    /**
+     * Gets the number of messages received so far
+     *
+     * @return Message count
+     */
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    /**
+     * Gets the number of connections accepted so far
+     *
+     * @return Connection count
+     */
+    public long getConnectionsAccepted() {
+        return connectionsAccepted.get();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones
+     */
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LogUtil.debug("Error closing SMTP sink: " + e.getMessage());
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionsAccepted.incrementAndGet();
+                connections.add(socket);
+                Thread handler = new Thread(() -> handle(socket), "smtp-sink-" + threadNumber.incrementAndGet());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    LogUtil.warn("SMTP sink stopped accepting: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost SMTP sink ready");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                        break;
+                    case "AUTH":
+                        authenticate(line, in, out);
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Discard the message
+                        }
+                        long received = messagesReceived.incrementAndGet();
+                        reply(out, "250 2.0.0 Ok: queued");
+                        if (received >= messageLimit) {
+                            close();
+                            return;
+                        }
+                        break;
+                    case "QUIT":
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    case "HELO":
+                    case "MAIL":
+                    case "RCPT":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 2.0.0 Ok");
+                        break;
+                    default:
+                        reply(out, "502 5.5.2 Command not recognized");
+                }
+            }
+        } catch (SocketException e) {
+            // Closed by the client or by close()
+        } catch (IOException e) {
+            LogUtil.debug("SMTP sink connection failed: " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Accepts AUTH PLAIN, with or without an initial response, and AUTH LOGIN
+     */
+    private void authenticate(String line, BufferedReader in, OutputStream out) throws IOException {
+        String[] parts = line.trim().split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase() : "";
+        if ("LOGIN".equals(mechanism)) {
+            reply(out, "334 VXNlcm5hbWU6");
+            in.readLine();
+            reply(out, "334 UGFzc3dvcmQ6");
+            in.readLine();
+        } else if ("PLAIN".equals(mechanism)) {
+            if (parts.length < 3) {
+                reply(out, "334 ");
+                in.readLine();
+            }
+        } else {
+            reply(out, "504 5.5.4 Unrecognized authentication type");
+            return;
+        }
+        reply(out, "235 2.7.0 Authentication successful");
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException {
+        if (replyDelayMs > 0) {
+            try {
+                Thread.sleep(replyDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends through SmtpTransportPool to an in-process SmtpSink.
+ */
+public class SmtpTransportPoolTest {
+
+    private SmtpSink sink;
+    private Session session;
+    private SmtpTransportPool pool;
+
+    @Before
+    public void startSink() throws Exception {
+        sink = new SmtpSink(0);
+        session = EmailThroughputBenchmark.createSession(sink.getPort());
+        pool = new SmtpTransportPool(session, "127.0.0.1", sink.getPort(), "test", "test", 2, 5000);
+    }
+
+    @After
+    public void stopSink() {
+        pool.close();
+        sink.close();
+    }
+
+    @Test
+    public void batchesReuseOneConnection() throws Exception {
+        assertEquals(20, pool.sendBatch(messages(20)));
+        assertEquals(5, pool.sendBatch(messages(5)));
+        pool.send(messages(1).get(0));
+
+        assertEquals(26, sink.getMessagesReceived());
+        assertEquals(1, sink.getConnectionsAccepted());
+    }
+
+    @Test
+    public void batchStopsWhenTheServerGoesAway() throws Exception {
+        sink.closeAfter(3);
+
+        assertEquals(3, pool.sendBatch(messages(10)));
+        assertEquals(3, sink.getMessagesReceived());
+        String statistics = pool.getStatistics();
+        // The dead connection was discarded, and the rest of the batch counted as failed
+        assertTrue(statistics, statistics.startsWith("Connections: 0/2"));
+        assertTrue(statistics, statistics.endsWith("Sent: 3, Failed: 7"));
+    }
+
+    private List<Message> messages(int count) throws Exception {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new MimeMessage(session);
+            message.setFrom(new InternetAddress("test@localhost"));
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse("user" + i + "@localhost"));
+            message.setSubject("Test message " + i);
+            message.setText("Your verification code is: 123456");
+            messages.add(message);
+        }
+        return messages;
+    }
+}